@@ -0,0 +1,121 @@
+package au.edu.rmit.sct;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * What each DurabilityMode costs, for one writer and for 16 concurrent writers.
+
+    addPerson appends one line, updatePersonalDetails rewrites the whole registry of
+    "size" sample Persons. Throughput is in operations per second over all threads, so
+    the 16-thread GROUP_COMMIT figures show how far shared syncs win back the fsyncs.
+    The trials write to java.io.tmpdir: point it at the disk you care about with
+    -jvmArgs -Djava.io.tmpdir=..., as a tmpfs makes every fsync free.
+*/
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class DurabilityBenchmark {
+
+    @Param({"NONE", "ATOMIC", "GROUP_COMMIT"})
+    public DurabilityMode mode;
+
+    @Param({"10000"})
+    public int size;
+
+    private Path dir;
+    private PersonRepository repo;
+    private String[] ids;
+    private final AtomicInteger nextNew = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Writer {
+        final SplittableRandom rnd = new SplittableRandom(Thread.currentThread().threadId());
+        boolean flip;
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("durability-bench");
+        Path file = dir.resolve("persons.txt");
+        if (!SampleRegistry.writeText(file, size, 42)) {
+            throw new IOException("could not write " + file);
+        }
+        repo = new PersonRepository(new TextFileStore(file, mode));
+        List<Person> all = repo.findAll();
+        ids = new String[all.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = all.get(i).getPersonID();
+        }
+        nextNew.set(size);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        repo.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean addPerson() {
+        return repo.add(SampleRegistry.person(nextNew.getAndIncrement(), 43));
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean addPerson16() {
+        return repo.add(SampleRegistry.person(nextNew.getAndIncrement(), 43));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean updatePersonalDetails(Writer w) {
+        return update(w);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean updatePersonalDetails16(Writer w) {
+        return update(w);
+    }
+
+    private boolean update(Writer w) {
+        String id = ids[w.rnd.nextInt(ids.length)];
+        w.flip = !w.flip;
+        String firstName = w.flip ? "Renamed" : "Original";
+        return repo.update(id, p -> {
+            p.setFirstName(firstName);
+            return true;
+        });
+    }
+}
@@ -0,0 +1,125 @@
+package au.edu.rmit.sct;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-record costs of the text codec, the streaming writer and the validation helpers.
+
+    Each invocation works on the next entry of a pool of sample records, so the JIT
+    cannot fold the input into a constant. A quarter of the IDs and addresses are
+    invalid, so the rejection paths are measured too.
+*/
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PersonCodecBenchmark {
+
+    private static final int POOL = 1024;  // power of two, see next()
+
+    private String[] lines;
+    private Person[] persons;
+    private String[] ids;
+    private String[] addresses;
+    private String[] birthdates;
+    private int today;
+    private int cursor;
+    private PersonWriter writer;
+
+    @Setup
+    public void setUp() {
+        lines = new String[POOL];
+        persons = new Person[POOL];
+        ids = new String[POOL];
+        addresses = new String[POOL];
+        birthdates = new String[POOL];
+        for (int i = 0; i < POOL; i++) {
+            Person p = SampleRegistry.person(i, 42);
+            persons[i] = p;
+            lines[i] = p.toLine();
+            birthdates[i] = p.getBirthdate();
+            boolean invalid = i % 4 == 3;
+            ids[i] = invalid ? "12abcdefGH" : p.getPersonID();
+            addresses[i] = invalid ? p.getAddress().replace("Victoria", "Tasmania") : p.getAddress();
+        }
+        today = DateCodec.today();
+        writer = new PersonWriter(new Discard());
+    }
+
+    // swallows whatever the writer flushes
+    private static final class Discard implements WritableByteChannel {
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            src.position(src.limit());
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private int next() {
+        return cursor = (cursor + 1) & (POOL - 1);
+    }
+
+    @Benchmark
+    public Person parseFromLine() {
+        return Person.parseFromLine(lines[next()]);
+    }
+
+    @Benchmark
+    public String toLine() {
+        return persons[next()].toLine();
+    }
+
+    // the same line streamed as UTF-8 into PersonWriter's buffer, as full rewrites do
+    @Benchmark
+    public PersonWriter writeLine() throws IOException {
+        return writer.write(persons[next()]);
+    }
+
+    @Benchmark
+    public boolean isValidPersonID() {
+        return Person.isValidPersonID(ids[next()]);
+    }
+
+    @Benchmark
+    public boolean isValidAddress() {
+        return Person.isValidAddress(addresses[next()]);
+    }
+
+    @Benchmark
+    public int calculateAge() {
+        return Person.calculateAge(birthdates[next()], "18-10-2026");
+    }
+
+    // the form addDemeritPoints and updatePersonalDetails use, with the reference day already parsed
+    @Benchmark
+    public int calculateAgeFromDay() {
+        return Person.calculateAge(birthdates[next()], today);
+    }
+}
@@ -0,0 +1,73 @@
+package au.edu.rmit.sct;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Compares file size and full-load time of the text and binary registry formats.
+
+    usage: java -cp target/benchmarks.jar au.edu.rmit.sct.RegistryFormatBenchmark [records] [rounds]
+           (defaults: 1000000 records, 5 rounds)
+    Writes a SampleRegistry to a temporary directory in both formats, then loads each
+    file "rounds" times after one warm-up round and reports the best time per loader.
+*/
+
+public final class RegistryFormatBenchmark {
+
+    private RegistryFormatBenchmark() {
+    }
+
+    private interface Loader {
+        List<?> load() throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds  = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Path dir = Files.createTempDirectory("registry-format");
+        Path text = dir.resolve("persons.txt");
+        Path binary = dir.resolve("persons.bin");
+        try {
+            List<Person> persons = SampleRegistry.generate(records, 42);
+            Person.writeAllPersonsToFile(text.toFile(), persons);
+            BinaryPersonCodec.write(binary, persons);
+            persons = null;
+
+            long textBytes = Files.size(text);
+            long binaryBytes = Files.size(binary);
+            System.out.printf("%d records%n", records);
+            System.out.printf("text   %,14d bytes (%.1f per record)%n", textBytes, textBytes / (double) records);
+            System.out.printf("binary %,14d bytes (%.1f per record, %.0f%% of text)%n",
+                    binaryBytes, binaryBytes / (double) records, 100.0 * binaryBytes / textBytes);
+
+            time("text, sequential", rounds, records, () -> ParallelPersonLoader.load(text, Person::parseFromLine, 1).records());
+            time("text, parallel", rounds, records, () -> ParallelPersonLoader.load(text).records());
+            time("text, lazy records", rounds, records, () -> Person.readAllRecordsFromFile(text.toFile()));
+            time("binary", rounds, records, () -> BinaryPersonCodec.read(binary));
+        } finally {
+            Files.deleteIfExists(text);
+            Files.deleteIfExists(binary);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static void time(String name, int rounds, int expected, Loader loader) throws IOException {
+        long best = Long.MAX_VALUE;
+        for (int r = -1; r < rounds; r++) {  // round -1 warms up
+            long start = System.nanoTime();
+            int loaded = loader.load().size();
+            long nanos = System.nanoTime() - start;
+            if (loaded != expected) {
+                throw new IllegalStateException(name + " loaded " + loaded + " of " + expected + " records");
+            }
+            if (r >= 0) {
+                best = Math.min(best, nanos);
+            }
+        }
+        System.out.printf("%-18s best of %d: %8.1f ms (%,.0f records/s)%n",
+                name, rounds, best / 1e6, expected / (best / 1e9));
+    }
+}
@@ -0,0 +1,104 @@
+package au.edu.rmit.sct;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The three business operations against a registry of "size" sample Persons.
+
+    Every trial writes a fresh SampleRegistry text file to a temporary directory and
+    runs the operations through a PersonRepository on it, exactly like
+    addPerson()/updatePersonalDetails()/addDemeritPoints() do against data/persons.txt.
+    The time therefore includes persisting each change to the file.
+*/
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class RegistryOperationsBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private Path dir;
+    private PersonRepository repo;
+    private String[] ids;
+    private int[] birthDays;
+    private SplittableRandom rnd;
+    private int nextNew;
+    private boolean flip;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("registry-bench");
+        Path file = dir.resolve("persons.txt");
+        if (!SampleRegistry.writeText(file, size, 42)) {
+            throw new IOException("could not write " + file);
+        }
+        repo = new PersonRepository(new TextFileStore(file));
+
+        List<Person> all = repo.findAll();
+        ids = new String[all.size()];
+        birthDays = new int[all.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = all.get(i).getPersonID();
+            birthDays[i] = DateCodec.parse(all.get(i).getBirthdate());
+        }
+        rnd = new SplittableRandom(7);
+        nextNew = size;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        repo.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean addPerson() {
+        return SampleRegistry.person(nextNew++, 43).addPerson(repo);
+    }
+
+    @Benchmark
+    public boolean updatePersonalDetails() {
+        String id = ids[rnd.nextInt(ids.length)];
+        Person p = repo.find(id);
+        flip = !flip;
+        p.setFirstName(flip ? "Renamed" : "Original");
+        return p.updatePersonalDetails(repo, id);
+    }
+
+    @Benchmark
+    public String addDemeritPoints() {
+        int i = rnd.nextInt(ids.length);
+        Person p = new Person(ids[i], "", "", "", "");
+        int offenseDay = birthDays[i] + 25 * 365 + rnd.nextInt(10 * 365);
+        return p.addDemeritPoints(repo, DateCodec.format(offenseDay), 1 + rnd.nextInt(6));
+    }
+}
@@ -0,0 +1,181 @@
+package au.edu.rmit.sct;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Non-blocking adds and updates of a PersonRepository, for callers that must not wait on file I/O.
+
+    Requests are queued to a single writer thread, which drains whatever has queued up
+    (at most -Droadregistry.async.maxBatch, default 1024) and runs it as one updateBatch():
+    every request is applied in memory in queue order, then all of their changes are
+    committed with one store write and one durability wait. So a burst of in-flight
+    requests shares one rewrite of the registry instead of paying one each, and the
+    requests for one personID take effect in the order they were submitted.
+    Callers validate what they can before submitting (see Person.addPersonAsync()), so
+    that work runs in their own threads, in parallel with the writer.
+
+    A future completes once its request's batch is stored: true if the request applied
+    and the batch was written, false if it did not apply or the write failed. The futures
+    are completed in queue order on a separate thread, so dependent stages never hold up
+    the writer. A request whose change throws completes exceptionally and does not apply.
+*/
+
+public final class AsyncRegistry implements AutoCloseable {
+
+    static final int DEFAULT_MAX_BATCH = Integer.getInteger("roadregistry.async.maxBatch", 1024);
+
+    private final PersonRepository repo;
+    private final int maxBatch;
+    private final LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService writer;
+    private final ExecutorService completer;
+    private volatile boolean closed;
+
+    // one queued add or update
+    private interface Operation {
+        boolean apply(PersonRepository.Batch batch);
+    }
+
+    private record Request(Operation operation, CompletableFuture<Boolean> result) {
+    }
+
+    private static final Request STOP = new Request(batch -> false, null);
+
+    public AsyncRegistry(PersonRepository repo) {
+        this(repo, DEFAULT_MAX_BATCH);
+    }
+
+    public AsyncRegistry(PersonRepository repo, int maxBatch) {
+        this.repo = repo;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.writer = Executors.newSingleThreadExecutor(r -> daemon(r, "registry-async-writer"));
+        this.completer = Executors.newSingleThreadExecutor(r -> daemon(r, "registry-async-completer"));
+        writer.execute(this::drain);
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    // REQUESTS
+
+    // PersonRepository.add(), asynchronously
+    public CompletableFuture<Boolean> add(Person person) {
+        Person copy = person.copy();  // the caller may change theirs while this one waits
+        return submit(batch -> batch.add(copy));
+    }
+
+    // PersonRepository.update(), asynchronously. the change runs on the writer thread
+    public CompletableFuture<Boolean> update(String personID, Predicate<Person> change) {
+        return submit(batch -> batch.update(personID, change));
+    }
+
+    private CompletableFuture<Boolean> submit(Operation operation) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        if (closed) {
+            result.completeExceptionally(new RejectedExecutionException("registry closed"));
+            return result;
+        }
+        queue.add(new Request(operation, result));
+        return result;
+    }
+
+    // requests waiting for the writer
+    public int pending() {
+        return queue.size();
+    }
+
+    // WRITER
+
+    private void drain() {
+        List<Request> batch = new ArrayList<>(maxBatch);
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, maxBatch - 1);
+            int stop = batch.indexOf(STOP);
+            if (stop >= 0) {
+                stopping = true;
+                batch.subList(stop + 1, batch.size()).forEach(AsyncRegistry::reject);  // submitted while closing
+                batch.subList(stop, batch.size()).clear();
+            }
+            if (!batch.isEmpty()) {
+                run(batch);
+            }
+            batch.clear();
+        }
+    }
+
+    // apply the requests in order, persist them once, then hand their outcomes to the completer
+    private void run(List<Request> requests) {
+        List<Request> batch = List.copyOf(requests);
+        boolean[] applied = new boolean[batch.size()];
+        Throwable[] failed = new Throwable[batch.size()];
+        boolean persisted;
+        try {
+            persisted = repo.updateBatch(b -> {
+                for (int i = 0; i < batch.size(); i++) {
+                    try {
+                        applied[i] = batch.get(i).operation().apply(b);
+                    } catch (RuntimeException e) {
+                        failed[i] = e;  // thrown before the change was published, so nothing to undo
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            persisted = false;
+            repo.invalidate();
+        }
+        boolean ok = persisted;
+        completer.execute(() -> {
+            for (int i = 0; i < batch.size(); i++) {
+                CompletableFuture<Boolean> result = batch.get(i).result();
+                if (failed[i] != null) {
+                    result.completeExceptionally(failed[i]);
+                } else {
+                    result.complete(ok && applied[i]);
+                }
+            }
+        });
+    }
+
+    private static void reject(Request request) {
+        request.result().completeExceptionally(new RejectedExecutionException("registry closed"));
+    }
+
+    // stop taking requests, finish the queued ones and stop the threads
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.add(STOP);
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+            for (Request late; (late = queue.poll()) != null; ) {
+                reject(late);  // submitted while closing
+            }
+            completer.shutdown();
+            completer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package au.edu.rmit.sct;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Validates whole batches of values held in columns, reporting a failure bitmask per record.
+
+    A Column packs n values into one char[] with an offset and a length per value, so a
+    batch is checked with tight loops over primitive arrays: no String per value, no
+    regex split, no exceptions. A Rule checks every value of one column and sets its bit
+    in the failures of the records it rejects; a BatchValidator is a list of rules, each
+    applied to its column, and STANDARD holds the three addPerson checks:
+      PERSON_ID   Person.isValidPersonID on column 0
+      ADDRESS     Person.isValidAddress on column 1
+      BIRTHDATE   Person.isValidDate on column 2
+    Each rule gives exactly the result of its helper, for every value (the tests hold
+    them to that on a shared corpus). The loops accumulate violations with arithmetic
+    rather than leave early, so the JIT can keep them free of data-dependent branches.
+*/
+
+public final class BatchValidator {
+
+    // failure bits of STANDARD
+    public static final int PERSON_ID = 1;
+    public static final int ADDRESS   = 1 << 1;
+    public static final int BIRTHDATE = 1 << 2;
+
+    public static final BatchValidator STANDARD = new BatchValidator()
+            .check(0, BatchValidator::checkPersonIDs, PERSON_ID)
+            .check(1, BatchValidator::checkAddresses, ADDRESS)
+            .check(2, BatchValidator::checkDates, BIRTHDATE);
+
+    // n values in one char[]; value i is chars[offset[i], offset[i] + length[i]), or null if length[i] < 0
+    public static final class Column {
+        final char[] chars;
+        final int[] offset;
+        final int[] length;
+        final int size;
+
+        private Column(char[] chars, int[] offset, int[] length, int size) {
+            this.chars = chars;
+            this.offset = offset;
+            this.length = length;
+            this.size = size;
+        }
+
+        public static Column of(List<? extends CharSequence> values) {
+            Builder b = new Builder(values.size(), values.size() * 16);
+            for (CharSequence v : values) {
+                b.add(v);
+            }
+            return b.build();
+        }
+
+        public int size() {
+            return size;
+        }
+
+        // the shared buffer, for rules: value i starts at offset(i)
+        public char[] chars() {
+            return chars;
+        }
+
+        public int offset(int i) {
+            return offset[i];
+        }
+
+        // -1 for a null value
+        public int length(int i) {
+            return length[i];
+        }
+
+        public boolean isNull(int i) {
+            return length[i] < 0;
+        }
+
+        public static final class Builder {
+            private char[] chars;
+            private int[] offset;
+            private int[] length;
+            private int size;
+            private int used;
+
+            public Builder(int expectedValues, int expectedChars) {
+                chars = new char[Math.max(16, expectedChars)];
+                offset = new int[Math.max(4, expectedValues)];
+                length = new int[offset.length];
+            }
+
+            public Builder add(CharSequence value) {
+                return value == null ? addNull() : add(value, 0, value.length());
+            }
+
+            // value[from, to)
+            public Builder add(CharSequence value, int from, int to) {
+                int n = to - from;
+                ensure(n);
+                for (int i = 0; i < n; i++) {
+                    chars[used + i] = value.charAt(from + i);
+                }
+                offset[size] = used;
+                length[size++] = n;
+                used += n;
+                return this;
+            }
+
+            public Builder addNull() {
+                ensure(0);
+                offset[size] = used;
+                length[size++] = -1;
+                return this;
+            }
+
+            private void ensure(int n) {
+                if (size == offset.length) {
+                    offset = Arrays.copyOf(offset, size * 2);
+                    length = Arrays.copyOf(length, size * 2);
+                }
+                if (used + n > chars.length) {
+                    chars = Arrays.copyOf(chars, Math.max(chars.length * 2, used + n));
+                }
+            }
+
+            public Column build() {
+                return new Column(chars, offset, length, size);
+            }
+        }
+    }
+
+    // sets bit in failures[i] for every value i of the column that breaks the rule
+    @FunctionalInterface
+    public interface Rule {
+        void check(Column column, int[] failures, int bit);
+    }
+
+    private record Check(int column, Rule rule, int bit) {
+    }
+
+    private final List<Check> checks = new ArrayList<>();
+
+    public BatchValidator() {
+    }
+
+    // also apply the rule to the column, reporting failures as bit. returns this
+    public BatchValidator check(int column, Rule rule, int bit) {
+        checks.add(new Check(column, rule, bit));
+        return this;
+    }
+
+    // the failure mask of every record, 0 where every rule passed. all columns must be the same size
+    public int[] validate(Column... columns) {
+        int size = columns.length == 0 ? 0 : columns[0].size;
+        for (Column c : columns) {
+            if (c.size != size) {
+                throw new IllegalArgumentException("columns of different sizes: " + c.size + " and " + size);
+            }
+        }
+        int[] failures = new int[size];
+        for (Check check : checks) {
+            check.rule().check(columns[check.column()], failures, check.bit());
+        }
+        return failures;
+    }
+
+    // RULES
+
+    // 1 for the ASCII chars Character.isLetterOrDigit rejects
+    private static final byte[] ASCII_SPECIAL = new byte[128];
+    static {
+        for (char c = 0; c < 128; c++) {
+            ASCII_SPECIAL[c] = (byte) (Character.isLetterOrDigit(c) ? 0 : 1);
+        }
+    }
+
+    // Person.isValidPersonID: 10 chars, '2'..'9' twice, at least two of the six middle chars
+    // not a letter or digit, 'A'..'Z' twice
+    public static void checkPersonIDs(Column col, int[] failures, int bit) {
+        char[] s = col.chars;
+        for (int i = 0; i < col.size; i++) {
+            if (col.length[i] != 10) {
+                failures[i] |= bit;
+                continue;
+            }
+            int at = col.offset[i];
+            // negative if any char is out of its range
+            int c0 = s[at] - '2', c1 = s[at + 1] - '2';
+            int c8 = s[at + 8] - 'A', c9 = s[at + 9] - 'A';
+            int outOfRange = c0 | ('9' - '2' - c0) | c1 | ('9' - '2' - c1)
+                           | c8 | ('Z' - 'A' - c8) | c9 | ('Z' - 'A' - c9);
+            int special = 0;
+            for (int k = at + 2; k < at + 8; k++) {
+                char c = s[k];
+                special += c < 128 ? ASCII_SPECIAL[c] : (Character.isLetterOrDigit(c) ? 0 : 1);
+            }
+            // bit set if out of range or fewer than two specials
+            int bad = (outOfRange >>> 31) | ((special - 2) >>> 31);
+            failures[i] |= -bad & bit;
+        }
+    }
+
+    private static final char[] VICTORIA = "Victoria".toCharArray();
+
+    // Person.isValidAddress: exactly five '|'-separated parts, the fourth being "Victoria"
+    public static void checkAddresses(Column col, int[] failures, int bit) {
+        char[] s = col.chars;
+        for (int i = 0; i < col.size; i++) {
+            int len = col.length[i];
+            if (len < 0) {
+                failures[i] |= bit;
+                continue;
+            }
+            int at = col.offset[i];
+            int end = at + len;
+            int bars = 0;
+            int stateStart = -1;  // just past the third bar
+            int stateEnd = -1;    // the fourth bar
+            for (int k = at; k < end; k++) {
+                int bar = s[k] == '|' ? 1 : 0;
+                bars += bar;
+                // the bar count only reaches 3 and 4 at the bars that end the third and fourth part
+                stateStart = bar == 1 && bars == 3 ? k + 1 : stateStart;
+                stateEnd = bar == 1 && bars == 4 ? k : stateEnd;
+            }
+            boolean ok = bars == 4 && stateEnd - stateStart == VICTORIA.length
+                    && Arrays.equals(s, stateStart, stateEnd, VICTORIA, 0, VICTORIA.length);
+            failures[i] |= ok ? 0 : bit;
+        }
+    }
+
+    // Person.isValidDate: a real DD-MM-YYYY date once surrounding whitespace is trimmed
+    public static void checkDates(Column col, int[] failures, int bit) {
+        char[] s = col.chars;
+        for (int i = 0; i < col.size; i++) {
+            int len = col.length[i];
+            if (len < 0) {
+                failures[i] |= bit;
+                continue;
+            }
+            // String.trim(): drop chars <= ' ' at both ends
+            int from = col.offset[i];
+            int to = from + len;
+            while (from < to && s[from] <= ' ') {
+                from++;
+            }
+            while (to > from && s[to - 1] <= ' ') {
+                to--;
+            }
+            boolean ok = to - from == DateCodec.LENGTH && DateCodec.parse(s, from, to) != DateCodec.INVALID;
+            failures[i] |= ok ? 0 : bit;
+        }
+    }
+}
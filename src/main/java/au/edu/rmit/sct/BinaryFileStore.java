@@ -0,0 +1,106 @@
+package au.edu.rmit.sct;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Persons kept in one BinaryPersonCodec file instead of pipe-delimited text.
+
+    Same write pattern as TextFileStore: new persons are appended, any other
+    change rewrites the whole file. An append first cuts off a torn last record
+    left by a crash, so the file never holds records after a partial one.
+*/
+
+public class BinaryFileStore implements PersonStore {
+
+    private final Path file;
+
+    // attributes of the file as of our last read/write; null forces a reload
+    private FileStamp knownStamp;
+
+    // bytes of complete records as of knownStamp; appends go after them
+    private long knownLength;
+
+    public BinaryFileStore(Path file) {
+        this.file = file;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public synchronized List<Person> load() {
+        FileStamp before = FileStamp.of(file);
+        try {
+            BinaryPersonCodec.Contents contents = BinaryPersonCodec.readContents(file);
+            knownStamp = before;
+            knownLength = contents.completeLength();
+            return contents.persons();
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            knownStamp = null;
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public boolean appendsAdditions() {
+        return true;
+    }
+
+    @Override
+    public long fingerprint() {
+        return FileStamp.fingerprint(FileStamp.of(file));
+    }
+
+    @Override
+    public synchronized boolean isStale() {
+        FileStamp current = FileStamp.of(file);
+        return current == null || !current.equals(knownStamp);
+    }
+
+    @Override
+    public synchronized boolean commit(List<RegistryChange> changes, Collection<PersonRecord> snapshot) {
+        boolean ok;
+        try {
+            List<Person> added = additions(changes);
+            if (added != null) {
+                // the known length, unless the file changed since (e.g. an add that skipped the load)
+                FileStamp current = FileStamp.of(file);
+                long end = current != null && current.equals(knownStamp)
+                        ? knownLength
+                        : BinaryPersonCodec.readContents(file).completeLength();
+                BinaryPersonCodec.append(file, added, end);
+            } else {
+                BinaryPersonCodec.write(file, () -> snapshot.stream().map(PersonRecord::person).iterator());
+            }
+            ok = true;
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            ok = false;
+        }
+        knownStamp = ok ? FileStamp.of(file) : null;
+        knownLength = knownStamp != null ? knownStamp.size() : 0;
+        return ok;
+    }
+
+    // the added Persons, or null if the changes are not all additions
+    private static List<Person> additions(List<RegistryChange> changes) {
+        List<Person> added = new ArrayList<>(changes.size());
+        for (RegistryChange change : changes) {
+            if (!(change instanceof RegistryChange.PersonAdded a)) {
+                return null;
+            }
+            Person p = Person.parseFromLine(a.line());
+            if (p == null || !a.personID().equals(p.getPersonID())) {
+                return null;
+            }
+            added.add(p);
+        }
+        return added;
+    }
+}
@@ -0,0 +1,347 @@
+package au.edu.rmit.sct;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact binary encoding of Persons, the alternative to one pipe-delimited line each.
+
+    file layout: the 4-byte magic "RRB1", then one record per Person, back to back.
+    record layout:
+      flags        1 byte: SUSPENDED, WIDE_ID, TEXT_BIRTHDATE
+      personID     10 bytes Latin-1, or a string if WIDE_ID (the ID is not 10 Latin-1 chars)
+      firstName    string
+      lastName     string
+      address      string
+      birthdate    4-byte big-endian epoch day, or a string if TEXT_BIRTHDATE (not a valid DD-MM-YYYY)
+      demerits     varint count, then per offence a zigzag varint day delta (from 0 for the
+                   first one) and a zigzag varint of the points
+    a string is a varint of (UTF-8 length + 1), 0 for null, followed by its UTF-8 bytes.
+
+    Every Person round-trips exactly: toLine() of a decoded Person equals toLine() of the
+    Person that was encoded. A truncated last record (a torn append) is dropped on read,
+    and cut off by the next append so the new records do not land after its bytes.
+*/
+
+public final class BinaryPersonCodec {
+
+    static final byte[] MAGIC = {'R', 'R', 'B', '1'};
+
+    static final int ID_BYTES = 10;
+
+    private static final int SUSPENDED      = 1;
+    private static final int WIDE_ID        = 1 << 1;
+    private static final int TEXT_BIRTHDATE = 1 << 2;
+
+    // an encoder hands its bytes to the file once it holds this many
+    private static final int FLUSH_BYTES = 64 * 1024;
+
+    private BinaryPersonCodec() {
+    }
+
+    // ENCODING
+
+    // reusable, growable output buffer for records
+    static final class Encoder {
+        private byte[] buf = new byte[FLUSH_BYTES + 1024];
+        private int len;
+
+        Encoder magic() {
+            ensure(MAGIC.length);
+            System.arraycopy(MAGIC, 0, buf, len, MAGIC.length);
+            len += MAGIC.length;
+            return this;
+        }
+
+        Encoder person(Person p) {
+            String id = p.getPersonID();
+            boolean fixedId = isFixedId(id);
+            int birthDay = DateCodec.parse(p.getBirthdate());
+
+            int flags = 0;
+            if (p.isSuspended())               flags |= SUSPENDED;
+            if (!fixedId)                      flags |= WIDE_ID;
+            if (birthDay == DateCodec.INVALID) flags |= TEXT_BIRTHDATE;
+            ensure(1);
+            buf[len++] = (byte) flags;
+
+            if (fixedId) {
+                ensure(ID_BYTES);
+                for (int i = 0; i < ID_BYTES; i++) {
+                    buf[len++] = (byte) id.charAt(i);
+                }
+            } else {
+                string(id);
+            }
+            string(p.getFirstName());
+            string(p.getLastName());
+            string(p.getAddress());
+            if (birthDay == DateCodec.INVALID) {
+                string(p.getBirthdate());
+            } else {
+                ensure(4);
+                buf[len++] = (byte) (birthDay >>> 24);
+                buf[len++] = (byte) (birthDay >>> 16);
+                buf[len++] = (byte) (birthDay >>> 8);
+                buf[len++] = (byte) birthDay;
+            }
+
+            DemeritHistory history = p.getDemeritHistory();
+            int n = history.size();
+            varint(n);
+            int previous = 0;
+            for (int i = 0; i < n; i++) {
+                int day = history.dayAt(i);
+                varint(zigzag(day - previous));
+                varint(zigzag(history.pointsAt(i)));
+                previous = day;
+            }
+            return this;
+        }
+
+        int length() {
+            return len;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, len);
+        }
+
+        // write what has been encoded so far to the channel, and start over
+        void drainTo(FileChannel channel) throws IOException {
+            ByteBuffer out = ByteBuffer.wrap(buf, 0, len);
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            len = 0;
+        }
+
+        private void string(String s) {
+            if (s == null) {
+                varint(0);
+                return;
+            }
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            varint(utf8.length + 1);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, buf, len, utf8.length);
+            len += utf8.length;
+        }
+
+        private void varint(int v) {
+            ensure(5);
+            while ((v & ~0x7F) != 0) {
+                buf[len++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[len++] = (byte) v;
+        }
+
+        private void ensure(int extra) {
+            if (len + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+            }
+        }
+    }
+
+    // the common case: exactly ten chars that each fit in one byte
+    private static boolean isFixedId(String id) {
+        if (id == null || id.length() != ID_BYTES) {
+            return false;
+        }
+        for (int i = 0; i < ID_BYTES; i++) {
+            if (id.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    private static int unzigzag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    public static byte[] encode(Person p) {
+        return new Encoder().person(p).toByteArray();
+    }
+
+    // DECODING
+
+    // decode the record at the buffer's position and move past it.
+    // throws BufferUnderflowException if the buffer ends inside the record
+    public static Person decode(ByteBuffer in) {
+        return decode(in, new byte[64]);
+    }
+
+    private static Person decode(ByteBuffer in, byte[] scratch) {
+        int flags = in.get();
+
+        String id;
+        if ((flags & WIDE_ID) == 0) {
+            in.get(scratch, 0, ID_BYTES);
+            id = new String(scratch, 0, ID_BYTES, StandardCharsets.ISO_8859_1);
+        } else {
+            id = string(in, scratch);
+        }
+        String firstName = string(in, scratch);
+        String lastName  = string(in, scratch);
+        String address   = string(in, scratch);
+        String birthdate = (flags & TEXT_BIRTHDATE) != 0
+                ? string(in, scratch)
+                : DateCodec.format(in.getInt());
+
+        int n = varint(in);
+        if (n < 0) {
+            throw new IllegalArgumentException("negative demerit count " + n);
+        }
+        DemeritHistory history = new DemeritHistory();
+        int day = 0;
+        for (int i = 0; i < n; i++) {
+            day += unzigzag(varint(in));
+            history.record(day, unzigzag(varint(in)));
+        }
+        return new Person(id, firstName, lastName, address, birthdate, (flags & SUSPENDED) != 0, history);
+    }
+
+    private static String string(ByteBuffer in, byte[] scratch) {
+        int n = varint(in) - 1;
+        if (n < 0) {
+            return null;
+        }
+        if (in.hasArray()) {
+            int at = in.position();
+            if (n > in.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            in.position(at + n);
+            return new String(in.array(), in.arrayOffset() + at, n, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = n <= scratch.length ? scratch : new byte[n];
+        in.get(bytes, 0, n);
+        return new String(bytes, 0, n, StandardCharsets.UTF_8);
+    }
+
+    private static int varint(ByteBuffer in) {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            v |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return v;
+            }
+        }
+        throw new IllegalArgumentException("varint longer than 5 bytes");
+    }
+
+    // decode every record after the magic; a truncated last record is dropped, and the
+    // buffer is left at its start (the end of the complete records)
+    public static List<Person> decodeAll(ByteBuffer in) throws IOException {
+        checkMagic(in);
+        List<Person> all = new ArrayList<>();
+        byte[] scratch = new byte[64];
+        while (in.hasRemaining()) {
+            int start = in.position();
+            try {
+                all.add(decode(in, scratch));
+            } catch (BufferUnderflowException torn) {
+                in.position(start);
+                break;
+            }
+        }
+        return all;
+    }
+
+    private static void checkMagic(ByteBuffer in) throws IOException {
+        if (in.remaining() < MAGIC.length) {
+            throw new IOException("not a binary persons file: too short");
+        }
+        for (byte b : MAGIC) {
+            if (in.get() != b) {
+                throw new IOException("not a binary persons file: bad magic");
+            }
+        }
+    }
+
+    // FILES
+
+    // the Persons of a file, and how many of its bytes hold them: the magic and every
+    // complete record, so everything but a torn last record. 0 for a missing file
+    public record Contents(List<Person> persons, long completeLength) {
+    }
+
+    // read every Person from a binary persons file; a missing file is an empty registry
+    public static List<Person> read(Path file) throws IOException {
+        return readContents(file).persons();
+    }
+
+    public static Contents readContents(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return new Contents(new ArrayList<>(), 0);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("binary persons file too big: " + size + " bytes");
+            }
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            List<Person> persons = decodeAll(in);
+            return new Contents(persons, in.position());
+        }
+    }
+
+    // replace the file's contents with the given Persons
+    public static void write(Path file, Iterable<Person> persons) throws IOException {
+        writeRecords(file, persons, -1);
+    }
+
+    // add the given Persons at the end of the file, creating it if needed. reads the file
+    // first to find a torn last record to cut off; see append(Path, Iterable, long)
+    public static void append(Path file, Iterable<Person> persons) throws IOException {
+        append(file, persons, readContents(file).completeLength());
+    }
+
+    // add the given Persons after the file's first completeLength bytes (its complete
+    // records, as read by readContents()), dropping anything past them first
+    public static void append(Path file, Iterable<Person> persons, long completeLength) throws IOException {
+        writeRecords(file, persons, completeLength);
+    }
+
+    // completeLength < 0 replaces the contents, otherwise appends after that many bytes
+    private static void writeRecords(Path file, Iterable<Person> persons, long completeLength) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        boolean append = completeLength >= 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (append && channel.size() > completeLength) {
+                channel.truncate(completeLength);  // a torn last record
+            }
+            Encoder encoder = new Encoder();
+            if (!append || channel.size() == 0) {
+                encoder.magic();
+            }
+            for (Person p : persons) {
+                encoder.person(p);
+                if (encoder.length() >= FLUSH_BYTES) {
+                    encoder.drainTo(channel);
+                }
+            }
+            encoder.drainTo(channel);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package au.edu.rmit.sct;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Loads a file of persons lines into a registry in one pass, reporting every row it rejects.
+
+    addPerson() per row re-checks the registry under its locks and writes the file once per
+    Person. The import instead streams the input in chunks through three stages:
+      1. read: lines in order, CHUNK_LINES at a time
+      2. validate, on the common pool, several chunks in parallel: each row must parse as a
+         persons line, and its personID, address and birthdate columns must pass
+         BatchValidator.STANDARD, the rules addPerson() checks
+      3. deduplicate, in input order: an IdSet holding the registry's IDs and every accepted
+         ID so far turns later copies into rejections (the first row of an ID wins)
+    The accepted records are then added with PersonRepository.addAll(): one lock, one commit,
+    one sequential append.
+
+    report format: a tab-separated header, then one row per rejected input line:
+      line  reason  detail  row
+*/
+
+public final class BulkImport {
+
+    static final int CHUNK_LINES = 4096;
+
+    public enum Reason {
+        MALFORMED,              // not a persons file line
+        INVALID_PERSON_ID,      // fails isValidPersonID
+        INVALID_ADDRESS,        // fails isValidAddress
+        INVALID_BIRTHDATE,      // fails isValidDate
+        DUPLICATE_IN_REGISTRY,  // personID already stored
+        DUPLICATE_IN_BATCH,     // personID on an earlier row of the input
+        WRITE_FAILED            // valid, but the registry could not store the batch
+    }
+
+    // rows: non-blank input lines
+    public record Result(long rows, int accepted, Map<Reason, Long> rejected) {
+
+        public long rejectedTotal() {
+            long total = 0;
+            for (long n : rejected.values()) {
+                total += n;
+            }
+            return total;
+        }
+    }
+
+    private BulkImport() {
+    }
+
+    // import the input into the registry and write the rejection report
+    public static Result run(PersonRepository repo, Path input, Path report) throws IOException {
+        Path parent = report.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             BufferedWriter out = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+            out.write("line\treason\tdetail\trow");
+            out.newLine();
+            return new Pipeline(repo, out).run(in);
+        }
+    }
+
+    // one chunk of input rows and, once validated, a record or a rejection reason per row
+    private static final class Chunk {
+        final String[] rows;
+        final long[] lineNumbers;
+        final int size;
+        PersonRecord[] records;    // null where rejected
+        Reason[] reasons;
+        String[] details;
+
+        Chunk(String[] rows, long[] lineNumbers, int size) {
+            this.rows = rows;
+            this.lineNumbers = lineNumbers;
+            this.size = size;
+        }
+
+        Chunk validate() {
+            records = new PersonRecord[size];
+            reasons = new Reason[size];
+            details = new String[size];
+            PersonRecord[] parsed = new PersonRecord[size];
+            BatchValidator.Column.Builder ids = new BatchValidator.Column.Builder(size, size * 10);
+            BatchValidator.Column.Builder addresses = new BatchValidator.Column.Builder(size, size * 48);
+            BatchValidator.Column.Builder birthdates = new BatchValidator.Column.Builder(size, size * 10);
+            for (int i = 0; i < size; i++) {
+                String row = rows[i];
+                PersonRecord r = PersonRecord.parse(row);
+                if (r == null) {
+                    reasons[i] = Reason.MALFORMED;
+                    details[i] = PersonLineParser.parse(row).message();
+                    ids.addNull();
+                    addresses.addNull();
+                    birthdates.addNull();
+                } else {
+                    parsed[i] = r;
+                    ids.add(r.personID());
+                    addresses.add(r.address());
+                    birthdates.add(r.birthdate());
+                }
+            }
+            int[] failures = BatchValidator.STANDARD.validate(ids.build(), addresses.build(), birthdates.build());
+            for (int i = 0; i < size; i++) {
+                PersonRecord r = parsed[i];
+                if (r == null) {
+                    continue;
+                }
+                int f = failures[i];
+                if ((f & BatchValidator.PERSON_ID) != 0) {
+                    reasons[i] = Reason.INVALID_PERSON_ID;
+                    details[i] = r.personID();
+                } else if ((f & BatchValidator.ADDRESS) != 0) {
+                    reasons[i] = Reason.INVALID_ADDRESS;
+                    details[i] = r.address();
+                } else if ((f & BatchValidator.BIRTHDATE) != 0) {
+                    reasons[i] = Reason.INVALID_BIRTHDATE;
+                    details[i] = r.birthdate();
+                } else {
+                    records[i] = r;
+                }
+            }
+            return this;
+        }
+    }
+
+    private static final class Pipeline {
+        private final PersonRepository repo;
+        private final BufferedWriter report;
+        private final List<PersonRecord> stored;
+        private final List<PersonRecord> accepted = new ArrayList<>();
+        private long[] acceptedLines = new long[1024];
+        // refs below stored.size() are registry records, the rest index accepted
+        private final IdSet ids;
+        private final Map<Reason, Long> rejected = new EnumMap<>(Reason.class);
+        private long rows;
+
+        Pipeline(PersonRepository repo, BufferedWriter report) {
+            this.repo = repo;
+            this.report = report;
+            this.stored = repo.records();
+            int storedCount = stored.size();
+            this.ids = new IdSet(storedCount + CHUNK_LINES,
+                    ref -> ref < storedCount ? stored.get(ref).personID() : accepted.get(ref - storedCount).personID());
+            for (int i = 0; i < storedCount; i++) {
+                ids.putIfAbsent(stored.get(i).personID(), i);
+            }
+        }
+
+        Result run(BufferedReader in) throws IOException {
+            // enough chunks in flight to keep every core validating while this thread reads and dedups
+            int window = 2 * ForkJoinPool.getCommonPoolParallelism() + 1;
+            ArrayDeque<CompletableFuture<Chunk>> inFlight = new ArrayDeque<>();
+            long lineNumber = 0;
+            boolean eof = false;
+            while (!eof || !inFlight.isEmpty()) {
+                if (!eof && inFlight.size() < window) {
+                    String[] chunkRows = new String[CHUNK_LINES];
+                    long[] chunkLines = new long[CHUNK_LINES];
+                    int n = 0;
+                    String line;
+                    while (n < CHUNK_LINES && (line = in.readLine()) != null) {
+                        lineNumber++;
+                        if (!line.isBlank()) {
+                            chunkRows[n] = line.trim();
+                            chunkLines[n++] = lineNumber;
+                        }
+                    }
+                    eof = n < CHUNK_LINES;
+                    if (n > 0) {
+                        Chunk chunk = new Chunk(chunkRows, chunkLines, n);
+                        inFlight.add(CompletableFuture.supplyAsync(chunk::validate));
+                    }
+                    continue;
+                }
+                deduplicate(inFlight.poll().join());
+            }
+
+            store();
+            return new Result(rows, accepted.size(), Collections.unmodifiableMap(rejected));
+        }
+
+        private void deduplicate(Chunk chunk) throws IOException {
+            int storedCount = stored.size();
+            for (int i = 0; i < chunk.size; i++) {
+                rows++;
+                PersonRecord r = chunk.records[i];
+                if (r == null) {
+                    reject(chunk.lineNumbers[i], chunk.reasons[i], chunk.details[i], chunk.rows[i]);
+                    continue;
+                }
+                int seen = ids.putIfAbsent(r.personID(), storedCount + accepted.size());
+                if (seen == IdSet.ABSENT) {
+                    if (accepted.size() == acceptedLines.length) {
+                        acceptedLines = Arrays.copyOf(acceptedLines, acceptedLines.length * 2);
+                    }
+                    acceptedLines[accepted.size()] = chunk.lineNumbers[i];
+                    accepted.add(r);
+                } else if (seen < storedCount) {
+                    reject(chunk.lineNumbers[i], Reason.DUPLICATE_IN_REGISTRY, r.personID(), chunk.rows[i]);
+                } else {
+                    reject(chunk.lineNumbers[i], Reason.DUPLICATE_IN_BATCH,
+                            "first on line " + acceptedLines[seen - storedCount], chunk.rows[i]);
+                }
+            }
+        }
+
+        // hand the accepted records to the registry; anyone who added an ID meanwhile wins
+        private void store() throws IOException {
+            List<String> taken = repo.addAll(accepted);
+            if (taken != null && taken.isEmpty()) {
+                return;
+            }
+            Set<String> lost = taken == null ? null : new HashSet<>(taken);
+            List<PersonRecord> added = new ArrayList<>(accepted.size());
+            for (int i = 0; i < accepted.size(); i++) {
+                PersonRecord r = accepted.get(i);
+                if (lost == null) {
+                    reject(acceptedLines[i], Reason.WRITE_FAILED, "", r.line());
+                } else if (lost.contains(r.personID())) {
+                    reject(acceptedLines[i], Reason.DUPLICATE_IN_REGISTRY, r.personID(), r.line());
+                } else {
+                    added.add(r);
+                }
+            }
+            accepted.clear();
+            accepted.addAll(added);
+        }
+
+        private void reject(long line, Reason reason, String detail, String row) throws IOException {
+            rejected.merge(reason, 1L, Long::sum);
+            switch (reason) {
+                case MALFORMED -> RegistryMetrics.parseFailure();
+                case INVALID_PERSON_ID -> RegistryMetrics.reject(RegistryMetrics.Rule.PERSON_ID);
+                case INVALID_ADDRESS -> RegistryMetrics.reject(RegistryMetrics.Rule.ADDRESS);
+                case INVALID_BIRTHDATE -> RegistryMetrics.reject(RegistryMetrics.Rule.BIRTHDATE);
+                case DUPLICATE_IN_REGISTRY, DUPLICATE_IN_BATCH -> RegistryMetrics.reject(RegistryMetrics.Rule.DUPLICATE_ID);
+                case WRITE_FAILED -> { }
+            }
+            report.write(Long.toString(line));
+            report.write('\t');
+            report.write(reason.name());
+            report.write('\t');
+            report.write(detail);
+            report.write('\t');
+            report.write(row);
+            report.newLine();
+        }
+    }
+
+    // usage: BulkImport <input> [report] [registry]
+    //   imports into data/persons.txt (on the configured StorageMode) and writes <input>.rejected.tsv
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: BulkImport <input> [report] [registry]");
+            System.exit(2);
+        }
+        Path input = Paths.get(args[0]);
+        Path report = args.length > 1 ? Paths.get(args[1]) : input.resolveSibling(input.getFileName() + ".rejected.tsv");
+        Path registry = Paths.get(args.length > 2 ? args[2] : Person.FILE_PATH);
+
+        long start = System.nanoTime();
+        Result result = run(PersonRepository.open(registry), input, report);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Imported " + result.accepted() + " of " + result.rows() + " rows into " + registry
+                + " in " + millis + " ms; " + result.rejectedTotal() + " rejected " + result.rejected()
+                + ", see " + report);
+    }
+}
@@ -0,0 +1,84 @@
+package au.edu.rmit.sct;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An exclusive FileChannel lock on a lock file, held on behalf of one owner (a repository)
+ * at a time.
+
+    The OS lock is taken when the owner's first thread acquires and released when its last
+    thread releases, so writer threads of one repository keep running in parallel (they are
+    coordinated by the repository's own locks) while other JVMs, and other repositories on
+    the same file in this JVM, wait for the whole group.
+    There is one instance per lock file, since the JVM refuses overlapping locks on a file.
+*/
+
+final class CrossProcessLock {
+
+    private static final Map<Path, CrossProcessLock> BY_FILE = new ConcurrentHashMap<>();
+
+    private final Path lockFile;
+    private FileChannel channel;
+    private FileLock lock;
+    private Object owner;
+    private int holders;
+
+    private CrossProcessLock(Path lockFile) {
+        this.lockFile = lockFile;
+    }
+
+    static CrossProcessLock forFile(Path lockFile) {
+        return BY_FILE.computeIfAbsent(lockFile.toAbsolutePath().normalize(), CrossProcessLock::new);
+    }
+
+    // blocks until the owner holds the lock
+    synchronized void acquire(Object owner) throws IOException {
+        boolean interrupted = false;
+        while (holders > 0 && this.owner != owner) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (holders == 0) {
+            if (channel == null || !channel.isOpen()) {
+                lockFile.toAbsolutePath().getParent().toFile().mkdirs();
+                channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            }
+            lock = channel.lock();
+            this.owner = owner;
+        }
+        holders++;
+        if (interrupted) {
+            Thread.currentThread().interrupt();  // restored only now: FileChannel.lock() is interruptible
+        }
+    }
+
+    // true while the owner holds the lock, on any of its threads
+    synchronized boolean isHeldBy(Object owner) {
+        return holders > 0 && this.owner == owner;
+    }
+
+    synchronized void release() {
+        if (holders == 0) {
+            throw new IllegalStateException("release() without acquire()");
+        }
+        if (--holders == 0) {
+            try {
+                lock.release();
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+            lock = null;
+            owner = null;
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package au.edu.rmit.sct;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Strict "DD-MM-YYYY" date codec working on primitive epoch days (days since 01-01-1970).
+
+    Replaces the shared static SimpleDateFormat: it holds no state, so it is safe to
+    share across threads, and parsing/formatting allocate nothing unless a String is
+    asked for. A date is accepted only if it is exactly two digits, '-', two digits, '-',
+    four digits and names a real day of the proleptic Gregorian calendar from year 0001 on,
+    which rejects everything the non-lenient SimpleDateFormat rejected ("32-01-2020",
+    "29-02-2023", "1990-11-15", ...).
+*/
+
+public final class DateCodec {
+
+    // returned by the parse methods for anything that is not a valid DD-MM-YYYY date
+    public static final int INVALID = Integer.MIN_VALUE;
+
+    // length of a formatted date
+    public static final int LENGTH = 10;
+
+    private static final int DAYS_0000_TO_1970 = 719_468;  // days from 0000-03-01 to 1970-01-01
+
+    private DateCodec() {
+    }
+
+    // PARSING
+
+    public static int parse(CharSequence s) {
+        return s == null ? INVALID : parse(s, 0, s.length());
+    }
+
+    // parse s[from, to) as DD-MM-YYYY
+    public static int parse(CharSequence s, int from, int to) {
+        if (to - from != LENGTH || s.charAt(from + 2) != '-' || s.charAt(from + 5) != '-') {
+            return INVALID;
+        }
+        int day   = digits(s.charAt(from),     s.charAt(from + 1));
+        int month = digits(s.charAt(from + 3), s.charAt(from + 4));
+        int year  = digits(s.charAt(from + 6), s.charAt(from + 7)) * 100
+                  + digits(s.charAt(from + 8), s.charAt(from + 9));
+        return toEpochDay(year, month, day);
+    }
+
+    // parse bytes[from, to) as DD-MM-YYYY (ASCII, so it works on UTF-8 text too)
+    public static int parse(byte[] b, int from, int to) {
+        if (to - from != LENGTH || b[from + 2] != '-' || b[from + 5] != '-') {
+            return INVALID;
+        }
+        int day   = digits(b[from],     b[from + 1]);
+        int month = digits(b[from + 3], b[from + 4]);
+        int year  = digits(b[from + 6], b[from + 7]) * 100
+                  + digits(b[from + 8], b[from + 9]);
+        return toEpochDay(year, month, day);
+    }
+
+    // parse chars[from, to) as DD-MM-YYYY
+    public static int parse(char[] c, int from, int to) {
+        if (to - from != LENGTH || c[from + 2] != '-' || c[from + 5] != '-') {
+            return INVALID;
+        }
+        int day   = digits(c[from],     c[from + 1]);
+        int month = digits(c[from + 3], c[from + 4]);
+        int year  = digits(c[from + 6], c[from + 7]) * 100
+                  + digits(c[from + 8], c[from + 9]);
+        return toEpochDay(year, month, day);
+    }
+
+    // same, on absolute indexes of a byte buffer; the buffer's position is left alone
+    public static int parse(ByteBuffer b, int from, int to) {
+        if (to - from != LENGTH || b.get(from + 2) != '-' || b.get(from + 5) != '-') {
+            return INVALID;
+        }
+        int day   = digits(b.get(from),     b.get(from + 1));
+        int month = digits(b.get(from + 3), b.get(from + 4));
+        int year  = digits(b.get(from + 6), b.get(from + 7)) * 100
+                  + digits(b.get(from + 8), b.get(from + 9));
+        return toEpochDay(year, month, day);
+    }
+
+    public static boolean isValid(CharSequence s) {
+        return parse(s) != INVALID;
+    }
+
+    // two ASCII digits as 0..99, or a negative number if either is not a digit
+    private static int digits(int hi, int lo) {
+        int h = hi - '0';
+        int l = lo - '0';
+        if ((h | l | (9 - h) | (9 - l)) < 0) {
+            return -1_000_000;
+        }
+        return h * 10 + l;
+    }
+
+    // epoch day of a calendar date, or INVALID if there is no such date
+    public static int toEpochDay(int year, int month, int day) {
+        if (year < 1 || year > 9999 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            return INVALID;
+        }
+        // shift the year to start in March so the leap day is the last day of the year
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400;
+        int yoe = y - era * 400;
+        int mp = (month + 9) % 12;
+        int doy = (153 * mp + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146_097 + doe - DAYS_0000_TO_1970;
+    }
+
+    public static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> isLeapYear(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    public static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    // CALENDAR FIELDS
+
+    // the date as a yyyymmdd number, e.g. 19901115
+    public static int toYmd(int epochDay) {
+        int z = epochDay + DAYS_0000_TO_1970;
+        int era = Math.floorDiv(z, 146_097);
+        int doe = z - era * 146_097;
+        int yoe = (doe - doe / 1460 + doe / 36_524 - doe / 146_096) / 365;
+        int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        int mp = (5 * doy + 2) / 153;
+        int day = doy - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 10_000 + month * 100 + day;
+    }
+
+    public static int year(int epochDay) {
+        return toYmd(epochDay) / 10_000;
+    }
+
+    // whole years from birth to reference, the way the old Calendar code counted them
+    // (negative if reference is before birth)
+    public static int ageInYears(int birthDay, int referenceDay) {
+        return Math.floorDiv(toYmd(referenceDay) - toYmd(birthDay), 10_000);
+    }
+
+    // same day `years` years earlier; 29-02 becomes 28-02 in a non-leap year, like Calendar.add(YEAR, -years).
+    // before year 0001 this is INVALID (Integer.MIN_VALUE), which still works as an inclusive lower bound
+    public static int minusYears(int epochDay, int years) {
+        int ymd = toYmd(epochDay);
+        int year = ymd / 10_000 - years;
+        int month = (ymd / 100) % 100;
+        int day = Math.min(ymd % 100, lengthOfMonth(year, month));
+        return toEpochDay(year, month, day);
+    }
+
+    public static int today() {
+        return (int) LocalDate.now().toEpochDay();
+    }
+
+    // FORMATTING
+
+    // write the date as DD-MM-YYYY into buf at off; returns the offset just past it
+    public static int format(int epochDay, char[] buf, int off) {
+        int ymd = toYmd(epochDay);
+        int year = ymd / 10_000;
+        int month = (ymd / 100) % 100;
+        int day = ymd % 100;
+        buf[off]     = (char) ('0' + day / 10);
+        buf[off + 1] = (char) ('0' + day % 10);
+        buf[off + 2] = '-';
+        buf[off + 3] = (char) ('0' + month / 10);
+        buf[off + 4] = (char) ('0' + month % 10);
+        buf[off + 5] = '-';
+        buf[off + 6] = (char) ('0' + year / 1000 % 10);
+        buf[off + 7] = (char) ('0' + year / 100 % 10);
+        buf[off + 8] = (char) ('0' + year / 10 % 10);
+        buf[off + 9] = (char) ('0' + year % 10);
+        return off + LENGTH;
+    }
+
+    // same as format(int, char[], int) for ASCII/UTF-8 byte buffers
+    public static int format(int epochDay, byte[] buf, int off) {
+        int ymd = toYmd(epochDay);
+        int year = ymd / 10_000;
+        int month = (ymd / 100) % 100;
+        int day = ymd % 100;
+        buf[off]     = (byte) ('0' + day / 10);
+        buf[off + 1] = (byte) ('0' + day % 10);
+        buf[off + 2] = '-';
+        buf[off + 3] = (byte) ('0' + month / 10);
+        buf[off + 4] = (byte) ('0' + month % 10);
+        buf[off + 5] = '-';
+        buf[off + 6] = (byte) ('0' + year / 1000 % 10);
+        buf[off + 7] = (byte) ('0' + year / 100 % 10);
+        buf[off + 8] = (byte) ('0' + year / 10 % 10);
+        buf[off + 9] = (byte) ('0' + year % 10);
+        return off + LENGTH;
+    }
+
+    public static StringBuilder appendTo(StringBuilder sb, int epochDay) {
+        int ymd = toYmd(epochDay);
+        int year = ymd / 10_000;
+        int month = (ymd / 100) % 100;
+        int day = ymd % 100;
+        return sb.append((char) ('0' + day / 10)).append((char) ('0' + day % 10)).append('-')
+                .append((char) ('0' + month / 10)).append((char) ('0' + month % 10)).append('-')
+                .append((char) ('0' + year / 1000 % 10)).append((char) ('0' + year / 100 % 10))
+                .append((char) ('0' + year / 10 % 10)).append((char) ('0' + year % 10));
+    }
+
+    public static String format(int epochDay) {
+        char[] buf = new char[LENGTH];
+        format(epochDay, buf, 0);
+        return new String(buf);
+    }
+
+    // BRIDGES to java.util.Date (local midnight, as SimpleDateFormat produced them)
+
+    public static Date toDate(int epochDay) {
+        return Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    public static int fromDate(Date date) {
+        return (int) LocalDate.ofInstant(date.toInstant(), ZoneId.systemDefault()).toEpochDay();
+    }
+}
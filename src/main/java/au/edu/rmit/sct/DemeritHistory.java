@@ -0,0 +1,233 @@
+package au.edu.rmit.sct;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A Person's demerit history as parallel sorted int arrays of offence epoch days and points.
+
+    prefix[i] holds the sum of points[0..i), so the points inside any date window are
+    two binary searches and a subtraction instead of a pass over boxed map entries.
+    Recording an offence on a day that already has one replaces it, like HashMap.put did.
+    Offences almost always arrive in date order, which makes recording them O(1).
+*/
+
+public final class DemeritHistory {
+
+    private static final int[] EMPTY = new int[0];
+    private static final int[] EMPTY_PREFIX = new int[1];
+
+    private int[] days = EMPTY;
+    private int[] points = EMPTY;
+    private int[] prefix = EMPTY_PREFIX;
+    private int size;
+
+    public DemeritHistory() {
+    }
+
+    public DemeritHistory copy() {
+        DemeritHistory c = new DemeritHistory();
+        c.days   = Arrays.copyOf(days, size);
+        c.points = Arrays.copyOf(points, size);
+        c.prefix = Arrays.copyOf(prefix, size + 1);
+        c.size   = size;
+        return c;
+    }
+
+    // ACCESS
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // epoch day of the i-th offence in date order
+    public int dayAt(int i) {
+        checkIndex(i);
+        return days[i];
+    }
+
+    public int pointsAt(int i) {
+        checkIndex(i);
+        return points[i];
+    }
+
+    // index of the offence on that day, or (-(insertion point) - 1) if there is none
+    public int indexOf(int day) {
+        return Arrays.binarySearch(days, 0, size, day);
+    }
+
+    // points recorded on that day, or 0 if there is no offence on it
+    public int pointsOn(int day) {
+        int i = indexOf(day);
+        return i >= 0 ? points[i] : 0;
+    }
+
+    public int total() {
+        return prefix[size];
+    }
+
+    // sum of points for offences with fromDay <= day <= toDay
+    public int windowTotal(int fromDay, int toDay) {
+        if (fromDay > toDay) {
+            return 0;
+        }
+        return prefix[upperBound(toDay)] - prefix[lowerBound(fromDay)];
+    }
+
+    // first index whose day is >= day
+    int lowerBound(int day) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (days[mid] < day) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // first index whose day is > day
+    int upperBound(int day) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (days[mid] <= day) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // MUTATION
+
+    // record an offence; an existing offence on the same day is replaced
+    public void record(int day, int pts) {
+        int i = indexOf(day);
+        if (i >= 0) {
+            points[i] = pts;
+            rebuildPrefix(i);
+            return;
+        }
+        i = -i - 1;
+        if (size == days.length) {
+            int capacity = Math.max(4, size + (size >> 1));
+            days   = Arrays.copyOf(days, capacity);
+            points = Arrays.copyOf(points, capacity);
+            prefix = Arrays.copyOf(prefix, capacity + 1);
+        }
+        System.arraycopy(days, i, days, i + 1, size - i);
+        System.arraycopy(points, i, points, i + 1, size - i);
+        days[i] = day;
+        points[i] = pts;
+        size++;
+        rebuildPrefix(i);
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    private void rebuildPrefix(int from) {
+        for (int k = from; k < size; k++) {
+            prefix[k + 1] = prefix[k] + points[k];
+        }
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("index " + i + ", size " + size);
+        }
+    }
+
+    // VIEWS
+
+    // read-only, live Date -> points view in date order, for callers of Person.getDemeritPoints()
+    public Map<Date, Integer> asDateMap() {
+        return new AbstractMap<>() {
+            @Override
+            public Integer get(Object key) {
+                if (!(key instanceof Date d)) {
+                    return null;
+                }
+                int i = indexOf(DateCodec.fromDate(d));
+                return i >= 0 ? points[i] : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return get(key) != null;
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Set<Entry<Date, Integer>> entrySet() {
+                return new AbstractSet<>() {
+                    @Override
+                    public int size() {
+                        return size;
+                    }
+
+                    @Override
+                    public Iterator<Entry<Date, Integer>> iterator() {
+                        return new Iterator<>() {
+                            private int next;
+
+                            @Override
+                            public boolean hasNext() {
+                                return next < size;
+                            }
+
+                            @Override
+                            public Entry<Date, Integer> next() {
+                                if (next >= size) {
+                                    throw new NoSuchElementException();
+                                }
+                                int i = next++;
+                                return new SimpleImmutableEntry<>(DateCodec.toDate(days[i]), points[i]);
+                            }
+                        };
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof DemeritHistory other) || other.size != size) {
+            return false;
+        }
+        return Arrays.equals(days, 0, size, other.days, 0, size)
+                && Arrays.equals(points, 0, size, other.points, 0, size);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = size;
+        for (int i = 0; i < size; i++) {
+            h = 31 * h + days[i];
+            h = 31 * h + points[i];
+        }
+        return h;
+    }
+}
@@ -0,0 +1,8 @@
+package au.edu.rmit.sct;
+
+/**
+ * One offence for Person.addDemeritPoints(List): who, when ("DD-MM-YYYY") and how many points.
+*/
+
+public record DemeritRecord(String personID, String offenseDate, int points) {
+}
@@ -0,0 +1,34 @@
+package au.edu.rmit.sct;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * How hard a TextFileStore works to keep a committed change across a crash,
+ * selected with -Droadregistry.durability=...
+
+    NONE          rewrite into "<file>.tmp" and rename it over the file, leaving flushing to the OS
+                  (the default). A crash soon after a rewrite can lose the whole registry
+    ATOMIC        rewrite into "<file>.tmp", fsync it and rename it over the file; appends are
+                  fsynced. Every commit is on disk before it returns
+    GROUP_COMMIT  as ATOMIC, but the fsync (and rename) is shared: commits that arrive while one
+                  is being synced wait and are synced together by the next one. A wider window
+                  makes the first commit of a group wait for more to join:
+                    -Droadregistry.groupCommit.windowMicros  how long at most (default 0)
+                    -Droadregistry.groupCommit.maxBatch      how many at most (default 128)
+*/
+
+public enum DurabilityMode {
+    NONE,
+    ATOMIC,
+    GROUP_COMMIT;
+
+    static final Duration GROUP_WINDOW =
+            Duration.ofNanos(Long.getLong("roadregistry.groupCommit.windowMicros", 0L) * 1000);
+    static final int GROUP_MAX_BATCH = Integer.getInteger("roadregistry.groupCommit.maxBatch", 128);
+
+    public static DurabilityMode configured() {
+        String mode = System.getProperty("roadregistry.durability", "none");
+        return valueOf(mode.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,43 @@
+package au.edu.rmit.sct;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+// identity of a file's contents as far as the filesystem can tell us cheaply
+record FileStamp(boolean exists, long size, long modifiedNanos, Object fileKey) {
+
+    static final FileStamp MISSING = new FileStamp(false, 0, 0, null);
+
+    static FileStamp of(Path file) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            return new FileStamp(true, attrs.size(),
+                    attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                    attrs.fileKey());
+        } catch (NoSuchFileException e) {
+            return MISSING;
+        } catch (IOException e) {
+            return null;  // unknown, forces a reload next time
+        }
+    }
+
+    // the stamps folded into one long, to record in another file what they were; 0 if any is unknown
+    static long fingerprint(FileStamp... stamps) {
+        long h = 17;
+        for (FileStamp s : stamps) {
+            if (s == null) {
+                return 0;
+            }
+            h = h * 31 + (s.exists ? 1 : 0);
+            h = h * 31 + s.size;
+            h = h * 31 + s.modifiedNanos;
+            h = h * 31 + Objects.hashCode(s.fileKey);
+        }
+        return h == 0 ? 1 : h;
+    }
+}
@@ -0,0 +1,104 @@
+package au.edu.rmit.sct;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Shares one sync among the commits that are waiting for it.
+
+    A commit joins the open batch once its data is written, and then awaits that batch.
+    The first waiter to find no sync running leads: it marks the batch as led, waits up
+    to the window for more commits to join (or until maxBatch have), closes the batch and
+    runs the sync for all of them; the other members wait for it to finish. Commits
+    joining after the close form the next batch, which one of them leads once the running
+    sync is done. With a zero window nobody waits on purpose, so a lone commit pays a
+    plain sync and batches grow with the sync latency under load.
+*/
+
+final class GroupCommit {
+
+    // commits waiting for the same sync
+    static final class Batch {
+        private int size;
+        private boolean led;  // a member is leading it, the others wait for done
+        private boolean done;
+        private boolean ok = true;
+    }
+
+    private final long windowNanos;
+    private final int maxBatch;
+    private final BooleanSupplier sync;
+
+    private Batch open = new Batch();
+    private Batch closing;  // the batch being synced, null if none
+
+    GroupCommit(Duration window, int maxBatch, BooleanSupplier sync) {
+        this.windowNanos = window.toNanos();
+        this.maxBatch = Math.max(1, maxBatch);
+        this.sync = sync;
+    }
+
+    // the batch that will make the data just written durable
+    synchronized Batch join() {
+        open.size++;
+        if (open.size >= maxBatch) {
+            notifyAll();  // a leader waiting out the window can go
+        }
+        return open;
+    }
+
+    // the data of every commit that is not synced yet was lost: fail their batches
+    synchronized void failPending() {
+        open.ok = false;
+        if (closing != null) {
+            closing.ok = false;
+        }
+    }
+
+    // blocks until the batch is synced. returns false if the sync or any write in it failed
+    boolean await(Batch batch) {
+        Batch leading;
+        synchronized (this) {
+            boolean interrupted = false;
+            while (!batch.done && (closing != null || batch != open || batch.led)) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;  // the commit is written already: see it through
+                }
+            }
+            if (batch.done) {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                return batch.ok;
+            }
+            batch.led = true;  // before the window wait releases the monitor
+            long deadline = System.nanoTime() + windowNanos;
+            long left;
+            while (open.size < maxBatch && (left = deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, left);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            leading = closing = open;
+            open = new Batch();
+        }
+
+        boolean synced = sync.getAsBoolean();
+
+        synchronized (this) {
+            leading.ok &= synced;
+            leading.done = true;
+            closing = null;
+            notifyAll();
+            return leading.ok;
+        }
+    }
+}
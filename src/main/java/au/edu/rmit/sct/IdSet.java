@@ -0,0 +1,88 @@
+package au.edu.rmit.sct;
+
+import java.util.function.IntFunction;
+
+/**
+ * A set of personIDs in two primitive arrays, instead of a String and a hash map entry per ID.
+
+    Open addressing over a 64-bit hash of each ID plus an int reference the caller can
+    resolve back to the ID (e.g. a row number): 12 bytes per slot, at most half of them
+    used. A hash match is confirmed by comparing the resolved IDs, so the set is exact;
+    with 64-bit hashes that comparison almost never finds a different ID. Not thread-safe.
+*/
+
+final class IdSet {
+
+    static final int ABSENT = -1;
+
+    private static final long EMPTY = 0;
+
+    private final IntFunction<String> idOf;
+    private long[] hashes;
+    private int[] refs;
+    private int size;
+
+    // idOf resolves a reference passed to putIfAbsent() back to its ID
+    IdSet(int expected, IntFunction<String> idOf) {
+        this.idOf = idOf;
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        hashes = new long[capacity];
+        refs = new int[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    // adds the ID under ref, unless it is present already: then returns the ref it was added
+    // under and leaves the set alone. returns ABSENT if it was added
+    int putIfAbsent(String id, int ref) {
+        long h = hash(id);
+        int mask = hashes.length - 1;
+        int i = (int) (h ^ (h >>> 32)) & mask;
+        for (long at; (at = hashes[i]) != EMPTY; i = (i + 1) & mask) {
+            if (at == h && id.equals(idOf.apply(refs[i]))) {
+                return refs[i];
+            }
+        }
+        hashes[i] = h;
+        refs[i] = ref;
+        if (++size * 2 > hashes.length) {
+            grow();
+        }
+        return ABSENT;
+    }
+
+    private void grow() {
+        long[] oldHashes = hashes;
+        int[] oldRefs = refs;
+        hashes = new long[oldHashes.length * 2];
+        refs = new int[oldRefs.length * 2];
+        int mask = hashes.length - 1;
+        for (int j = 0; j < oldHashes.length; j++) {
+            long h = oldHashes[j];
+            if (h != EMPTY) {
+                int i = (int) (h ^ (h >>> 32)) & mask;
+                while (hashes[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                hashes[i] = h;
+                refs[i] = oldRefs[j];
+            }
+        }
+    }
+
+    // 64-bit FNV-1a over the chars, finished with the MurmurHash3 mixer; never EMPTY
+    static long hash(String id) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            h = (h ^ id.charAt(i)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == EMPTY ? 1 : h;
+    }
+}
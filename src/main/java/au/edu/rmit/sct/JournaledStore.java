@@ -0,0 +1,441 @@
+package au.edu.rmit.sct;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snapshot file plus an append-only journal of RegistryChange records.
+
+    Mutations are appended to "<snapshot>.journal" as small records instead of rewriting
+    the snapshot. Loading replays the journal on top of the snapshot. A background
+    compactor folds the journal back into the snapshot once it grows past a threshold:
+    the journal is first rotated to "<snapshot>.journal.compacting" so writers keep
+    appending to a fresh journal while the fold runs off the request path. The compactor
+    starts with the first load or commit.
+
+    Other processes may share the files, so the compactor rotates and swaps in only while
+    it holds the registry's process lock ("<snapshot>.lock", the one PersonRepository.open
+    takes around every commit): no one appends to a journal after it was rotated. The fold
+    in between runs without it, into a temp file of its own, and is only swapped in if the
+    snapshot and the rotated journal are still the ones it read; otherwise another
+    process's compaction got there first and the fold is dropped.
+
+    A crash mid-append leaves a torn record at the end of the journal. Replay stops
+    there, so before appending after it the journal is cut back to the end of its last
+    complete record; otherwise every record appended later would be lost with it.
+
+    Replaying is not idempotent (a rename replayed after a new person took the old ID
+    would rename that one too), so the rotated journal must count as gone the moment the
+    folded snapshot is swapped in. Before the swap the compactor writes the folded
+    snapshot's stamp to "<snapshot>.journal.folded"; while the snapshot in place matches
+    it, the rotated journal is already in the snapshot and is skipped (and deleted by the
+    next compaction), so a crash between the swap and the delete loses nothing.
+
+    journal record format, one per line (fields are length-prefixed so they may contain anything):
+      <type> <len>:<field><len>:<field>...
+    where type is A (person added), U (details changed), D (demerit recorded), S (suspension changed)
+*/
+
+public class JournaledStore implements PersonStore {
+
+    // fold the journal into the snapshot once it is bigger than this
+    static final long DEFAULT_COMPACT_BYTES =
+            Long.getLong("roadregistry.journal.compactBytes", 8L * 1024 * 1024);
+    // how often the compactor checks the journal size
+    static final long DEFAULT_COMPACT_INTERVAL_MILLIS =
+            Long.getLong("roadregistry.journal.compactIntervalMillis", 1000L);
+
+    // names the temp file of each compaction in this process
+    private static final long PID = ProcessHandle.current().pid();
+    private static final AtomicLong COMPACTIONS = new AtomicLong();
+
+    private final Path snapshot;
+    private final Path journal;
+    private final Path compacting;
+    private final Path foldedMarker;
+    private final CrossProcessLock processLock;
+    private final long compactBytes;
+    private final long compactIntervalMillis;
+    private ScheduledExecutorService compactor;  // started on first use
+    private boolean closed;
+    // one compaction at a time, whether scheduled or called directly
+    private final Object compactionLock = new Object();
+
+    // stamps of the three files as of our last read/write
+    private FileStamp knownSnapshot;
+    private FileStamp knownJournal;
+    private FileStamp knownCompacting;
+
+    // the journal's complete records end at journalEnd while its stamp is endStamp; null to rescan
+    private FileStamp endStamp;
+    private long journalEnd;
+
+    public JournaledStore(Path snapshot) {
+        this(snapshot, DEFAULT_COMPACT_BYTES, DEFAULT_COMPACT_INTERVAL_MILLIS);
+    }
+
+    // compactIntervalMillis <= 0 disables the background compactor; compact() can still be called
+    public JournaledStore(Path snapshot, long compactBytes, long compactIntervalMillis) {
+        this.snapshot     = snapshot;
+        this.journal      = snapshot.resolveSibling(snapshot.getFileName() + ".journal");
+        this.compacting   = snapshot.resolveSibling(snapshot.getFileName() + ".journal.compacting");
+        this.foldedMarker = snapshot.resolveSibling(snapshot.getFileName() + ".journal.folded");
+        this.processLock  = CrossProcessLock.forFile(snapshot.resolveSibling(snapshot.getFileName() + ".lock"));
+        this.compactBytes = compactBytes;
+        this.compactIntervalMillis = compactIntervalMillis;
+    }
+
+    // the caller holds the store's lock
+    private void startCompactor() {
+        if (compactor != null || closed || compactIntervalMillis <= 0) {
+            return;
+        }
+        compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "journal-compactor-" + snapshot.getFileName());
+            t.setDaemon(true);
+            return t;
+        });
+        compactor.scheduleWithFixedDelay(this::compactIfNeeded,
+                compactIntervalMillis, compactIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public Path getJournal() {
+        return journal;
+    }
+
+    @Override
+    public synchronized List<Person> load() {
+        startCompactor();
+        rememberStamps();
+        return new ArrayList<>(replay().values());
+    }
+
+    @Override
+    public boolean appendsAdditions() {
+        return true;
+    }
+
+    @Override
+    public long fingerprint() {
+        return FileStamp.fingerprint(FileStamp.of(snapshot), FileStamp.of(journal), FileStamp.of(compacting));
+    }
+
+    @Override
+    public synchronized boolean isStale() {
+        return !same(knownSnapshot, FileStamp.of(snapshot))
+                || !same(knownJournal, FileStamp.of(journal))
+                || !same(knownCompacting, FileStamp.of(compacting));
+    }
+
+    @Override
+    public synchronized boolean commit(List<RegistryChange> changes, Collection<PersonRecord> ignoredSnapshot) {
+        startCompactor();
+        boolean stale = isStale();
+        journal.toAbsolutePath().getParent().toFile().mkdirs();
+        try {
+            cutTornTail();
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            endStamp = null;
+            return false;
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(journal, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            StringBuilder sb = new StringBuilder();
+            for (RegistryChange change : changes) {
+                sb.setLength(0);
+                encode(change, sb);
+                writer.append(sb).append('\n');
+            }
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            knownJournal = null;
+            endStamp = null;
+            return false;
+        }
+        endStamp = FileStamp.of(journal);
+        journalEnd = endStamp != null ? endStamp.size() : 0;
+        // only vouch for the new journal if we were in sync before appending to it
+        knownJournal = stale ? null : FileStamp.of(journal);
+        return true;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+    }
+
+    // COMPACTION
+
+    void compactIfNeeded() {
+        try {
+            if (Files.exists(compacting) || (Files.exists(journal) && Files.size(journal) >= compactBytes)) {
+                compact();
+            }
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+    }
+
+    // fold every journaled change into the snapshot and drop the folded journal
+    public void compact() throws IOException {
+        synchronized (compactionLock) {
+            FileStamp base;
+            FileStamp rotated;
+            processLock.acquire(this);
+            try {
+                synchronized (this) {
+                    boolean inSync = !isStale();
+                    // finish an earlier compaction that died between its swap and its delete
+                    if (isFolded()) {
+                        Files.delete(compacting);
+                    }
+                    Files.deleteIfExists(foldedMarker);  // or one that died before its swap
+                    // rotate, unless an earlier compaction was interrupted and left its journal behind
+                    if (!Files.exists(compacting)) {
+                        if (!Files.exists(journal)) {
+                            return;
+                        }
+                        Files.move(journal, compacting, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                    if (inSync) {
+                        rememberStamps();
+                    }
+                    base = FileStamp.of(snapshot);
+                    rotated = FileStamp.of(compacting);
+                }
+            } finally {
+                processLock.release();
+            }
+
+            // the slow part runs without the locks: writers append to the fresh journal meanwhile
+            Map<String, Person> folded = readSnapshot();
+            replayFile(compacting, folded);
+            Path temp = snapshot.resolveSibling(snapshot.getFileName() + ".compact."
+                    + PID + "-" + COMPACTIONS.incrementAndGet() + ".tmp");
+            try {
+                if (!Person.writeAllPersonsToFile(temp.toFile(), folded.values())) {
+                    throw new IOException("could not write " + temp);
+                }
+                processLock.acquire(this);
+                try {
+                    synchronized (this) {
+                        if (!same(base, FileStamp.of(snapshot)) || !same(rotated, FileStamp.of(compacting))) {
+                            return;  // another process folded this journal meanwhile
+                        }
+                        boolean inSync = !isStale();
+                        // a rename keeps the file's stamp, so this names the snapshot once it is swapped in
+                        Files.writeString(foldedMarker, Long.toString(FileStamp.fingerprint(FileStamp.of(temp))),
+                                StandardCharsets.UTF_8);
+                        // the commit point: from here on the rotated journal counts as folded
+                        Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING,
+                                StandardCopyOption.ATOMIC_MOVE);
+                        swapped();
+                        Files.delete(compacting);
+                        Files.deleteIfExists(foldedMarker);
+                        if (inSync) {
+                            rememberStamps();
+                        }
+                    }
+                } finally {
+                    processLock.release();
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    // between the snapshot swap and the journal delete; a test can fail here to play a crash
+    void swapped() throws IOException {
+    }
+
+    // true if the rotated journal is left over from a compaction that swapped its snapshot in
+    private boolean isFolded() {
+        if (!Files.exists(compacting) || !Files.exists(foldedMarker)) {
+            return false;
+        }
+        try {
+            long marker = Long.parseLong(Files.readString(foldedMarker, StandardCharsets.UTF_8).trim());
+            return marker != 0 && marker == FileStamp.fingerprint(FileStamp.of(snapshot));
+        } catch (IOException | NumberFormatException e) {
+            return false;  // torn marker: written before the swap, so the swap did not happen
+        }
+    }
+
+    // cut the journal back to the end of its last complete record, so an append does not land
+    // behind a torn one that replay would stop at. the caller holds the store's lock
+    private void cutTornTail() throws IOException {
+        FileStamp current = FileStamp.of(journal);
+        if (current == null || !current.exists()) {
+            return;
+        }
+        long end = current.equals(endStamp) ? journalEnd : replayFile(journal, new LinkedHashMap<>());
+        if (end < 0) {
+            throw new IOException("could not read " + journal);
+        }
+        if (end < current.size()) {
+            try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+                channel.truncate(end);
+            }
+        }
+    }
+
+    // REPLAY
+
+    private Map<String, Person> replay() {
+        Map<String, Person> byId = readSnapshot();
+        if (!isFolded()) {
+            replayFile(compacting, byId);
+        }
+        FileStamp before = FileStamp.of(journal);
+        long end = replayFile(journal, byId);
+        endStamp = end < 0 ? null : before;
+        journalEnd = end;
+        return byId;
+    }
+
+    private Map<String, Person> readSnapshot() {
+        Map<String, Person> byId = new LinkedHashMap<>();
+        for (Person p : Person.readAllPersonsFromFile(snapshot.toFile())) {
+            if (byId.putIfAbsent(p.getPersonID(), p) != null) {
+                // a repeated personID: kept in place under a key no change can name, so a fold writes it back
+                byId.put("\n" + byId.size(), p);
+            }
+        }
+        return byId;
+    }
+
+    // apply the file's complete records. returns the bytes they take, 0 for no file, -1 if unreadable
+    private static long replayFile(Path file, Map<String, Person> byId) {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            return -1;
+        }
+        // decoded leniently: a torn tail may end inside a multi-byte character
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        int[] pos = {0};
+        while (pos[0] < text.length()) {
+            int start = pos[0];
+            RegistryChange change = decode(text, pos);
+            if (change == null) {
+                // torn tail from a crash mid-append
+                return text.substring(0, start).getBytes(StandardCharsets.UTF_8).length;
+            }
+            change.applyTo(byId);
+        }
+        return bytes.length;
+    }
+
+    // ENCODING
+
+    static void encode(RegistryChange change, StringBuilder sb) {
+        switch (change) {
+            case RegistryChange.PersonAdded a -> {
+                sb.append('A').append(' ');
+                field(sb, a.line());
+            }
+            case RegistryChange.DetailsChanged u -> {
+                sb.append('U').append(' ');
+                field(sb, u.originalID());
+                field(sb, u.personID());
+                field(sb, u.firstName());
+                field(sb, u.lastName());
+                field(sb, u.address());
+                field(sb, u.birthdate());
+            }
+            case RegistryChange.DemeritRecorded d -> {
+                sb.append('D').append(' ');
+                field(sb, d.personID());
+                field(sb, DateCodec.format(d.offenseDay()));
+                field(sb, Integer.toString(d.points()));
+            }
+            case RegistryChange.SuspensionChanged s -> {
+                sb.append('S').append(' ');
+                field(sb, s.personID());
+                field(sb, Boolean.toString(s.suspended()));
+            }
+        }
+    }
+
+    private static void field(StringBuilder sb, String value) {
+        sb.append(value.length()).append(':').append(value);
+    }
+
+    // decode the record starting at pos[0] and move pos past its newline. returns null on a damaged record
+    static RegistryChange decode(String text, int[] pos) {
+        try {
+            char type = text.charAt(pos[0]);
+            pos[0] += 2;
+            RegistryChange change = switch (type) {
+                case 'A' -> {
+                    String line = field(text, pos);
+                    int bar = line.indexOf('|');
+                    yield new RegistryChange.PersonAdded(bar < 0 ? line : line.substring(0, bar), line);
+                }
+                case 'U' -> new RegistryChange.DetailsChanged(field(text, pos), field(text, pos),
+                        field(text, pos), field(text, pos), field(text, pos), field(text, pos));
+                case 'D' -> {
+                    String personID = field(text, pos);
+                    int day = DateCodec.parse(field(text, pos));
+                    int points = Integer.parseInt(field(text, pos));
+                    yield day == DateCodec.INVALID ? null : new RegistryChange.DemeritRecorded(personID, day, points);
+                }
+                case 'S' -> new RegistryChange.SuspensionChanged(field(text, pos),
+                        Boolean.parseBoolean(field(text, pos)));
+                default -> null;
+            };
+            if (change == null || text.charAt(pos[0]) != '\n') {
+                return null;
+            }
+            pos[0]++;
+            return change;
+        } catch (IndexOutOfBoundsException | NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private static String field(String text, int[] pos) {
+        int colon = text.indexOf(':', pos[0]);
+        int len = Integer.parseInt(text, pos[0], colon, 10);
+        String value = text.substring(colon + 1, colon + 1 + len);
+        pos[0] = colon + 1 + len;
+        return value;
+    }
+
+    // STAMPS
+
+    private void rememberStamps() {
+        knownSnapshot   = FileStamp.of(snapshot);
+        knownJournal    = FileStamp.of(journal);
+        knownCompacting = FileStamp.of(compacting);
+    }
+
+    private static boolean same(FileStamp known, FileStamp current) {
+        return current != null && current.equals(known);
+    }
+}
@@ -0,0 +1,14 @@
+package au.edu.rmit.sct;
+
+/**
+ * Receives RegistryMetrics snapshots, to ship them to a monitoring system.
+
+    Register one with RegistryMetrics.addExporter(); it is called by RegistryMetrics.export()
+    and, after RegistryMetrics.exportEvery(), periodically from a background thread.
+    e.g. RegistryMetrics.addExporter(snapshot -> System.err.println(snapshot));
+*/
+
+@FunctionalInterface
+public interface MetricsExporter {
+    void export(RegistryMetrics.Snapshot snapshot);
+}
@@ -0,0 +1,61 @@
+package au.edu.rmit.sct;
+
+/**
+ * One person's standing under a SuspensionPolicy on any past (or future) day, for appeals
+ * and court requests: the points in the window ending on that day, the age on it, and
+ * whether the licence was suspended by then.
+
+    Built once per record version from its demerit history, which is already sorted with
+    prefix sums (DemeritHistory): the window total is two binary searches, and since a
+    suspension is never lifted by time passing, the status is a comparison with the day
+    of the first offence that triggered the rule, found when the timeline is built.
+    So every at() is O(log offences), however many days are asked about.
+
+    The derived status can differ from the stored isSuspended flag, which is whatever
+    addDemeritPoints decided as the offences arrived (see SuspensionPolicy).
+*/
+
+public final class OffenceTimeline {
+
+    private final String personID;
+    private final SuspensionPolicy policy;
+    private final DemeritHistory history;
+    private final int birthDay;
+    private final int suspendedFrom;  // SuspensionPolicy.NEVER if no offence triggers the rule
+
+    // as of one day; age is -1 if the birthdate is unparseable or after the day,
+    // suspendedSince the day of the offence that suspended the licence, or DateCodec.INVALID
+    public record Standing(String personID, int day, int age, int windowPoints, int limit,
+                           boolean suspended, int suspendedSince) {
+
+        // the day as DD-MM-YYYY
+        public String date() {
+            return DateCodec.format(day);
+        }
+    }
+
+    private OffenceTimeline(String personID, SuspensionPolicy policy, DemeritHistory history, int birthDay) {
+        this.personID = personID;
+        this.policy = policy;
+        this.history = history;
+        this.birthDay = birthDay;
+        this.suspendedFrom = policy.firstTrigger(history, birthDay);
+    }
+
+    // the record's timeline, reading its line without decoding the Person
+    public static OffenceTimeline of(PersonRecord r, SuspensionPolicy policy) {
+        return new OffenceTimeline(r.personID(), policy, r.demerits(), DateCodec.parse(r.birthdate()));
+    }
+
+    public SuspensionPolicy policy() {
+        return policy;
+    }
+
+    public Standing at(int day) {
+        int age = birthDay == DateCodec.INVALID ? -1 : Math.max(-1, DateCodec.ageInYears(birthDay, day));
+        int windowPoints = history.windowTotal(DateCodec.minusYears(day, policy.windowYears()), day);
+        boolean suspended = day >= suspendedFrom;
+        return new Standing(personID, day, age, windowPoints, policy.limitAt(age),
+                suspended, suspended ? suspendedFrom : DateCodec.INVALID);
+    }
+}
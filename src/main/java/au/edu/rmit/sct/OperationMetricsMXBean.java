@@ -0,0 +1,20 @@
+package au.edu.rmit.sct;
+
+/**
+ * JMX view of one instrumented operation, registered as
+ * au.edu.rmit.sct:type=RegistryMetrics,operation=<name>.
+*/
+
+public interface OperationMetricsMXBean {
+
+    long getCalls();
+
+    // calls that returned false / "Failed" or lost an I/O error
+    long getFailures();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getMaxMicros();
+}
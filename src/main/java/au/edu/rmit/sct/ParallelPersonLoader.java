@@ -0,0 +1,251 @@
+package au.edu.rmit.sct;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Loads a persons file by memory-mapping it and parsing line-aligned chunks in parallel.
+
+    The file is cut into chunks whose boundaries are moved forward to the next line
+    terminator, each chunk is parsed on its own worker with the same trim + parseFromLine
+    logic as Person.readAllPersonsFromFile (PersonLineParser, straight from the mapped
+    bytes), and the per-chunk results are concatenated in file order, so the output is
+    identical to the sequential loader.
+    loadRecords() keeps the mapping: its PersonRecords point into the chunks rather than
+    copying their lines, so a big registry's lines stay in the page cache, not the heap.
+    Lines end at '\n', '\r' or "\r\n", exactly as BufferedReader.readLine() sees them.
+*/
+
+public final class ParallelPersonLoader {
+
+    // files at least this big are loaded in parallel by Person.readAllPersonsFromFile
+    static final long PARALLEL_THRESHOLD_BYTES =
+            Long.getLong("roadregistry.parallelLoadBytes", 4L * 1024 * 1024);
+
+    // loadRecords() keeps records mapped; off on Windows, where a mapped file cannot be renamed over
+    static final boolean MAPPED_RECORDS = Boolean.parseBoolean(System.getProperty("roadregistry.mappedRecords",
+            String.valueOf(!System.getProperty("os.name", "").startsWith("Windows"))));
+
+    // no chunk is mapped bigger than this, whatever the core count
+    private static final long MAX_CHUNK_BYTES = 64L * 1024 * 1024;
+
+    private ParallelPersonLoader() {
+    }
+
+    // throughput figures for one load
+    public record LoadStats(long records, long bytes, long nanos, int chunks) {
+
+        public double megabytesPerSecond() {
+            return nanos == 0 ? 0 : (bytes / (1024.0 * 1024.0)) / (nanos / 1e9);
+        }
+
+        public double recordsPerSecond() {
+            return nanos == 0 ? 0 : records / (nanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d records, %d bytes in %d chunks, %.1f ms (%.1f MB/s, %.0f records/s)",
+                    records, bytes, chunks, nanos / 1e6, megabytesPerSecond(), recordsPerSecond());
+        }
+    }
+
+    public record LoadResult<T>(List<T> records, LoadStats stats) {
+    }
+
+    // parses one line of a mapped chunk, given as absolute indexes [from, to) without its terminator
+    private interface LineParser<T> {
+        T parse(ByteBuffer chunk, int from, int to);
+    }
+
+    // Persons are parsed straight from the mapped bytes, without decoding each line to a String first
+    private static final LineParser<Person> PERSON_LINES = (chunk, from, to) -> {
+        int start = trimStart(chunk, from, to);
+        return PersonLineParser.parse(chunk, start, trimEnd(chunk, start, to)).person();
+    };
+
+    // records over the mapped bytes, which they keep referencing
+    private static final LineParser<PersonRecord> MAPPED_LINES = (chunk, from, to) -> {
+        int start = trimStart(chunk, from, to);
+        return PersonRecord.mapped(chunk, start, trimEnd(chunk, start, to));
+    };
+
+    // trim like String.trim(): UTF-8 multi-byte sequences never contain bytes <= ' '
+    private static int trimStart(ByteBuffer chunk, int from, int to) {
+        while (from < to && (chunk.get(from) & 0xFF) <= ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimEnd(ByteBuffer chunk, int from, int to) {
+        while (to > from && (chunk.get(to - 1) & 0xFF) <= ' ') {
+            to--;
+        }
+        return to;
+    }
+
+    public static LoadResult<Person> load(Path file) throws IOException {
+        return loadLines(file, PERSON_LINES, defaultChunkCount(Files.size(file)));
+    }
+
+    // the records of the file, reading their lines from the mapping as long as they are used
+    // (or copied into the heap where MAPPED_RECORDS is off)
+    static LoadResult<PersonRecord> loadRecords(Path file, int chunkCount) throws IOException {
+        if (!MAPPED_RECORDS) {
+            return load(file, PersonRecord::parse, chunkCount);
+        }
+        return loadLines(file, MAPPED_LINES, chunkCount);
+    }
+
+    // parse every non-null line of the file with the given parser; lines are trimmed first
+    public static <T> LoadResult<T> load(Path file, Function<String, T> parser, int chunkCount) throws IOException {
+        LineParser<T> lines = (chunk, from, to) -> {
+            byte[] line = new byte[to - from];
+            chunk.get(from, line);
+            return parser.apply(new String(line, StandardCharsets.UTF_8).trim());
+        };
+        return loadLines(file, lines, chunkCount);
+    }
+
+    private static <T> LoadResult<T> loadLines(Path file, LineParser<T> parser, int chunkCount) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] bounds = chunkBounds(channel, size, Math.max(1, chunkCount));
+            int chunks = bounds.length - 1;
+
+            List<List<T>> parts;
+            try {
+                parts = IntStream.range(0, chunks)
+                        .parallel()
+                        .mapToObj(i -> parseChunk(channel, bounds[i], bounds[i + 1], parser))
+                        .toList();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            List<T> all = new ArrayList<>(parts.stream().mapToInt(List::size).sum());
+            for (List<T> part : parts) {
+                all.addAll(part);
+            }
+            return new LoadResult<>(all, new LoadStats(all.size(), size, System.nanoTime() - start, chunks));
+        }
+    }
+
+    static int defaultChunkCount(long size) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        long bySize = (size + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES;
+        return (int) Math.max(cores * 4L, bySize);
+    }
+
+    // chunk start offsets plus the file size; every inner bound sits just after a line terminator
+    private static long[] chunkBounds(FileChannel channel, long size, int chunkCount) throws IOException {
+        long step = Math.max(1, Math.min(MAX_CHUNK_BYTES, (size + chunkCount - 1) / chunkCount));
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long pos = step;
+        while (pos < size) {
+            long next = nextLineStart(channel, pos, size, probe);
+            if (next > bounds.get(bounds.size() - 1) && next < size) {
+                bounds.add(next);
+            }
+            pos = Math.max(next, pos) + step;
+        }
+        bounds.add(size);
+        long[] out = new long[bounds.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = bounds.get(i);
+        }
+        return out;
+    }
+
+    // offset just past the first line terminator at or after pos (a "\r\n" split in two just yields an empty line)
+    private static long nextLineStart(FileChannel channel, long pos, long size, ByteBuffer probe) throws IOException {
+        while (pos < size) {
+            probe.clear();
+            int n = channel.read(probe, pos);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                byte b = probe.get(i);
+                if (b == '\n' || b == '\r') {
+                    return pos + i + 1;
+                }
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    private static <T> List<T> parseChunk(FileChannel channel, long from, long to, LineParser<T> parser) {
+        List<T> out = new ArrayList<>();
+        if (to <= from) {
+            return out;
+        }
+        MappedByteBuffer buf;
+        try {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        int lineStart = 0;
+        boolean afterCR = false;
+        int limit = buf.limit();
+        for (int i = 0; i < limit; i++) {
+            byte b = buf.get(i);
+            if (b == '\n' && afterCR) {
+                afterCR = false;  // second half of "\r\n"
+                lineStart = i + 1;
+                continue;
+            }
+            afterCR = b == '\r';
+            if (b == '\n' || b == '\r') {
+                emit(buf, lineStart, i, parser, out);
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < limit) {
+            emit(buf, lineStart, limit, parser, out);  // last line without a terminator
+        }
+        return out;
+    }
+
+    private static <T> void emit(ByteBuffer chunk, int from, int to, LineParser<T> parser, List<T> out) {
+        T parsed = parser.parse(chunk, from, to);
+        if (parsed != null) {
+            out.add(parsed);
+        } else if (!isBlank(chunk, from, to)) {
+            RegistryMetrics.parseFailure();
+        }
+    }
+
+    private static boolean isBlank(ByteBuffer chunk, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if ((chunk.get(i) & 0xFF) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // usage: ParallelPersonLoader [file]   loads the file and prints the load throughput
+    public static void main(String[] args) throws IOException {
+        Path file = Paths.get(args.length > 0 ? args[0] : "data/persons.txt");
+        System.out.println(load(file).stats());
+    }
+}
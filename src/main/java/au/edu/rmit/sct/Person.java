@@ -1,19 +1,20 @@
 package au.edu.rmit.sct;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A class representing a Person in the RoadRegistry system.
@@ -32,11 +33,9 @@ public class Person {
     private String address;      // "StreetNumber|Street|City|State|Country"
     private String birthdate;    // "DD-MM-YYYY"
     private boolean isSuspended;
-    private HashMap<Date, Integer> demeritPoints = new HashMap<>();
+    private DemeritHistory demerits = new DemeritHistory();
 
-    private static final String FILE_PATH = "data/persons.txt";
-
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("dd-MM-yyyy", Locale.ENGLISH);
+    static final String FILE_PATH = "data/persons.txt";
 
 
     // constructors, getters, and setters:::
@@ -50,22 +49,22 @@ public class Person {
         this.isSuspended = false;
     }
 
-    // private constructor used when parsing an existing Person from a file line,
+    // constructor used when parsing an existing Person from a file line or a binary record,
     // including any existing demerit history and suspension status
-    private Person(String personID,
+    Person(String personID,
                    String firstName,
                    String lastName,
                    String address,
                    String birthdate,
                    boolean isSuspended,
-                   HashMap<Date, Integer> demeritPoints) {
+                   DemeritHistory demerits) {
         this.personID      = personID;
         this.firstName     = firstName;
         this.lastName      = lastName;
         this.address       = address;
         this.birthdate     = birthdate;
         this.isSuspended   = isSuspended;
-        this.demeritPoints = demeritPoints;
+        this.demerits      = demerits;
     }
 
     public String getPersonID() {
@@ -110,11 +109,26 @@ public class Person {
         isSuspended = suspended;
     }
 
-    public HashMap<Date, Integer> getDemeritPoints() {
-        return demeritPoints;
+    // read-only Date -> points view over the demerit history, in date order
+    public Map<Date, Integer> getDemeritPoints() {
+        return demerits.asDateMap();
     }
-    public void setDemeritPoints(HashMap<Date, Integer> demeritPoints) {
-        this.demeritPoints = demeritPoints;
+    public void setDemeritPoints(Map<Date, Integer> demeritPoints) {
+        DemeritHistory history = new DemeritHistory();
+        for (Map.Entry<Date, Integer> e : demeritPoints.entrySet()) {
+            history.record(DateCodec.fromDate(e.getKey()), e.getValue());
+        }
+        this.demerits = history;
+    }
+
+    public DemeritHistory getDemeritHistory() {
+        return demerits;
+    }
+
+    // detached copy, so the registry never shares state with a caller's Person object
+    Person copy() {
+        return new Person(personID, firstName, lastName, address, birthdate, isSuspended,
+                demerits.copy());
     }
 
 
@@ -124,50 +138,8 @@ public class Person {
      // @return a new Person object, or null if parsing fails
 
     public static Person parseFromLine(String line) {
-        try {
-
-            int idx1 = line.indexOf('|');
-            if (idx1 < 0) return null;
-            int idx2 = line.indexOf('|', idx1 + 1);
-            if (idx2 < 0) return null;
-            int idx3 = line.indexOf('|', idx2 + 1);
-            if (idx3 < 0) return null;
-
-
-            int idxLast1 = line.lastIndexOf('|');
-            if (idxLast1 < 0 || idxLast1 <= idx3) return null;
-            int idxLast2 = line.lastIndexOf('|', idxLast1 - 1);
-            if (idxLast2 < 0 || idxLast2 <= idx3) return null;
-            int idxLast3 = line.lastIndexOf('|', idxLast2 - 1);
-            if (idxLast3 < 0 || idxLast3 <= idx3) return null;
-
-            String pid        = line.substring(0, idx1);
-            String fName      = line.substring(idx1 + 1, idx2);
-            String lName      = line.substring(idx2 + 1, idx3);
-            String addr       = line.substring(idx3 + 1, idxLast3);
-            String bdate      = line.substring(idxLast3 + 1, idxLast2);
-            boolean suspended = Boolean.parseBoolean(line.substring(idxLast2 + 1, idxLast1));
-            String demeritData = line.substring(idxLast1 + 1);
-
-
-            HashMap<Date, Integer> dpMap = new HashMap<>();
-            if (!demeritData.isBlank()) {
-                String[] entries = demeritData.split(";", -1);
-                for (String entry : entries) {
-                    if (entry.isBlank()) continue;
-                    String[] pair = entry.split(":", 2);
-                    if (pair.length != 2) continue;
-                    Date offenseDate = DATE_FORMAT.parse(pair[0]);
-                    int pts = Integer.parseInt(pair[1]);
-                    dpMap.put(offenseDate, pts);
-                }
-            }
-
-            return new Person(pid, fName, lName, addr, bdate, suspended, dpMap);
-        } catch (ParseException | NumberFormatException ex) {
-            ex.printStackTrace();
-            return null;
-        }
+        // PersonLineParser.parse(line) tells why a line was rejected
+        return PersonLineParser.parse(line).person();
     }
 
     // convert this Person object into exactly one line for data/persons.txt, in the format:
@@ -175,10 +147,8 @@ public class Person {
 
     public String toLine() {
         StringBuilder dpBuilder = new StringBuilder();
-        for (Date d : demeritPoints.keySet()) {
-            String dateStr = DATE_FORMAT.format(d);
-            int pts = demeritPoints.get(d);
-            dpBuilder.append(dateStr).append(":").append(pts).append(";");
+        for (int i = 0; i < demerits.size(); i++) {
+            DateCodec.appendTo(dpBuilder, demerits.dayAt(i)).append(":").append(demerits.pointsAt(i)).append(";");
         }
         String demeritData = dpBuilder.toString();
 
@@ -199,7 +169,7 @@ public class Person {
       // first two chars must be digits '2'..'9'
       // last two chars must be uppercase letters 'A'..'Z'
 
-    private static boolean isValidPersonID(String id) {
+    static boolean isValidPersonID(String id) {
         if (id == null || id.length() != 10) return false;
 
         // check the first two chars ('2'..'9')
@@ -227,7 +197,7 @@ public class Person {
     // split into exactly five parts by '|'
     // the 4th part (index 3) must equal "Victoria"
 
-    private static boolean isValidAddress(String address) {
+    static boolean isValidAddress(String address) {
         if (address == null) return false;
         String[] parts = address.split("\\|", -1);
         if (parts.length != 5) return false;
@@ -235,80 +205,197 @@ public class Person {
     }
 
     // condition 3: Any birthdate or offense date must be exactly "DD-MM-YYYY" and a real calendar date.
-    // we set DATE_FORMAT.setLenient(false) so invalid dates like "32-01-2020" are rejected.
+    // DateCodec is strict, so invalid dates like "32-01-2020" are rejected.
 
-    private static boolean isValidDate(String dateStr) {
+    static boolean isValidDate(String dateStr) {
         if (dateStr == null) return false;
-        DATE_FORMAT.setLenient(false);
-        try {
-            DATE_FORMAT.parse(dateStr.trim());
-            return true;
-        } catch (ParseException ex) {
-            return false;
-        }
+        return DateCodec.parse(dateStr.trim()) != DateCodec.INVALID;
     }
 
     // calculate whole-year age given birthdateStr="DD-MM-YYYY" and referenceDateStr="DD-MM-YYYY".
      // returns −1 if parsing fails
 
-    private static int calculateAge(String birthdateStr, String referenceDateStr) {
-        try {
-            DATE_FORMAT.setLenient(false);
-            Date birth = DATE_FORMAT.parse(birthdateStr);
-            Date ref   = DATE_FORMAT.parse(referenceDateStr);
-
-            Calendar cBirth = Calendar.getInstance();
-            cBirth.setTime(birth);
-            Calendar cRef = Calendar.getInstance();
-            cRef.setTime(ref);
-
-            int age = cRef.get(Calendar.YEAR) - cBirth.get(Calendar.YEAR);
-            if ((cRef.get(Calendar.MONTH) < cBirth.get(Calendar.MONTH)) ||
-                    (cRef.get(Calendar.MONTH) == cBirth.get(Calendar.MONTH) &&
-                            cRef.get(Calendar.DAY_OF_MONTH) < cBirth.get(Calendar.DAY_OF_MONTH))) {
-                age--;
-            }
-            return age;
-        } catch (ParseException e) {
+    static int calculateAge(String birthdateStr, String referenceDateStr) {
+        return calculateAge(birthdateStr, DateCodec.parse(referenceDateStr));
+    }
+
+    // same, with the reference date already parsed to an epoch day
+    static int calculateAge(String birthdateStr, int referenceDay) {
+        int birthDay = DateCodec.parse(birthdateStr);
+        if (birthDay == DateCodec.INVALID || referenceDay == DateCodec.INVALID) {
             return -1;
         }
+        return DateCodec.ageInYears(birthDay, referenceDay);
     }
 
     // FILE I/O HELPERS
-    //  read all Person lines from data/persons.txt into a List<Person>. If file doesn’t exist, returns an empty list.
-    private static List<Person> readAllPersonsFromFile() {
+    //  read all Person lines from the given file into a List<Person>. If file doesn’t exist, returns an empty list.
+    static List<Person> readAllPersonsFromFile(File file) {
+        long start = RegistryMetrics.start();
         List<Person> list = new ArrayList<>();
-        File file = new File(FILE_PATH);
         if (!file.exists()) {
+            RegistryMetrics.finish(RegistryMetrics.Operation.READ_FILE, start, true);
             return list;
         }
+        long bytes = file.length();
+
+        // big registries are memory-mapped and parsed on every core
+        if (bytes >= ParallelPersonLoader.PARALLEL_THRESHOLD_BYTES) {
+            try {
+                list = ParallelPersonLoader.load(file.toPath()).records();
+                RegistryMetrics.read(bytes, list.size());
+                RegistryMetrics.finish(RegistryMetrics.Operation.READ_FILE, start, true);
+                return list;
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+                RegistryMetrics.finish(RegistryMetrics.Operation.READ_FILE, start, false);
+                return list;
+            }
+        }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+        boolean ok = true;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
             String line;
             while ((line = reader.readLine()) != null) {
                 Person p = parseFromLine(line.trim());
                 if (p != null) {
                     list.add(p);
+                } else if (!line.isBlank()) {
+                    RegistryMetrics.parseFailure();
+                }
+            }
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            ok = false;
+        }
+        RegistryMetrics.read(bytes, list.size());
+        RegistryMetrics.finish(RegistryMetrics.Operation.READ_FILE, start, ok);
+        return list;
+    }
+
+    // same, as lazy records that keep their line and decode only the personID (see PersonRecord)
+    static List<PersonRecord> readAllRecordsFromFile(File file) {
+        long start = RegistryMetrics.start();
+        List<PersonRecord> list = new ArrayList<>();
+        if (!file.exists()) {
+            RegistryMetrics.finish(RegistryMetrics.Operation.READ_FILE, start, true);
+            return list;
+        }
+        long bytes = file.length();
+
+        if (bytes >= ParallelPersonLoader.PARALLEL_THRESHOLD_BYTES) {
+            try {
+                list = ParallelPersonLoader.loadRecords(file.toPath(),
+                        ParallelPersonLoader.defaultChunkCount(bytes)).records();
+                RegistryMetrics.read(bytes, list.size());
+                RegistryMetrics.finish(RegistryMetrics.Operation.READ_FILE, start, true);
+                return list;
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+                RegistryMetrics.finish(RegistryMetrics.Operation.READ_FILE, start, false);
+                return list;
+            }
+        }
+
+        boolean ok = true;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                PersonRecord r = PersonRecord.parse(line.trim());
+                if (r != null) {
+                    list.add(r);
+                } else if (!line.isBlank()) {
+                    RegistryMetrics.parseFailure();
                 }
             }
         } catch (IOException ioe) {
             ioe.printStackTrace();
+            ok = false;
         }
+        RegistryMetrics.read(bytes, list.size());
+        RegistryMetrics.finish(RegistryMetrics.Operation.READ_FILE, start, ok);
         return list;
     }
 
-    private static void writeAllPersonsToFile(List<Person> persons) {
-        File file = new File(FILE_PATH);
-        // ensure parent directory exists
-        file.getParentFile().mkdirs();
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file, false))) {
+    // the writers stream UTF-8 straight to the file channel (see PersonWriter); the bytes are
+    // what BufferedWriter over FileWriter produced with a UTF-8 default charset
+    static boolean writeAllPersonsToFile(File file, Collection<Person> persons) {
+        long start = RegistryMetrics.start();
+        long bytes = 0;
+        boolean ok;
+        try (PersonWriter writer = PersonWriter.open(file.toPath(), false)) {
             for (Person p : persons) {
-                writer.write(p.toLine());
-                writer.newLine();
+                writer.write(p);
             }
+            writer.flush();
+            bytes = writer.bytesWritten();
+            ok = true;
         } catch (IOException ioe) {
             ioe.printStackTrace();
+            ok = false;
         }
+        return written(start, bytes, ok);
+    }
+
+    // same, from stored records: undecoded ones are copied as their original line
+    static boolean writeAllRecordsToFile(File file, Iterable<PersonRecord> records) {
+        long start = RegistryMetrics.start();
+        long bytes = 0;
+        boolean ok;
+        try (PersonWriter writer = PersonWriter.open(file.toPath(), false)) {
+            for (PersonRecord r : records) {
+                writer.write(r);
+            }
+            writer.flush();
+            bytes = writer.bytesWritten();
+            ok = true;
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            ok = false;
+        }
+        return written(start, bytes, ok);
+    }
+
+    static boolean appendLinesToFile(File file, Iterable<String> lines) {
+        long start = RegistryMetrics.start();
+        long bytes = 0;
+        boolean ok;
+        try (PersonWriter writer = PersonWriter.open(file.toPath(), true)) {
+            for (String line : lines) {
+                writer.writeLine(line);
+            }
+            writer.flush();
+            bytes = writer.bytesWritten();
+            ok = true;
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            ok = false;
+        }
+        return written(start, bytes, ok);
+    }
+
+    // records the bytes that reached the file and the outcome of a write helper
+    private static boolean written(long start, long bytes, boolean ok) {
+        RegistryMetrics.written(bytes);
+        RegistryMetrics.finish(RegistryMetrics.Operation.WRITE_FILE, start, ok);
+        return ok;
+    }
+
+    // every operation runs against the shared in-memory index of data/persons.txt
+    private static PersonRepository repository() {
+        return PersonRepository.open(Paths.get(FILE_PATH));
+    }
+
+    // the changes made to data/persons.txt from now on, e.g. for newly suspended drivers:
+    // Person.events().consume(e -> { if (e.isSuspensionTriggered()) print(e.personID()); })
+    public static RegistryEvents events() {
+        return repository().events();
+    }
+
+    // every Person in data/persons.txt matching the query, e.g. all suspended drivers in Geelong:
+    // Person.query(PersonQuery.all().city("Geelong").suspended(true))
+    public static List<Person> query(PersonQuery query) {
+        return repository().query(query);
     }
 
      // addPerson() featuers:
@@ -317,35 +404,68 @@ public class Person {
             // otherwise return false
 
     public boolean addPerson() {
+        return addPerson(repository());
+    }
+
+    // same, against the given registry
+    boolean addPerson(PersonRepository repo) {
+        long start = RegistryMetrics.start();
+        boolean added = tryAddPerson(repo);
+        RegistryMetrics.finish(RegistryMetrics.Operation.ADD_PERSON, start, added);
+        return added;
+    }
+
+    private boolean tryAddPerson(PersonRepository repo) {
+        if (!isValidForAdd()) {
+            return false;
+        }
+
+        // prevent duplicate ID generation, then append this Person to data/persons.txt
+        if (repo.add(this)) {
+            return true;
+        }
+        if (repo.contains(this.personID)) {
+            RegistryMetrics.reject(RegistryMetrics.Rule.DUPLICATE_ID);
+        }
+        return false;
+    }
+
+    private boolean isValidForAdd() {
         if (!isValidPersonID(this.personID)) {
+            RegistryMetrics.reject(RegistryMetrics.Rule.PERSON_ID);
             return false;
         }
         if (!isValidAddress(this.address)) {
+            RegistryMetrics.reject(RegistryMetrics.Rule.ADDRESS);
             return false;
         }
         if (!isValidDate(this.birthdate)) {
+            RegistryMetrics.reject(RegistryMetrics.Rule.BIRTHDATE);
             return false;
         }
+        return true;
+    }
 
-        // prevent duplicate ID generation
-        List<Person> all = readAllPersonsFromFile();
-        for (Person existing : all) {
-            if (existing.getPersonID().equals(this.personID)) {
-                return false;
-            }
-        }
+    // addPerson() without blocking: validated in this thread, then added and written by the
+    // registry's single writer together with the other queued requests (see AsyncRegistry)
+    public CompletableFuture<Boolean> addPersonAsync() {
+        return addPersonAsync(repository());
+    }
 
-        // append this Person to data/persons.txt
-        File file = new File(FILE_PATH);
-        file.getParentFile().mkdirs();  // this ensure "data/" exists
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file, true))) {
-            writer.write(this.toLine());
-            writer.newLine();
-            return true;
-        } catch (IOException ioe) {
-            ioe.printStackTrace();
-            return false;
+    CompletableFuture<Boolean> addPersonAsync(PersonRepository repo) {
+        long start = RegistryMetrics.start();
+        if (!isValidForAdd()) {
+            RegistryMetrics.finish(RegistryMetrics.Operation.ADD_PERSON, start, false);
+            return CompletableFuture.completedFuture(false);
         }
+        String id = this.personID;
+        return repo.async().add(this).thenApply(added -> {
+            if (!added && repo.contains(id)) {
+                RegistryMetrics.reject(RegistryMetrics.Rule.DUPLICATE_ID);
+            }
+            RegistryMetrics.finish(RegistryMetrics.Operation.ADD_PERSON, start, added);
+            return added;
+        });
     }
 
     // updatePersonalDetails(originalID):
@@ -357,22 +477,39 @@ public class Person {
             // returns true if the update succeeds (and data/persons.txt is rewritten), otherwise false.
 
     public boolean updatePersonalDetails(String originalID) {
-        List<Person> all = readAllPersonsFromFile();
-        Person target = null;
-        for (Person p : all) {
-            if (p.getPersonID().equals(originalID)) {
-                target = p;
-                break;
-            }
-        }
-        if (target == null) {
-            return false;  // no such Person found
-        }
+        return updatePersonalDetails(repository(), originalID);
+    }
+
+    boolean updatePersonalDetails(PersonRepository repo, String originalID) {
+        long start = RegistryMetrics.start();
+        // false when no such Person is found
+        boolean updated = repo.update(originalID, target -> applyPersonalDetails(repo, originalID, target));
+        RegistryMetrics.finish(RegistryMetrics.Operation.UPDATE_PERSONAL_DETAILS, start, updated);
+        return updated;
+    }
+
+    // updatePersonalDetails() without blocking: the rules run on the registry's single writer,
+    // after every earlier queued request for the same person (see AsyncRegistry)
+    public CompletableFuture<Boolean> updatePersonalDetailsAsync(String originalID) {
+        return updatePersonalDetailsAsync(repository(), originalID);
+    }
+
+    CompletableFuture<Boolean> updatePersonalDetailsAsync(PersonRepository repo, String originalID) {
+        long start = RegistryMetrics.start();
+        Person details = copy();  // the caller may change this Person while the request waits
+        return repo.async().update(originalID, target -> details.applyPersonalDetails(repo, originalID, target))
+                .thenApply(updated -> {
+                    RegistryMetrics.finish(RegistryMetrics.Operation.UPDATE_PERSONAL_DETAILS, start, updated);
+                    return updated;
+                });
+    }
 
+    private boolean applyPersonalDetails(PersonRepository repo, String originalID, Person target) {
         // Person’s age today for under 18 rule
 
-        int age = calculateAge(target.getBirthdate(), DATE_FORMAT.format(new Date()));
+        int age = calculateAge(target.getBirthdate(), DateCodec.today());
         if (age < 0) {
+            RegistryMetrics.reject(RegistryMetrics.Rule.STORED_BIRTHDATE);
             return false;  // stored birthdate is malformed
         }
 
@@ -386,113 +523,201 @@ public class Person {
 
         if (birthdateChanged) {
             if (idChanged || fNameChanged || lNameChanged || addressChanged) {
+                RegistryMetrics.reject(RegistryMetrics.Rule.BIRTHDATE_CHANGE_ONLY);
                 return false;
             }
             if (!isValidDate(this.birthdate)) {
+                RegistryMetrics.reject(RegistryMetrics.Rule.BIRTHDATE);
                 return false;
             }
         }
 
         // no change in their address if the Person is under 18
         if (age < 18 && addressChanged) {
+            RegistryMetrics.reject(RegistryMetrics.Rule.UNDER_18_ADDRESS);
             return false;
         }
 
         // no change in their ID if originalID’s first digit is even
         char firstDigit = originalID.charAt(0);
         if (((firstDigit - '0') % 2 == 0) && idChanged) {
+            RegistryMetrics.reject(RegistryMetrics.Rule.EVEN_ID_CHANGE);
             return false;
         }
 
         //re-validate new ID format if ID is change
         if (idChanged && !isValidPersonID(this.personID)) {
+            RegistryMetrics.reject(RegistryMetrics.Rule.PERSON_ID);
             return false;
         }
 
         if (addressChanged && !isValidAddress(this.address)) {
+            RegistryMetrics.reject(RegistryMetrics.Rule.ADDRESS);
             return false;
         }
 
-        // if All checks passed ⇒ apply updates & rewrite data/persons.txt
+        // the new ID must not already belong to someone else
+        if (idChanged && repo.contains(this.personID)) {
+            RegistryMetrics.reject(RegistryMetrics.Rule.DUPLICATE_ID);
+            return false;
+        }
+
+        // if All checks passed ⇒ apply updates (the repository rewrites data/persons.txt)
         target.setPersonID(this.personID);
         target.setFirstName(this.firstName);
         target.setLastName(this.lastName);
         target.setAddress(this.address);
         target.setBirthdate(this.birthdate);
-
-        writeAllPersonsToFile(all);
         return true;
-    }  
+    }
 
       public String addDemeritPoints(String offenseDate, int points)  {
+        return addDemeritPoints(repository(), offenseDate, points);
+    }
+
+    String addDemeritPoints(PersonRepository repo, String offenseDate, int points) {
+        long start = RegistryMetrics.start();
+        boolean applied = tryAddDemeritPoints(repo, offenseDate, points);
+        RegistryMetrics.finish(RegistryMetrics.Operation.ADD_DEMERIT_POINTS, start, applied);
+        return applied ? "Success" : "Failed";
+    }
+
+    private boolean tryAddDemeritPoints(PersonRepository repo, String offenseDate, int points) {
         // offenseDate format validating
         if (!isValidDate(offenseDate)) {
-            return "Failed";
+            RegistryMetrics.reject(RegistryMetrics.Rule.OFFENCE_DATE);
+            return false;
         }
 
-        // load all Persons and find the one with this.personID
-        List<Person> all = readAllPersonsFromFile();
-        Person target = null;
-        for (Person p : all) {
-            if (p.getPersonID().equals(this.personID)) {
-                target = p;
-                break;
-            }
+        // epoch day of the offense
+        int offenseDay = DateCodec.parse(offenseDate.trim());
+
+        // find the Person with this.personID; fails if there is no such Person
+        return repo.update(this.personID, target -> applyDemeritPoints(target, offenseDay, points));
+    }
+
+    // addDemeritPoints() without blocking: the date is checked in this thread, the offence is
+    // recorded by the registry's single writer in submission order (see AsyncRegistry)
+    public CompletableFuture<String> addDemeritPointsAsync(String offenseDate, int points) {
+        return addDemeritPointsAsync(repository(), offenseDate, points);
+    }
+
+    CompletableFuture<String> addDemeritPointsAsync(PersonRepository repo, String offenseDate, int points) {
+        long start = RegistryMetrics.start();
+        if (!isValidDate(offenseDate)) {
+            RegistryMetrics.reject(RegistryMetrics.Rule.OFFENCE_DATE);
+            RegistryMetrics.finish(RegistryMetrics.Operation.ADD_DEMERIT_POINTS, start, false);
+            return CompletableFuture.completedFuture("Failed");
         }
-        if (target == null) {
-            return "Failed";  // no such Person
+        int offenseDay = DateCodec.parse(offenseDate.trim());
+        return repo.async().update(this.personID, target -> applyDemeritPoints(target, offenseDay, points))
+                .thenApply(applied -> {
+                    RegistryMetrics.finish(RegistryMetrics.Operation.ADD_DEMERIT_POINTS, start, applied);
+                    return applied ? "Success" : "Failed";
+                });
+    }
+
+    // batch form of addDemeritPoints() for feeds of many offences, e.g. roadside cameras:
+        // every record is validated like a single call, the records are grouped by person and
+        // applied in offence-date order (arrival order for the same date), and the registry is persisted once.
+        // returns "Success"/"Failed" per record, in input order
+    public static List<String> addDemeritPoints(List<DemeritRecord> records) {
+        return addDemeritPoints(repository(), records);
+    }
+
+    static List<String> addDemeritPoints(PersonRepository repo, List<DemeritRecord> records) {
+        String[] results = new String[records.size()];
+        Arrays.fill(results, "Failed");
+
+        // group by person, dropping records that fail the date check up front
+        Map<String, List<Integer>> byPerson = new LinkedHashMap<>();
+        int[] offenseDays = new int[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            DemeritRecord r = records.get(i);
+            if (r == null || r.personID() == null || !isValidDate(r.offenseDate())) {
+                continue;
+            }
+            offenseDays[i] = DateCodec.parse(r.offenseDate().trim());
+            byPerson.computeIfAbsent(r.personID(), id -> new ArrayList<>()).add(i);
         }
 
-        // calculate the person’s age at the time of offense
-        int ageAtOffense = calculateAge(target.getBirthdate(), offenseDate);
-        if (ageAtOffense < 0) {
-            return "Failed";
+        boolean persisted = repo.updateBatch(batch -> {
+            for (Map.Entry<String, List<Integer>> group : byPerson.entrySet()) {
+                List<Integer> idx = group.getValue();
+                idx.sort(Comparator.comparingInt(i -> offenseDays[i]));  // stable, so ties keep arrival order
+                batch.update(group.getKey(), target -> {
+                    boolean any = false;
+                    for (int i : idx) {
+                        if (applyDemeritPoints(target, offenseDays[i], records.get(i).points())) {
+                            results[i] = "Success";
+                            any = true;
+                        }
+                    }
+                    return any;
+                });
+            }
+        });
+        if (!persisted) {
+            Arrays.fill(results, "Failed");
         }
+        return Arrays.asList(results);
+    }
 
-        // validating points should be within [1 - 6]
-        if (points < 1 || points > 6) {
-            return "Failed";
+    // recompute every licence holder's suspension in data/persons.txt as of the date ("DD-MM-YYYY")
+    // under the current rules. returns who changed status, or null if the date is invalid or the
+    // changes could not be written
+    public static List<RegistryChange.SuspensionChanged> reevaluateSuspensions(String referenceDate) {
+        if (!isValidDate(referenceDate)) {
+            return null;
         }
+        return repository().reevaluateSuspensions(SuspensionPolicy.DEFAULT, DateCodec.parse(referenceDate));
+    }
 
-        // date object for parsing a offenseDate
-        Date offenseDt;
-        try {
-            DATE_FORMAT.setLenient(false);
-            offenseDt = DATE_FORMAT.parse(offenseDate);
-        } catch (ParseException ex) {
-            return "Failed";
+    // a licence holder's standing in data/persons.txt as of the date ("DD-MM-YYYY") under the current
+    // rules: the two-year points total, the age and the suspension status on that day.
+    // returns null if the date is invalid or there is no such personID
+    public static OffenceTimeline.Standing standingAsOf(String personID, String date) {
+        if (!isValidDate(date)) {
+            return null;
         }
+        return repository().standingAsOf(personID, SuspensionPolicy.DEFAULT, DateCodec.parse(date));
+    }
 
-        // add this offense to the Person’s demeritPoints map
-        target.getDemeritPoints().put(offenseDt, points);
+    // every licence holder's standing as of the date, in file order, or null if the date is invalid
+    public static List<OffenceTimeline.Standing> standingsAsOf(String date) {
+        if (!isValidDate(date)) {
+            return null;
+        }
+        return repository().standingsAsOf(SuspensionPolicy.DEFAULT, DateCodec.parse(date));
+    }
 
-        // calculate two years back boundary from offense date
-        Calendar twoYearsBack = Calendar.getInstance();
-        twoYearsBack.setTime(offenseDt);
-        twoYearsBack.add(Calendar.YEAR, -2);
+    private static boolean applyDemeritPoints(Person target, int offenseDay, int points) {
+        // calculate the person’s age at the time of offense
+        int ageAtOffense = calculateAge(target.getBirthdate(), offenseDay);
+        if (ageAtOffense < 0) {
+            RegistryMetrics.reject(DateCodec.parse(target.getBirthdate()) == DateCodec.INVALID
+                    ? RegistryMetrics.Rule.STORED_BIRTHDATE : RegistryMetrics.Rule.OFFENCE_BEFORE_BIRTH);
+            return false;
+        }
 
-        // sum all points
-        int totalInWindow = 0;
-        for (Date d : target.getDemeritPoints().keySet()) {
-            if (!d.before(twoYearsBack.getTime()) && !d.after(offenseDt)) {
-                totalInWindow += target.getDemeritPoints().get(d);
-            }
+        // validating points should be within [1 - 6]
+        if (points < 1 || points > 6) {
+            RegistryMetrics.reject(RegistryMetrics.Rule.POINTS_RANGE);
+            return false;
         }
 
-        //apply license suspension logic
-        if (ageAtOffense < 21) {
-            if (totalInWindow > 6) {
-                target.setSuspended(true);
-            }
-        } else {
-            if (totalInWindow > 12) {
-                target.setSuspended(true);
-            }
+        // add this offense to the Person’s demerit history
+        target.getDemeritHistory().record(offenseDay, points);
+
+        //apply license suspension logic: points in the two years up to the offense against the
+        // limit for the age at the offense (see SuspensionPolicy)
+        if (SuspensionPolicy.DEFAULT.triggers(target.getDemeritHistory(),
+                DateCodec.parse(target.getBirthdate()), offenseDay)) {
+            target.setSuspended(true);
         }
 
-        //rewrite data/persons.txt with the updated Person
-        writeAllPersonsToFile(all);
-        return "Success";
+        // the repository rewrites data/persons.txt with the updated Person
+        return true;
     }
 
 }
@@ -0,0 +1,216 @@
+package au.edu.rmit.sct;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded LRU cache of decoded Persons, keyed by personID.
+
+    PersonRepository keeps every record as its compact persons file line and decodes a
+    Person only when it is read; this cache keeps the recently used ones decoded, so the
+    hot set of drivers is served without parsing while at most maxEntries decoded Persons,
+    or about maxBytes of them (see estimateBytes), are kept alive at a time.
+
+    What stays in heap besides the cache depends on how the records were loaded: a small
+    file's records keep their lines as Strings, while a big file's records are mapped and
+    keep only their personID and line offsets, so a miss decodes the line from the page
+    cache and the heap grows with the number of people, not with the file size.
+
+    An entry belongs to one PersonRecord version: get() misses when the record it is asked
+    about is not the one the Person was cached for, so a changed record can never be
+    served stale. Writers put the new version (write-through) and remove the old key
+    when a personID changes.
+
+    The entries are spread over up to 16 independently locked, access-ordered segments,
+    each with its share of the budget, so readers of different people rarely contend.
+    Cached Persons are shared: treat them as read-only.
+    Sized with -Droadregistry.cache=entries:<n> | bytes:<n>[k|m|g] | off (default entries:100000).
+*/
+
+public final class PersonCache {
+
+    // what an entry costs beyond its Person: map entry, Entry object, key reference
+    private static final long ENTRY_OVERHEAD = 96;
+
+    public record Stats(long hits, long misses, long evictions, long entries, long bytes) {
+
+        public double hitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d hits, %d misses (%.1f%% hit rate), %d evictions, %d entries, ~%d KiB",
+                    hits, misses, hitRate() * 100, evictions, entries, bytes / 1024);
+        }
+    }
+
+    private record Entry(PersonRecord record, Person person, long bytes) {
+    }
+
+    private static final class Segment {
+        final LinkedHashMap<String, Entry> map = new LinkedHashMap<>(16, 0.75f, true);
+        final long budget;
+        long used;  // entries or bytes, whichever the cache is bounded by
+
+        Segment(long budget) {
+            this.budget = budget;
+        }
+    }
+
+    private final boolean byBytes;
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private PersonCache(boolean byBytes, long budget, int segmentCount) {
+        this.byBytes = byBytes;
+        this.segments = new Segment[segmentCount];
+        long share = (budget + segmentCount - 1) / segmentCount;
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(share);
+        }
+    }
+
+    // at most maxEntries Persons (0 caches nothing)
+    public static PersonCache ofEntries(long maxEntries) {
+        return new PersonCache(false, Math.max(0, maxEntries), maxEntries >= 1024 ? 16 : 1);
+    }
+
+    // Persons whose estimated size adds up to at most maxBytes
+    public static PersonCache ofBytes(long maxBytes) {
+        return new PersonCache(true, Math.max(0, maxBytes), maxBytes >= 1024 * 1024 ? 16 : 1);
+    }
+
+    public static PersonCache configured() {
+        return parse(System.getProperty("roadregistry.cache", "entries:100000"));
+    }
+
+    // "entries:<n>", "bytes:<n>[k|m|g]" or "off"
+    static PersonCache parse(String spec) {
+        String s = spec.trim().toLowerCase(Locale.ROOT);
+        if (s.equals("off")) {
+            return ofEntries(0);
+        }
+        int colon = s.indexOf(':');
+        String kind = colon < 0 ? "" : s.substring(0, colon);
+        String size = s.substring(colon + 1);
+        return switch (kind) {
+            case "entries" -> ofEntries(Long.parseLong(size));
+            case "bytes" -> ofBytes(bytes(size));
+            default -> throw new IllegalArgumentException("roadregistry.cache: " + spec);
+        };
+    }
+
+    private static long bytes(String size) {
+        long unit = switch (size.charAt(size.length() - 1)) {
+            case 'k' -> 1024L;
+            case 'm' -> 1024L * 1024;
+            case 'g' -> 1024L * 1024 * 1024;
+            default -> 1;
+        };
+        return Long.parseLong(unit == 1 ? size : size.substring(0, size.length() - 1)) * unit;
+    }
+
+    // CACHE
+
+    // the Person cached for exactly this record version, or null
+    public Person get(PersonRecord record) {
+        Segment seg = segmentFor(record.personID());
+        Entry e;
+        synchronized (seg) {
+            e = seg.map.get(record.personID());
+        }
+        if (e != null && e.record == record) {
+            hits.increment();
+            return e.person;
+        }
+        misses.increment();
+        return null;
+    }
+
+    // cache the decoded Person of this record version, replacing any older version
+    public void put(PersonRecord record, Person person) {
+        Segment seg = segmentFor(record.personID());
+        if (seg.budget == 0) {
+            return;
+        }
+        long bytes = estimateBytes(person) + ENTRY_OVERHEAD;
+        long weight = byBytes ? bytes : 1;
+        synchronized (seg) {
+            Entry old = seg.map.put(record.personID(), new Entry(record, person, bytes));
+            if (old != null) {
+                seg.used -= byBytes ? old.bytes : 1;
+            }
+            seg.used += weight;
+            Iterator<Entry> eldest = seg.map.values().iterator();
+            while (seg.used > seg.budget && eldest.hasNext()) {
+                Entry e = eldest.next();
+                eldest.remove();
+                seg.used -= byBytes ? e.bytes : 1;
+                evictions.increment();
+            }
+        }
+    }
+
+    public void remove(String personID) {
+        Segment seg = segmentFor(personID);
+        synchronized (seg) {
+            Entry old = seg.map.remove(personID);
+            if (old != null) {
+                seg.used -= byBytes ? old.bytes : 1;
+            }
+        }
+    }
+
+    public void clear() {
+        for (Segment seg : segments) {
+            synchronized (seg) {
+                seg.map.clear();
+                seg.used = 0;
+            }
+        }
+    }
+
+    public Stats stats() {
+        long entries = 0;
+        long bytes = 0;
+        for (Segment seg : segments) {
+            synchronized (seg) {
+                entries += seg.map.size();
+                for (Entry e : seg.map.values()) {
+                    bytes += e.bytes;
+                }
+            }
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), entries, bytes);
+    }
+
+    private Segment segmentFor(String personID) {
+        int h = personID.hashCode();
+        return segments[((h ^ (h >>> 16)) & 0x7fffffff) % segments.length];
+    }
+
+    // rough retained heap of a decoded Person: the object, its five Strings (compact Latin-1)
+    // and its DemeritHistory arrays
+    static long estimateBytes(Person p) {
+        long bytes = 32 + 32 + 3 * 16;
+        bytes += 12L * p.getDemeritHistory().size();
+        bytes += stringBytes(p.getPersonID()) + stringBytes(p.getFirstName()) + stringBytes(p.getLastName())
+                + stringBytes(p.getAddress()) + stringBytes(p.getBirthdate());
+        return bytes;
+    }
+
+    private static long stringBytes(String s) {
+        return s == null ? 0 : 40 + s.length();
+    }
+
+    @Override
+    public String toString() {
+        return "PersonCache[" + stats() + "]";
+    }
+}
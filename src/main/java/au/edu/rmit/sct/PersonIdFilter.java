@@ -0,0 +1,327 @@
+package au.edu.rmit.sct;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A Bloom filter of every personID ever stored, kept in a sidecar file next to the registry.
+
+    "not present" is definite, so PersonRepository can add a new person without loading
+    the whole registry just to learn that its ID is free; "maybe present" falls back to
+    the exact check against the loaded index. IDs are only ever added: an ID changed away
+    stays in as a false positive until the next rebuild.
+
+    Every writer that keeps the filter adds the IDs it stores before committing them, and
+    holds the registry's process lock while it uses the filter. After each commit it records
+    the registry's fingerprint (PersonStore.fingerprint(): the size and mtime of its files)
+    in the header, so a registry changed by anyone else - a repository with the filter off,
+    the format converter, an editor - no longer matches, and the filter is not trusted for
+    it: the add loads the registry instead. PersonRepository checks the filter against every
+    full load it makes, adding what is missing and recording the fingerprint again.
+    PersonIdFilter rebuild [registry] [fpp] rebuilds it from scratch.
+
+    sized for `capacity` IDs at the false-positive rate of -Droadregistry.bloom.fpp
+    (default 0.01, about 9.6 bits and 7 probes per ID); once more IDs than that are in,
+    the next full load rebuilds it twice as big. -Droadregistry.bloom=false turns it off.
+
+    file format, big-endian:
+      int magic, int probes, long bits, long capacity, long count, long version,
+      long registry (the fingerprint it describes, 0 for none), long[] words
+    The version counts writes of the words, so a user of the file notices another process's
+    writes exactly. A rebuild rewrites the file in place and writes the header last, after
+    zeroing the magic, so a torn rebuild reads as no filter at all; a filter that could not
+    take an ID is invalidated the same way.
+*/
+
+public final class PersonIdFilter implements Closeable {
+
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("roadregistry.bloom", "true"));
+    static final double DEFAULT_FPP = Double.parseDouble(System.getProperty("roadregistry.bloom.fpp", "0.01"));
+
+    private static final int MAGIC = 0x52524632;  // "RRF2"
+    private static final int HEADER_BYTES = 48;
+    private static final int COUNT_OFFSET = 24;
+    private static final int VERSION_OFFSET = 32;
+    private static final int REGISTRY_OFFSET = 40;
+    private static final int MIN_CAPACITY = 1024;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final Object fileKey;  // to notice the file being replaced under our channel
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+
+    // as of our last read or write of the file
+    private int probes;
+    private long bits;
+    private long capacity;
+    private long count;
+    private long version;
+    private long registry;
+    private long[] words;
+
+    private PersonIdFilter(Path file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+        FileStamp stamp = FileStamp.of(file);
+        this.fileKey = stamp == null ? null : stamp.fileKey();
+    }
+
+    // the filter in the file, or null if there is none or it is unreadable
+    static PersonIdFilter open(Path file) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            PersonIdFilter f = new PersonIdFilter(file, FileChannel.open(file,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE));
+            if (!f.refresh()) {
+                f.close();
+                return null;
+            }
+            return f;
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            return null;
+        }
+    }
+
+    // (re)write the file with exactly these IDs, sized for twice as many at the given rate
+    static PersonIdFilter build(Path file, Collection<String> ids, double fpp) throws IOException {
+        long capacity = Math.max(MIN_CAPACITY, 2L * ids.size());
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-capacity * Math.log(fpp) / (ln2 * ln2));
+        bits = (bits + 63) / 64 * 64;
+        int probes = Math.max(1, (int) Math.round((double) bits / capacity * ln2));
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        PersonIdFilter f = new PersonIdFilter(file, FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        try {
+            // carry the version on, even from an invalidated file, so nobody mistakes the new bits for old ones
+            ByteBuffer previous = ByteBuffer.allocate(8);
+            long version = f.channel.read(previous, VERSION_OFFSET) == 8 ? previous.flip().getLong() + 1 : 1;
+            f.probes = probes;
+            f.bits = bits;
+            f.capacity = capacity;
+            f.words = new long[Math.toIntExact(bits / 64)];
+            for (String id : ids) {
+                f.set(id);
+            }
+            f.count = ids.size();
+            f.version = version;
+
+            f.writeHeader(0);  // invalid until complete
+            ByteBuffer body = ByteBuffer.allocate(f.words.length * 8);
+            body.asLongBuffer().put(f.words);
+            f.channel.truncate(HEADER_BYTES);
+            writeFully(f.channel, body, HEADER_BYTES);
+            f.channel.force(false);
+            f.writeHeader(MAGIC);
+            return f;
+        } catch (IOException | RuntimeException e) {
+            f.close();
+            throw e;
+        }
+    }
+
+    // QUERIES
+
+    // false only if the ID was never added
+    public synchronized boolean mightContain(String id) {
+        long h = IdSet.hash(id);
+        long step = (h >>> 32) | 1;
+        for (int i = 0; i < probes; i++) {
+            long bit = Long.remainderUnsigned(h + i * step, bits);
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public synchronized long count() {
+        return count;
+    }
+
+    public synchronized long capacity() {
+        return capacity;
+    }
+
+    // the fingerprint of the registry contents the filter covers, as of the last refresh; 0 for none
+    public synchronized long registry() {
+        return registry;
+    }
+
+    // UPDATES
+
+    // catch up with writes by other processes. returns false if the file no longer holds a valid filter
+    synchronized boolean refresh() throws IOException {
+        FileStamp stamp = FileStamp.of(file);
+        if (stamp == null || !stamp.exists() || !Objects.equals(stamp.fileKey(), fileKey)) {
+            return false;
+        }
+        header.clear();
+        if (channel.read(header, 0) < HEADER_BYTES) {
+            return false;
+        }
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            return false;
+        }
+        int fileProbes = header.getInt();
+        long fileBits = header.getLong();
+        long fileCapacity = header.getLong();
+        long fileCount = header.getLong();
+        long fileVersion = header.getLong();
+        registry = header.getLong();
+        if (words != null && fileVersion == version && fileBits == bits) {
+            return true;
+        }
+        if (fileBits <= 0 || fileBits % 64 != 0 || channel.size() < HEADER_BYTES + fileBits / 8) {
+            return false;
+        }
+        ByteBuffer body = ByteBuffer.allocate(Math.toIntExact(fileBits / 8));
+        readFully(channel, body, HEADER_BYTES);
+        body.flip();
+        long[] fileWords = new long[body.capacity() / 8];
+        body.asLongBuffer().get(fileWords);
+
+        probes = fileProbes;
+        bits = fileBits;
+        capacity = fileCapacity;
+        count = fileCount;
+        version = fileVersion;
+        words = fileWords;
+        return true;
+    }
+
+    // add the IDs to the file, writing only the words they change
+    synchronized void add(Collection<String> ids) throws IOException {
+        if (!refresh()) {
+            throw new IOException("not a valid ID filter: " + file);
+        }
+        ByteBuffer word = ByteBuffer.allocate(8);
+        for (String id : ids) {
+            long h = IdSet.hash(id);
+            long step = (h >>> 32) | 1;
+            for (int i = 0; i < probes; i++) {
+                long bit = Long.remainderUnsigned(h + i * step, bits);
+                int w = (int) (bit >>> 6);
+                long updated = words[w] | (1L << bit);
+                if (updated != words[w]) {
+                    words[w] = updated;
+                    word.clear();
+                    word.putLong(updated).flip();
+                    writeFully(channel, word, HEADER_BYTES + 8L * w);
+                }
+            }
+        }
+        count += ids.size();
+        version++;
+        ByteBuffer tail = ByteBuffer.allocate(16).putLong(count).putLong(version).flip();
+        writeFully(channel, tail, COUNT_OFFSET);
+    }
+
+    // record that the filter covers the registry as it is now, with this fingerprint
+    synchronized void describe(long fingerprint) throws IOException {
+        writeFully(channel, ByteBuffer.allocate(8).putLong(fingerprint).flip(), REGISTRY_OFFSET);
+        registry = fingerprint;
+    }
+
+    synchronized boolean isOverCapacity() {
+        return count > capacity;
+    }
+
+    // mark the file as no filter at all, for every process, until it is rebuilt
+    synchronized void invalidate() throws IOException {
+        writeFully(channel, ByteBuffer.allocate(4), 0);
+        words = null;
+    }
+
+    private void set(String id) {
+        long h = IdSet.hash(id);
+        long step = (h >>> 32) | 1;
+        for (int i = 0; i < probes; i++) {
+            long bit = Long.remainderUnsigned(h + i * step, bits);
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private void writeHeader(int magic) throws IOException {
+        ByteBuffer h = ByteBuffer.allocate(HEADER_BYTES)
+                .putInt(magic).putInt(probes).putLong(bits).putLong(capacity).putLong(count).putLong(version)
+                .putLong(registry)
+                .flip();
+        writeFully(channel, h, 0);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += channel.write(buf, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position);
+            if (n < 0) {
+                throw new IOException("truncated ID filter");
+            }
+            position += n;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            channel.close();
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+    }
+
+    // "persons.txt" -> "persons.txt.bloom"
+    static Path fileFor(Path registry) {
+        return registry.resolveSibling(registry.getFileName() + ".bloom");
+    }
+
+    // usage: PersonIdFilter rebuild [registry] [fpp]
+    //   rebuilds data/persons.txt.bloom from data/persons.txt (on the configured StorageMode)
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || !args[0].equals("rebuild")) {
+            System.err.println("usage: PersonIdFilter rebuild [registry] [fpp]");
+            System.exit(2);
+        }
+        Path registry = Paths.get(args.length > 1 ? args[1] : Person.FILE_PATH).toAbsolutePath().normalize();
+        double fpp = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_FPP;
+
+        CrossProcessLock lock = CrossProcessLock.forFile(registry.resolveSibling(registry.getFileName() + ".lock"));
+        Object owner = new Object();
+        lock.acquire(owner);
+        try {
+            PersonStore store = StorageMode.configured().open(registry);
+            List<String> ids = store.loadRecords().stream().map(PersonRecord::personID).distinct().toList();
+            long fingerprint = store.fingerprint();
+            store.close();
+            try (PersonIdFilter f = build(fileFor(registry), ids, fpp)) {
+                f.describe(fingerprint);
+                System.out.println("Rebuilt " + f.file + ": " + ids.size() + " IDs, " + f.bits / 8 + " bytes, "
+                        + f.probes + " probes, room for " + f.capacity + " IDs at " + fpp);
+            }
+        } finally {
+            lock.release();
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package au.edu.rmit.sct;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Cursor-based parser for persons file lines, over a CharSequence or a UTF-8 byte[] / ByteBuffer region.
+
+    format: personID|firstName|lastName|address|birthdate|isSuspended|demeritData
+    The first three '|' end the ID and the names, the last three start the birthdate,
+    the suspension flag and the demerits; the address is everything in between, so it
+    may contain '|' itself. demeritData is "DD-MM-YYYY:points;" entries; entries without
+    a ':' are skipped, an invalid date or points value fails the whole line. This is
+    exactly what Person.parseFromLine has always accepted.
+
+    Two modes:
+      - parse(...) builds the Person and allocates only its field values, or returns
+        a Result describing why the line was rejected
+      - visit(...) allocates nothing: it reports field ranges and decoded offences to a
+        Visitor, so a caller that only needs the ID (or just wants to validate) never
+        builds the rest. On failure the visitor may already have seen part of the line.
+    The delimiters are ASCII, so scanning UTF-8 bytes finds the same fields as scanning chars.
+    A parser instance is reusable but not thread-safe; the static parse methods keep one per thread.
+*/
+
+public final class PersonLineParser {
+
+    public enum Field { PERSON_ID, FIRST_NAME, LAST_NAME, ADDRESS, BIRTHDATE }
+
+    public enum Status {
+        OK,
+        NULL_LINE,          // no line at all
+        MISSING_FIELDS,     // fewer than six '|' separators around the address
+        BAD_OFFENCE_DATE,   // a demerit entry whose date is not a valid DD-MM-YYYY
+        BAD_POINTS          // a demerit entry whose points are not an int
+    }
+
+    // receives the parts of a line as they are found; ranges index the visited input
+    public interface Visitor {
+        default void field(Field field, int from, int to) {
+        }
+
+        default void suspended(boolean suspended) {
+        }
+
+        default void offence(int epochDay, int points) {
+        }
+
+        // false skips the demerit list altogether: no offence() calls, and no validation of it
+        default boolean wantsOffences() {
+            return true;
+        }
+    }
+
+    // outcome of parse(): the Person, or null with the reason and where in the input it was found
+    public record Result(Person person, Status status, int errorOffset) {
+
+        public boolean ok() {
+            return status == Status.OK;
+        }
+
+        public String message() {
+            return ok() ? "OK" : status + " at offset " + errorOffset;
+        }
+    }
+
+    private static final ThreadLocal<PersonLineParser> PER_THREAD = ThreadLocal.withInitial(PersonLineParser::new);
+
+    private final CharsInput chars = new CharsInput();
+    private final BytesInput bytes = new BytesInput();
+    private final BufferInput buffer = new BufferInput();
+    private final Builder builder = new Builder();
+
+    private int errorOffset = -1;
+
+    // VISITOR MODE
+
+    public Status visit(CharSequence line, Visitor visitor) {
+        if (line == null) {
+            return fail(Status.NULL_LINE, 0);
+        }
+        return visit(line, 0, line.length(), visitor);
+    }
+
+    // visit line[from, to)
+    public Status visit(CharSequence line, int from, int to, Visitor visitor) {
+        chars.s = line;
+        try {
+            return run(chars, from, to, visitor);
+        } finally {
+            chars.s = null;
+        }
+    }
+
+    // visit the UTF-8 bytes utf8[from, to)
+    public Status visit(byte[] utf8, int from, int to, Visitor visitor) {
+        bytes.b = utf8;
+        try {
+            return run(bytes, from, to, visitor);
+        } finally {
+            bytes.b = null;
+        }
+    }
+
+    // visit the UTF-8 bytes at absolute indexes [from, to) of the buffer; its position is left alone
+    public Status visit(ByteBuffer utf8, int from, int to, Visitor visitor) {
+        buffer.b = utf8;
+        try {
+            return run(buffer, from, to, visitor);
+        } finally {
+            buffer.b = null;
+        }
+    }
+
+    // where the last failed visit found its problem, or -1 after a successful one
+    public int errorOffset() {
+        return errorOffset;
+    }
+
+    // MATERIALIZING MODE
+
+    public static Result parse(CharSequence line) {
+        if (line == null) {
+            return new Result(null, Status.NULL_LINE, 0);
+        }
+        return parse(line, 0, line.length());
+    }
+
+    public static Result parse(CharSequence line, int from, int to) {
+        PersonLineParser p = PER_THREAD.get();
+        p.chars.s = line;
+        try {
+            return p.build(p.chars, from, to);
+        } finally {
+            p.chars.s = null;
+        }
+    }
+
+    public static Result parse(byte[] utf8, int from, int to) {
+        PersonLineParser p = PER_THREAD.get();
+        p.bytes.b = utf8;
+        try {
+            return p.build(p.bytes, from, to);
+        } finally {
+            p.bytes.b = null;
+        }
+    }
+
+    public static Result parse(ByteBuffer utf8, int from, int to) {
+        PersonLineParser p = PER_THREAD.get();
+        p.buffer.b = utf8;
+        try {
+            return p.build(p.buffer, from, to);
+        } finally {
+            p.buffer.b = null;
+        }
+    }
+
+    private Result build(Input in, int from, int to) {
+        builder.reset();
+        Status status = run(in, from, to, builder);
+        if (status != Status.OK) {
+            return new Result(null, status, errorOffset);
+        }
+        int[] r = builder.ranges;
+        Person person = new Person(
+                in.string(r[0], r[1]),
+                in.string(r[2], r[3]),
+                in.string(r[4], r[5]),
+                in.string(r[6], r[7]),
+                in.string(r[8], r[9]),
+                builder.suspended,
+                builder.history);
+        builder.history = null;  // handed over to the Person
+        return new Result(person, Status.OK, -1);
+    }
+
+    // collects field ranges and offences for build()
+    private static final class Builder implements Visitor {
+        final int[] ranges = new int[10];
+        boolean suspended;
+        DemeritHistory history;
+
+        void reset() {
+            suspended = false;
+            history = new DemeritHistory();
+        }
+
+        @Override
+        public void field(Field field, int from, int to) {
+            ranges[field.ordinal() * 2] = from;
+            ranges[field.ordinal() * 2 + 1] = to;
+        }
+
+        @Override
+        public void suspended(boolean suspended) {
+            this.suspended = suspended;
+        }
+
+        @Override
+        public void offence(int epochDay, int points) {
+            history.record(epochDay, points);
+        }
+    }
+
+    // THE CURSOR
+
+    private Status run(Input in, int from, int to, Visitor v) {
+        errorOffset = -1;
+
+        int idx1 = in.indexOf('|', from, to);
+        if (idx1 < 0) return fail(Status.MISSING_FIELDS, to);
+        int idx2 = in.indexOf('|', idx1 + 1, to);
+        if (idx2 < 0) return fail(Status.MISSING_FIELDS, to);
+        int idx3 = in.indexOf('|', idx2 + 1, to);
+        if (idx3 < 0) return fail(Status.MISSING_FIELDS, to);
+
+        // the last three separators, all after the third one
+        int idxLast1 = in.lastIndexOf('|', idx3 + 1, to);
+        if (idxLast1 < 0) return fail(Status.MISSING_FIELDS, idx3);
+        int idxLast2 = in.lastIndexOf('|', idx3 + 1, idxLast1);
+        if (idxLast2 < 0) return fail(Status.MISSING_FIELDS, idx3);
+        int idxLast3 = in.lastIndexOf('|', idx3 + 1, idxLast2);
+        if (idxLast3 < 0) return fail(Status.MISSING_FIELDS, idx3);
+
+        v.field(Field.PERSON_ID,  from,         idx1);
+        v.field(Field.FIRST_NAME, idx1 + 1,     idx2);
+        v.field(Field.LAST_NAME,  idx2 + 1,     idx3);
+        v.field(Field.ADDRESS,    idx3 + 1,     idxLast3);
+        v.field(Field.BIRTHDATE,  idxLast3 + 1, idxLast2);
+        v.suspended(in.isTrue(idxLast2 + 1, idxLast1));
+        if (!v.wantsOffences()) {
+            return Status.OK;
+        }
+
+        // demerit entries "DD-MM-YYYY:points", separated by ';'
+        int entry = idxLast1 + 1;
+        while (entry <= to) {
+            int end = in.indexOf(';', entry, to);
+            if (end < 0) {
+                end = to;
+            }
+            int colon = in.indexOf(':', entry, end);
+            if (colon >= 0) {
+                int day = in.date(entry, colon);
+                if (day == DateCodec.INVALID) {
+                    return fail(Status.BAD_OFFENCE_DATE, entry);
+                }
+                long points = in.points(colon + 1, end);
+                if (points == NOT_AN_INT) {
+                    return fail(Status.BAD_POINTS, colon + 1);
+                }
+                v.offence(day, (int) points);
+            }
+            entry = end + 1;
+        }
+        return Status.OK;
+    }
+
+    private Status fail(Status status, int offset) {
+        errorOffset = offset;
+        return status;
+    }
+
+    // INPUTS
+
+    private static final long NOT_AN_INT = Long.MIN_VALUE;
+
+    // one character (or UTF-8 byte) source; all indexes are absolute
+    private abstract static class Input {
+
+        abstract int at(int i);
+
+        abstract int date(int from, int to);
+
+        abstract String string(int from, int to);
+
+        int indexOf(char c, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (at(i) == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // last index of c in [from, to)
+        int lastIndexOf(char c, int from, int to) {
+            for (int i = to - 1; i >= from; i--) {
+                if (at(i) == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // Boolean.parseBoolean: "true" in any case
+        boolean isTrue(int from, int to) {
+            return to - from == 4
+                    && (at(from)     | 0x20) == 't'
+                    && (at(from + 1) | 0x20) == 'r'
+                    && (at(from + 2) | 0x20) == 'u'
+                    && (at(from + 3) | 0x20) == 'e';
+        }
+
+        // Integer.parseInt over [from, to), or NOT_AN_INT
+        long points(int from, int to) {
+            int i = from;
+            boolean negative = false;
+            if (i < to && (at(i) == '-' || at(i) == '+')) {
+                negative = at(i) == '-';
+                i++;
+            }
+            if (i == to) {
+                return NOT_AN_INT;
+            }
+            long value = 0;
+            for (; i < to; i++) {
+                int d = at(i) - '0';
+                if (d < 0 || d > 9) {
+                    return slowPoints(from, to);
+                }
+                value = value * 10 + d;
+                if (value > 1L + Integer.MAX_VALUE) {
+                    return NOT_AN_INT;
+                }
+            }
+            value = negative ? -value : value;
+            return value > Integer.MAX_VALUE ? NOT_AN_INT : value;
+        }
+
+        // anything but ASCII digits: let Integer.parseInt decide (it also takes non-ASCII digits)
+        long slowPoints(int from, int to) {
+            try {
+                return Integer.parseInt(string(from, to));
+            } catch (NumberFormatException e) {
+                return NOT_AN_INT;
+            }
+        }
+    }
+
+    private static final class CharsInput extends Input {
+        CharSequence s;
+
+        @Override
+        int at(int i) {
+            return s.charAt(i);
+        }
+
+        @Override
+        int date(int from, int to) {
+            return DateCodec.parse(s, from, to);
+        }
+
+        @Override
+        String string(int from, int to) {
+            return s.subSequence(from, to).toString();
+        }
+
+        @Override
+        long slowPoints(int from, int to) {
+            try {
+                return Integer.parseInt(s, from, to, 10);
+            } catch (NumberFormatException e) {
+                return NOT_AN_INT;
+            }
+        }
+    }
+
+    private static final class BytesInput extends Input {
+        byte[] b;
+
+        @Override
+        int at(int i) {
+            return b[i] & 0xFF;
+        }
+
+        @Override
+        int date(int from, int to) {
+            return DateCodec.parse(b, from, to);
+        }
+
+        @Override
+        String string(int from, int to) {
+            return new String(b, from, to - from, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class BufferInput extends Input {
+        ByteBuffer b;
+
+        @Override
+        int at(int i) {
+            return b.get(i) & 0xFF;
+        }
+
+        @Override
+        int date(int from, int to) {
+            return DateCodec.parse(b, from, to);
+        }
+
+        @Override
+        String string(int from, int to) {
+            if (b.hasArray()) {
+                return new String(b.array(), b.arrayOffset() + from, to - from, StandardCharsets.UTF_8);
+            }
+            byte[] copy = new byte[to - from];
+            b.get(from, copy);
+            return new String(copy, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package au.edu.rmit.sct;
+
+import java.util.Objects;
+
+/**
+ * A conjunction of predicates over the registry, answered by PersonRepository.query().
+
+    Every predicate is optional; each call returns a new query with one more predicate:
+      PersonQuery.all().city("Geelong").suspended(true)
+      PersonQuery.all().lastName("Nguyen").ageBetween(18, 25)
+    lastName and city match exactly (case-sensitive). The city is the third part of the
+    "StreetNumber|Street|City|State|Country" address. Ages are whole years, counted like
+    addPerson/addDemeritPoints count them; records with an unparseable birthdate never
+    match an age or birth date predicate.
+*/
+
+public final class PersonQuery {
+
+    // ages from here on reach back past year 0001, so they put no lower bound on the birthdate
+    private static final int MAX_AGE = 9_000;
+
+    private static final PersonQuery ALL = new PersonQuery(null, null, null, Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+    private final String lastName;
+    private final String city;
+    private final Boolean suspended;
+    // inclusive epoch-day range of birthdates; MIN/MAX_VALUE when unrestricted
+    private final int bornFrom;
+    private final int bornTo;
+
+    private PersonQuery(String lastName, String city, Boolean suspended, int bornFrom, int bornTo) {
+        this.lastName = lastName;
+        this.city = city;
+        this.suspended = suspended;
+        this.bornFrom = bornFrom;
+        this.bornTo = bornTo;
+    }
+
+    // matches every record
+    public static PersonQuery all() {
+        return ALL;
+    }
+
+    public PersonQuery lastName(String lastName) {
+        return new PersonQuery(Objects.requireNonNull(lastName), city, suspended, bornFrom, bornTo);
+    }
+
+    public PersonQuery city(String city) {
+        return new PersonQuery(lastName, Objects.requireNonNull(city), suspended, bornFrom, bornTo);
+    }
+
+    public PersonQuery suspended(boolean suspended) {
+        return new PersonQuery(lastName, city, suspended, bornFrom, bornTo);
+    }
+
+    // born on or between the two epoch days
+    public PersonQuery bornBetween(int fromDay, int toDay) {
+        return new PersonQuery(lastName, city, suspended, Math.max(bornFrom, fromDay), Math.min(bornTo, toDay));
+    }
+
+    // minAge <= age <= maxAge today
+    public PersonQuery ageBetween(int minAge, int maxAge) {
+        return ageBetween(minAge, maxAge, DateCodec.today());
+    }
+
+    // minAge <= age <= maxAge on the reference day
+    public PersonQuery ageBetween(int minAge, int maxAge, int referenceDay) {
+        // age >= k exactly when born on or before the same day k years earlier
+        int latest = DateCodec.minusYears(referenceDay, Math.max(0, minAge));
+        int earliest = maxAge >= MAX_AGE ? Integer.MIN_VALUE : DateCodec.minusYears(referenceDay, maxAge + 1) + 1;
+        return bornBetween(earliest, latest);
+    }
+
+    // ACCESS (null / MIN_VALUE / MAX_VALUE when the predicate is not set)
+
+    public String lastName() {
+        return lastName;
+    }
+
+    public String city() {
+        return city;
+    }
+
+    public Boolean suspended() {
+        return suspended;
+    }
+
+    public int bornFrom() {
+        return bornFrom;
+    }
+
+    public int bornTo() {
+        return bornTo;
+    }
+
+    boolean hasBirthRange() {
+        return bornFrom != Integer.MIN_VALUE || bornTo != Integer.MAX_VALUE;
+    }
+
+    // the city part of an address, or null if it has fewer than three parts
+    static String cityOf(String address) {
+        if (address == null) {
+            return null;
+        }
+        int first = address.indexOf('|');
+        int second = first < 0 ? -1 : address.indexOf('|', first + 1);
+        if (second < 0) {
+            return null;
+        }
+        int third = address.indexOf('|', second + 1);
+        return address.substring(second + 1, third < 0 ? address.length() : third);
+    }
+
+    // the query evaluated on one Person, without any index
+    public boolean matches(Person p) {
+        if (lastName != null && !lastName.equals(p.getLastName())) {
+            return false;
+        }
+        if (city != null && !city.equals(cityOf(p.getAddress()))) {
+            return false;
+        }
+        if (suspended != null && suspended != p.isSuspended()) {
+            return false;
+        }
+        if (hasBirthRange()) {
+            int born = DateCodec.parse(p.getBirthdate());
+            return born != DateCodec.INVALID && born >= bornFrom && born <= bornTo;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "PersonQuery[lastName=" + lastName + ", city=" + city + ", suspended=" + suspended
+                + ", born=" + bornFrom + ".." + bornTo + "]";
+    }
+}
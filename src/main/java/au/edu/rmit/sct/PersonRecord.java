@@ -0,0 +1,318 @@
+package au.edu.rmit.sct;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A stored Person that is decoded only as far as it is read.
+
+    A record loaded from the text file keeps its raw line and decodes just the personID,
+    which the registry index needs. The other fields are cut out of the line when they are
+    asked for, the demerit list is parsed only by demerits() or person(), and person()
+    builds the full Person once and caches it. A record that is never read is written back
+    as the same raw line, so duplicate checks, ID lookups and rewrites of a big registry
+    never build Persons they do not touch.
+
+    A record of a big file (see ParallelPersonLoader.loadRecords) does not even keep its
+    line: it points into the read-only mapping of the file and holds just its personID
+    and the line's offsets, so the lines stay in the page cache rather than the heap and
+    are decoded from the mapping each time they are read. The file behind such records
+    must only ever be replaced by a rename, never truncated or rewritten in place, which
+    is how every store in this package writes it.
+
+    Records are immutable: the cached Person must never be mutated (take a copy()), and a
+    changed Person is stored as a new record with PersonRecord.of(), or with encode() to
+    keep just its line (PersonRepository does, and keeps the Person in a PersonCache).
+*/
+
+public final class PersonRecord {
+
+    // one parser and field collector per thread, reused for every record
+    private static final ThreadLocal<Scanner> SCANNER = ThreadLocal.withInitial(Scanner::new);
+
+    private final String line;        // raw line, or null for a mapped record or one made from a Person
+    private final ByteBuffer mapping;  // mapped record: the UTF-8 line is mapping[from, to)
+    private final int from;
+    private final int to;
+    private final String personID;
+    private volatile Person person;   // decoded on first person() call
+
+    private PersonRecord(String line, String personID, Person person) {
+        this(line, null, 0, 0, personID, person);
+    }
+
+    private PersonRecord(String line, ByteBuffer mapping, int from, int to, String personID, Person person) {
+        this.line = line;
+        this.mapping = mapping;
+        this.from = from;
+        this.to = to;
+        this.personID = personID;
+        this.person = person;
+    }
+
+    // a lazy record over one (trimmed) persons file line, or null if parseFromLine would reject it.
+    // the whole line is validated here, so decoding it later cannot fail
+    public static PersonRecord parse(String line) {
+        Scanner s = SCANNER.get();
+        s.reset(PersonLineParser.Field.PERSON_ID, true, false);
+        if (s.parser.visit(line, s) != PersonLineParser.Status.OK) {
+            return null;
+        }
+        return new PersonRecord(line, line.substring(s.from, s.to), null);
+    }
+
+    // a lazy record over the (trimmed) UTF-8 line mapping[from, to), or null if parseFromLine would
+    // reject the line. only the personID is copied out: the record reads everything else from
+    // the mapping, which must stay unchanged for as long as the record is used
+    static PersonRecord mapped(ByteBuffer mapping, int from, int to) {
+        Scanner s = SCANNER.get();
+        s.reset(PersonLineParser.Field.PERSON_ID, true, false);
+        if (s.parser.visit(mapping, from, to, s) != PersonLineParser.Status.OK) {
+            return null;
+        }
+        return new PersonRecord(null, mapping, from, to, text(mapping, s.from, s.to), null);
+    }
+
+    // an already decoded record; the Person must not be mutated afterwards
+    public static PersonRecord of(Person person) {
+        return new PersonRecord(null, person.getPersonID(), person);
+    }
+
+    // an undecoded record over the Person's line, so the record does not keep the Person alive.
+    // falls back to of() for the rare Person whose line would not read back as the same Person
+    // (e.g. a '|' in a name), which keeps it exactly as it is in memory
+    public static PersonRecord encode(Person person) {
+        String line = person.toLine();
+        Echo echo = ECHO.get();
+        if (!echo.matches(person, line)) {
+            return of(person);
+        }
+        return new PersonRecord(line, person.getPersonID(), null);
+    }
+
+    // ACCESS
+
+    public String personID() {
+        return personID;
+    }
+
+    // the persons file line for this record, without re-encoding a record that was never decoded
+    public String line() {
+        return hasLine() ? rawLine() : person.toLine();
+    }
+
+    // whether the record still has its original line (in heap or mapped), i.e. was not made from a Person
+    boolean hasLine() {
+        return line != null || mapping != null;
+    }
+
+    // the original line, or null for a record made from a Person. a mapped record decodes it on every call
+    String rawLine() {
+        return mapping != null ? text(mapping, from, to) : line;
+    }
+
+    // the original line, UTF-8 encoded, if the record is mapped, otherwise null
+    ByteBuffer mappedLine() {
+        return mapping != null ? mapping.slice(from, to - from) : null;
+    }
+
+    // the full Person, decoded on first call and shared afterwards: treat it as read-only
+    public Person person() {
+        Person p = person;
+        if (p == null) {
+            p = decode();
+            person = p;
+        }
+        return p;
+    }
+
+    // a new Person decoded from the original line, without caching it in the record; callers
+    // check hasLine() first. cannot fail: the line was validated when the record was made
+    Person decode() {
+        return mapping != null ? PersonLineParser.parse(mapping, from, to).person() : Person.parseFromLine(line);
+    }
+
+    public boolean isDecoded() {
+        return person != null;
+    }
+
+    // PROJECTIONS: single fields without building the Person
+
+    public String firstName() {
+        Person p = person;
+        return p != null ? p.getFirstName() : field(PersonLineParser.Field.FIRST_NAME);
+    }
+
+    public String lastName() {
+        Person p = person;
+        return p != null ? p.getLastName() : field(PersonLineParser.Field.LAST_NAME);
+    }
+
+    public String address() {
+        Person p = person;
+        return p != null ? p.getAddress() : field(PersonLineParser.Field.ADDRESS);
+    }
+
+    public String birthdate() {
+        Person p = person;
+        return p != null ? p.getBirthdate() : field(PersonLineParser.Field.BIRTHDATE);
+    }
+
+    public boolean isSuspended() {
+        Person p = person;
+        if (p != null) {
+            return p.isSuspended();
+        }
+        return scan(PersonLineParser.Field.PERSON_ID, false).suspended;
+    }
+
+    // a fresh copy of the demerit history, parsed from the line on every call until the record is decoded
+    public DemeritHistory demerits() {
+        Person p = person;
+        if (p != null) {
+            return p.getDemeritHistory().copy();
+        }
+        return scan(PersonLineParser.Field.PERSON_ID, true).takeHistory();
+    }
+
+    private String field(PersonLineParser.Field field) {
+        Scanner s = scan(field, false);
+        return mapping != null ? text(mapping, s.from, s.to) : line.substring(s.from, s.to);
+    }
+
+    private Scanner scan(PersonLineParser.Field field, boolean offences) {
+        Scanner s = SCANNER.get();
+        s.reset(field, offences, offences);
+        if (mapping != null) {
+            s.parser.visit(mapping, from, to, s);
+        } else {
+            s.parser.visit(line, s);
+        }
+        return s;
+    }
+
+    private static String text(ByteBuffer utf8, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        utf8.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // picks one field range, the suspension flag and, if asked to, the offences out of a line
+    private static final class Scanner implements PersonLineParser.Visitor {
+        final PersonLineParser parser = new PersonLineParser();
+        PersonLineParser.Field wanted;
+        boolean offences;      // parse (and so validate) the demerit list
+        boolean keepOffences;  // and collect it into history
+        int from;
+        int to;
+        boolean suspended;
+        DemeritHistory history;
+
+        void reset(PersonLineParser.Field wanted, boolean offences, boolean keepOffences) {
+            this.wanted = wanted;
+            this.offences = offences;
+            this.keepOffences = keepOffences;
+            this.history = null;
+        }
+
+        DemeritHistory takeHistory() {
+            DemeritHistory h = history != null ? history : new DemeritHistory();
+            history = null;
+            return h;
+        }
+
+        @Override
+        public void field(PersonLineParser.Field field, int from, int to) {
+            if (field == wanted) {
+                this.from = from;
+                this.to = to;
+            }
+        }
+
+        @Override
+        public void suspended(boolean suspended) {
+            this.suspended = suspended;
+        }
+
+        @Override
+        public void offence(int epochDay, int points) {
+            if (!keepOffences) {
+                return;
+            }
+            if (history == null) {
+                history = new DemeritHistory();
+            }
+            history.record(epochDay, points);
+        }
+
+        @Override
+        public boolean wantsOffences() {
+            return offences;
+        }
+    }
+
+    // ENCODING CHECK
+
+    private static final ThreadLocal<Echo> ECHO = ThreadLocal.withInitial(Echo::new);
+
+    // checks in one pass over a Person's line, without building anything, that it reads back
+    // as the same Person: every field range holds the field's value, and the flag and offences match
+    private static final class Echo implements PersonLineParser.Visitor {
+        final PersonLineParser parser = new PersonLineParser();
+        Person person;
+        String line;
+        DemeritHistory history;
+        int offences;
+        boolean same;
+
+        boolean matches(Person person, String line) {
+            this.person = person;
+            this.line = line;
+            this.history = person.getDemeritHistory();
+            this.offences = 0;
+            this.same = true;
+            try {
+                return parser.visit(line, this) == PersonLineParser.Status.OK && same && offences == history.size();
+            } finally {
+                this.person = null;
+                this.line = null;
+                this.history = null;
+            }
+        }
+
+        @Override
+        public void field(PersonLineParser.Field field, int from, int to) {
+            String value = switch (field) {
+                case PERSON_ID  -> person.getPersonID();
+                case FIRST_NAME -> person.getFirstName();
+                case LAST_NAME  -> person.getLastName();
+                case ADDRESS    -> person.getAddress();
+                case BIRTHDATE  -> person.getBirthdate();
+            };
+            // a null field is written as "null", which reads back as the string, not as null
+            if (value == null || value.length() != to - from || !line.regionMatches(from, value, 0, value.length())) {
+                same = false;
+            }
+        }
+
+        @Override
+        public void suspended(boolean suspended) {
+            if (suspended != person.isSuspended()) {
+                same = false;
+            }
+        }
+
+        @Override
+        public void offence(int epochDay, int points) {
+            int i = offences++;
+            if (i >= history.size() || history.dayAt(i) != epochDay || history.pointsAt(i) != points) {
+                same = false;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return line();
+    }
+}
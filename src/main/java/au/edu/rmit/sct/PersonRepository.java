@@ -0,0 +1,993 @@
+package au.edu.rmit.sct;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * In-memory registry of every Person in a persons file, indexed by personID.
+
+    The file is parsed once and kept as the source of truth: every mutation is handed
+    to the PersonStore as RegistryChange records, and the index is reloaded whenever
+    the store was changed or removed by someone else since we last read or wrote it.
+
+    A line whose personID an earlier line already has is not indexed (the first one wins,
+    as the linear search did), but it is kept with the record it followed and written
+    back after it, so a rewrite never drops lines from the file.
+
+    Records are loaded lazily (PersonRecord): the index only decodes personIDs, and
+    untouched records are written back as their original lines. Records stay in that
+    compact form: a read decodes the Person into a bounded PersonCache, and an update
+    stores the new version as its line and writes the Person through to the cache, so
+    the decoded working set stays within the cache budget. A file of at least
+    roadregistry.parallelLoadBytes is loaded mapped: its records hold only their personID
+    and the offsets of their line, which is read from the page cache on a cache miss. Only
+    the lines of records changed since the load are kept in heap.
+
+    Committed changes are published to subscribers of events() (RegistryEvents) once the
+    store has made them durable; a change whose durability wait fails is never published.
+
+    With a PersonIdFilter sidecar, every ID is added to the filter before it is stored, and
+    an add that would first have to (re)load the registry just to check its personID is
+    free skips the load when the filter has never seen that ID and still describes the
+    registry (no one without the filter wrote since); the store appends it and the index
+    is reloaded only when it is next needed. A repeated ID still gets the exact
+    check against the loaded index.
+
+    Queries (PersonQuery) run on secondary indexes (RegistryIndex) that are built on the
+    first query and then maintained by every add and update until the next reload.
+
+    concurrency:
+      - stored Persons are copy-on-write: an update works on a copy and publishes it,
+        so readers and store rewrites never see a half-applied change
+      - updates of existing records hold the index read lock plus the lock stripe of
+        their personID until their change is committed, so unrelated people update in
+        parallel while the changes to one person reach the store in order
+      - adds, ID changes, batches and reloads change the index itself and take the write lock
+      - the store's durability wait (DurabilityMode) runs after the index and stripe locks
+        are released, so concurrent mutations can share one sync
+      - with a process lock file, mutations also hold a FileChannel lock on it, so several
+        JVMs can share one registry: each reloads what the others wrote before mutating.
+        It is held through the durability wait, so a group sync that renames the store's
+        files in never lands on top of another process's write
+*/
+
+public class PersonRepository {
+
+    // one repository per file, shared by every Person operation against it
+    private static final Map<Path, PersonRepository> OPEN = new ConcurrentHashMap<>();
+
+    private static final int STRIPES = 64;
+
+    // offence timelines kept for standingAsOf(), by record version
+    private static final int TIMELINES = 1024;
+
+    private final PersonStore store;
+
+    // null when the registry is private to this JVM
+    private final CrossProcessLock processLock;
+
+    // sidecar of the PersonIdFilter, or null for none
+    private final Path filterFile;
+
+    // opened when first needed; used under the write lock (and the process lock, if any)
+    private PersonIdFilter filter;
+
+    // insertion ordered, so rewrites keep the records in file order.
+    // structurally changed only under the write lock
+    private final LinkedHashMap<String, Slot> byId = new LinkedHashMap<>();
+
+    // every slot by row number, the order they were loaded or added in; changed under the write lock
+    private final ArrayList<Slot> rows = new ArrayList<>();
+
+    // how many loaded lines repeat an earlier line's personID (see Slot.shadowed)
+    private int shadowedLines;
+
+    private final ReentrantReadWriteLock index = new ReentrantReadWriteLock();
+    private final StripedLock stripes = new StripedLock(STRIPES);
+
+    // recently read or written Persons, by record version
+    private final PersonCache cache;
+
+    // secondary indexes, null until the first query. queries select under the read lock, so
+    // they run in parallel; publishing a record takes the write lock, so a query never sees
+    // a record and its index entries disagree
+    private final ReentrantReadWriteLock queryLock = new ReentrantReadWriteLock();
+    private RegistryIndex queryIndex;  // guarded by queryLock
+
+    // recently queried offence timelines, keyed by record identity (a version is never mutated)
+    private final Map<PersonRecord, OffenceTimeline> timelines = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<PersonRecord, OffenceTimeline> eldest) {
+            return size() > TIMELINES;
+        }
+    };
+
+    // change stream, null until someone asks for it
+    private volatile RegistryEvents events;
+
+    // this thread's staged events, settled once its durability wait is over (see releaseEvents)
+    private final ThreadLocal<ArrayList<RegistryEvents.Staged>> heldEvents = ThreadLocal.withInitial(ArrayList::new);
+
+    // single-writer request queue, null until someone asks for it
+    private volatile AsyncRegistry async;
+
+    private volatile boolean loaded;
+
+    // the currently published version of one record
+    private static final class Slot {
+        final int row;
+        volatile PersonRecord record;
+        // lines that followed this record in the file with a personID an earlier line already
+        // has, or null for none: never indexed or changed, only written back after the record
+        List<PersonRecord> shadowed;
+
+        Slot(int row, PersonRecord record) {
+            this.row = row;
+            this.record = record;
+        }
+    }
+
+    public PersonRepository(PersonStore store) {
+        this(store, null);
+    }
+
+    // processLockFile: file to FileChannel-lock around mutations, or null for no cross-process locking
+    public PersonRepository(PersonStore store, Path processLockFile) {
+        this(store, processLockFile, PersonCache.configured());
+    }
+
+    public PersonRepository(PersonStore store, Path processLockFile, PersonCache cache) {
+        this(store, processLockFile, cache, null);
+    }
+
+    // filterFile: PersonIdFilter sidecar to keep and consult, or null for none
+    public PersonRepository(PersonStore store, Path processLockFile, PersonCache cache, Path filterFile) {
+        this.store = store;
+        this.processLock = processLockFile == null ? null : CrossProcessLock.forFile(processLockFile);
+        this.cache = cache;
+        this.filterFile = filterFile;
+    }
+
+    PersonRepository(Path file) {
+        this(new TextFileStore(file));
+    }
+
+    // the shared repository for a file, on the configured StorageMode, locked against other
+    // processes through "<file>.lock" (a sidecar: closing any other handle on the data file
+    // itself would silently drop a POSIX lock), with its personIDs in "<file>.bloom"
+    public static PersonRepository open(Path file) {
+        return OPEN.computeIfAbsent(file.toAbsolutePath().normalize(),
+                path -> new PersonRepository(StorageMode.configured().open(path),
+                        path.resolveSibling(path.getFileName() + ".lock"), PersonCache.configured(),
+                        PersonIdFilter.ENABLED ? PersonIdFilter.fileFor(path) : null));
+    }
+
+    public PersonStore getStore() {
+        return store;
+    }
+
+    // QUERIES
+
+    public boolean contains(String personID) {
+        lockRead();
+        try {
+            return byId.containsKey(personID);
+        } finally {
+            index.readLock().unlock();
+        }
+    }
+
+    // returns a detached copy of the stored Person, or null if there is no such personID
+    public Person find(String personID) {
+        lockRead();
+        try {
+            Slot slot = byId.get(personID);
+            return slot == null ? null : person(slot.record).copy();
+        } finally {
+            index.readLock().unlock();
+        }
+    }
+
+    public List<Person> findAll() {
+        lockRead();
+        try {
+            List<Person> all = new ArrayList<>(byId.size());
+            for (Slot slot : byId.values()) {
+                all.add(decode(slot.record));
+            }
+            return all;
+        } finally {
+            index.readLock().unlock();
+        }
+    }
+
+    // every stored record in file order, without decoding any of them: for scans and
+    // exports that read only a few fields (see the PersonRecord projections)
+    public List<PersonRecord> records() {
+        lockRead();
+        try {
+            List<PersonRecord> all = new ArrayList<>(byId.size());
+            for (Slot slot : byId.values()) {
+                all.add(slot.record);
+            }
+            return all;
+        } finally {
+            index.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lockRead();
+        try {
+            return byId.size();
+        } finally {
+            index.readLock().unlock();
+        }
+    }
+
+    // decoded copies of every Person matching the query, in file order
+    public List<Person> query(PersonQuery q) {
+        List<Person> out = new ArrayList<>();
+        for (PersonRecord r : queryRecords(q)) {
+            out.add(decode(r));
+        }
+        return out;
+    }
+
+    // the matching records without decoding them, in file order
+    public List<PersonRecord> queryRecords(PersonQuery q) {
+        lockRead();
+        try {
+            RegistryIndex query = lockQueryIndex();
+            try {
+                int[] matches = query.select(q);
+                List<PersonRecord> out = new ArrayList<>(matches.length);
+                for (int row : matches) {
+                    out.add(rows.get(row).record);
+                }
+                return out;
+            } finally {
+                queryLock.readLock().unlock();
+            }
+        } finally {
+            index.readLock().unlock();
+        }
+    }
+
+    public int count(PersonQuery q) {
+        lockRead();
+        try {
+            RegistryIndex query = lockQueryIndex();
+            try {
+                return query.select(q).length;
+            } finally {
+                queryLock.readLock().unlock();
+            }
+        } finally {
+            index.readLock().unlock();
+        }
+    }
+
+    // MUTATIONS
+
+    // adds a copy of the given Person and appends it to the file.
+    // returns false if the personID is already taken or the write fails
+    public boolean add(Person person) {
+        if (!lockProcess()) {
+            return false;
+        }
+        int held = holdEvents();
+        boolean ok = false;
+        try {
+            ok = commitAdd(person) && awaitDurable();
+            return ok;
+        } finally {
+            unlockProcess();
+            releaseEvents(held, ok);
+        }
+    }
+
+    // the caller holds the process lock
+    private boolean commitAdd(Person person) {
+        Boolean unseen = addUnseen(person);
+        if (unseen != null) {
+            return unseen;
+        }
+        lockWrite();
+        try {
+            List<RegistryChange> changes = new ArrayList<>(1);
+            return insert(person, changes) && commit(changes);
+        } finally {
+            index.writeLock().unlock();
+        }
+    }
+
+    // adds every record whose personID is not taken yet, in order, and commits all of them with a
+    // single store write (one append for the text layouts). the records are stored as they are,
+    // so they must be valid. returns the personIDs that were taken, or null if the write fails
+    public List<String> addAll(Collection<PersonRecord> records) {
+        if (!lockProcess()) {
+            return null;
+        }
+        int held = holdEvents();
+        boolean ok = false;
+        try {
+            List<String> taken = new ArrayList<>();
+            ok = commitAddAll(records, taken) && awaitDurable();
+            return ok ? taken : null;
+        } finally {
+            unlockProcess();
+            releaseEvents(held, ok);
+        }
+    }
+
+    // the caller holds the process lock
+    private boolean commitAddAll(Collection<PersonRecord> records, List<String> taken) {
+        lockWrite();
+        try {
+            List<PersonRecord> fresh = new ArrayList<>(records.size());
+            List<String> ids = new ArrayList<>(records.size());
+            for (PersonRecord r : records) {
+                if (byId.containsKey(r.personID())) {
+                    taken.add(r.personID());
+                    continue;
+                }
+                // a placeholder, so a repeated ID in the records counts as taken
+                Slot slot = new Slot(rows.size(), null);
+                byId.put(r.personID(), slot);
+                rows.add(slot);
+                fresh.add(r);
+                ids.add(r.personID());
+            }
+            if (!filterIds(ids)) {
+                loaded = false;  // drop the placeholders
+                return false;
+            }
+            List<RegistryChange> changes = new ArrayList<>(fresh.size());
+            for (PersonRecord r : fresh) {
+                publish(byId.get(r.personID()), r);
+                changes.add(new RegistryChange.PersonAdded(r.personID(), r.line()));
+            }
+            return changes.isEmpty() || commit(changes);
+        } finally {
+            index.writeLock().unlock();
+        }
+    }
+
+    // runs the change against a copy of the stored Person with the given ID and, if it
+    // reports success, publishes the copy (re-indexed under a changed personID) and commits
+    // the difference to the store. the change may run twice, so it must only depend on
+    // the Person it is given and on the repository.
+    public boolean update(String personID, Predicate<Person> change) {
+        if (!lockProcess()) {
+            return false;
+        }
+        int held = holdEvents();
+        boolean ok = false;
+        try {
+            ok = commitUpdate(personID, change) && awaitDurable();
+            return ok;
+        } finally {
+            unlockProcess();
+            releaseEvents(held, ok);
+        }
+    }
+
+    // the caller holds the process lock
+    private boolean commitUpdate(String personID, Predicate<Person> change) {
+        // optimistic: most updates keep their personID and only need this person's stripe
+        lockRead();
+        ReentrantLock stripe = stripes.forKey(personID);
+        stripe.lock();
+        try {
+            Slot slot = byId.get(personID);
+            if (slot == null) {
+                return false;
+            }
+            Person before = person(slot.record);
+            Person after = before.copy();
+            if (!change.test(after)) {
+                return false;
+            }
+            if (Objects.equals(personID, after.getPersonID())) {
+                publish(slot, after);
+                List<RegistryChange> changes = RegistryChange.between(personID, before, after);
+                return changes.isEmpty() || commit(changes);
+            }
+            // the change renames the record: redo it below with the index to ourselves
+        } finally {
+            stripe.unlock();
+            index.readLock().unlock();
+        }
+
+        lockWrite();
+        try {
+            List<RegistryChange> changes = new ArrayList<>(2);
+            if (!apply(personID, change, changes)) {
+                return false;
+            }
+            return changes.isEmpty() || commit(changes);
+        } finally {
+            index.writeLock().unlock();
+        }
+    }
+
+    // a group of updates and adds that is committed to the store once, see updateBatch()
+    public interface Batch {
+        // same contract as PersonRepository.update(), minus the commit
+        boolean update(String personID, Predicate<Person> change);
+
+        // same contract as PersonRepository.add(), minus the commit
+        boolean add(Person person);
+    }
+
+    // runs every update and add the work makes against the in-memory records, then commits
+    // all of their changes with a single store write. returns false if that write fails
+    public boolean updateBatch(Consumer<Batch> work) {
+        if (!lockProcess()) {
+            return false;
+        }
+        int held = holdEvents();
+        boolean ok = false;
+        try {
+            ok = commitBatch(work) && awaitDurable();
+            return ok;
+        } finally {
+            unlockProcess();
+            releaseEvents(held, ok);
+        }
+    }
+
+    // the caller holds the process lock
+    private boolean commitBatch(Consumer<Batch> work) {
+        lockWrite();
+        try {
+            List<RegistryChange> changes = new ArrayList<>();
+            work.accept(new Batch() {
+                @Override
+                public boolean update(String personID, Predicate<Person> change) {
+                    return apply(personID, change, changes);
+                }
+
+                @Override
+                public boolean add(Person person) {
+                    return insert(person, changes);
+                }
+            });
+            return changes.isEmpty() || commit(changes);
+        } finally {
+            index.writeLock().unlock();
+        }
+    }
+
+    // recomputes every stored suspension as of referenceDay under the policy and commits the
+    // ones that changed with a single store write. the records are evaluated in parallel on a
+    // snapshot without decoding them; only the people whose status differs are then
+    // re-checked and updated under the write lock, so concurrent changes are never overwritten.
+    // returns the changes in file order, or null if the store write fails
+    public List<RegistryChange.SuspensionChanged> reevaluateSuspensions(SuspensionPolicy policy, int referenceDay) {
+        List<String> candidates = records().parallelStream()
+                .filter(r -> policy.isSuspended(r, referenceDay) != r.isSuspended())
+                .map(PersonRecord::personID)
+                .toList();
+
+        List<RegistryChange.SuspensionChanged> changed = new ArrayList<>();
+        boolean persisted = updateBatch(batch -> {
+            for (String personID : candidates) {
+                batch.update(personID, target -> {
+                    boolean suspended = policy.isSuspended(target, referenceDay);
+                    if (suspended == target.isSuspended()) {
+                        return false;
+                    }
+                    target.setSuspended(suspended);
+                    changed.add(new RegistryChange.SuspensionChanged(personID, suspended));
+                    return true;
+                });
+            }
+        });
+        return persisted ? changed : null;
+    }
+
+    // the person's standing as of the day under the policy, or null if there is no such personID.
+    // O(log offences) while the timeline of the person's current record is cached
+    public OffenceTimeline.Standing standingAsOf(String personID, SuspensionPolicy policy, int day) {
+        PersonRecord r;
+        lockRead();
+        try {
+            Slot slot = byId.get(personID);
+            if (slot == null) {
+                return null;
+            }
+            r = slot.record;
+        } finally {
+            index.readLock().unlock();
+        }
+        OffenceTimeline timeline;
+        synchronized (timelines) {
+            timeline = timelines.get(r);
+        }
+        if (timeline == null || !timeline.policy().equals(policy)) {
+            timeline = OffenceTimeline.of(r, policy);
+            synchronized (timelines) {
+                timelines.put(r, timeline);
+            }
+        }
+        return timeline.at(day);
+    }
+
+    // every person's standing as of the day, in file order: evaluated in parallel on a snapshot
+    // of the records without decoding them, and without filling the timeline cache
+    public List<OffenceTimeline.Standing> standingsAsOf(SuspensionPolicy policy, int day) {
+        return records().parallelStream()
+                .map(r -> OffenceTimeline.of(r, policy).at(day))
+                .toList();
+    }
+
+    public PersonCache.Stats cacheStats() {
+        return cache.stats();
+    }
+
+    // the stream of changes this repository commits from now on
+    public RegistryEvents events() {
+        RegistryEvents stream = events;
+        if (stream == null) {
+            synchronized (this) {
+                stream = events;
+                if (stream == null) {
+                    events = stream = new RegistryEvents();
+                }
+            }
+        }
+        return stream;
+    }
+
+    // the asynchronous API on this repository (AsyncRegistry)
+    public AsyncRegistry async() {
+        AsyncRegistry writer = async;
+        if (writer == null) {
+            synchronized (this) {
+                writer = async;
+                if (writer == null) {
+                    async = writer = new AsyncRegistry(this);
+                }
+            }
+        }
+        return writer;
+    }
+
+    // reload from the store on the next access
+    public void invalidate() {
+        loaded = false;
+    }
+
+    public void close() {
+        AsyncRegistry writer = async;
+        if (writer != null) {
+            writer.close();  // finish what is queued while the store is still open
+        }
+        RegistryEvents stream = events;
+        if (stream != null) {
+            stream.close();
+        }
+        index.writeLock().lock();
+        try {
+            dropFilter(false);
+        } finally {
+            index.writeLock().unlock();
+        }
+        store.close();
+    }
+
+    // INTERNALS
+
+    // add a copy of the Person in memory under the write lock and collect its RegistryChange.
+    // false if the personID is taken
+    private boolean insert(Person person, List<RegistryChange> changes) {
+        if (byId.containsKey(person.getPersonID()) || !filterIds(List.of(person.getPersonID()))) {
+            return false;
+        }
+        Person stored = person.copy();
+        Slot slot = new Slot(rows.size(), null);
+        byId.put(stored.getPersonID(), slot);
+        rows.add(slot);
+        publish(slot, stored);
+        changes.add(RegistryChange.added(stored));
+        return true;
+    }
+
+    // run the change in memory under the write lock and collect the resulting RegistryChanges
+    private boolean apply(String personID, Predicate<Person> change, List<RegistryChange> changes) {
+        Slot slot = byId.get(personID);
+        if (slot == null) {
+            return false;
+        }
+        Person before = person(slot.record);
+        Person after = before.copy();
+        if (!change.test(after)) {
+            return false;
+        }
+        if (!Objects.equals(personID, after.getPersonID()) && !filterIds(List.of(after.getPersonID()))) {
+            return false;
+        }
+        publish(slot, after);
+        if (!Objects.equals(personID, after.getPersonID())) {
+            // keep the record at its position in file order under its new ID
+            RegistryChange.rekey(byId, personID, after.getPersonID());
+            cache.remove(personID);
+        }
+        changes.addAll(RegistryChange.between(personID, before, after));
+        return true;
+    }
+
+    // PERSONID FILTER
+
+    // with a filter that has never seen the personID, commit the new person without loading the
+    // index first. returns null where the index has to decide: no filter, a filter that does not
+    // describe the registry as it is (someone who did not keep it wrote since), an up-to-date
+    // index (its exact check costs nothing), or an ID the filter may have seen.
+    // the caller holds the process lock
+    private Boolean addUnseen(Person person) {
+        if (filterFile == null || !store.appendsAdditions()) {
+            return null;
+        }
+        index.writeLock().lock();
+        try {
+            if (loaded && !store.isStale()) {
+                return null;
+            }
+            PersonIdFilter f = filter();
+            long registry = store.fingerprint();
+            if (f == null || registry == 0 || f.registry() != registry || f.mightContain(person.getPersonID())) {
+                return null;
+            }
+            if (!filterIds(List.of(person.getPersonID()))) {
+                return false;
+            }
+            loaded = false;  // the index lacks what we skipped loading: reload it when it is needed
+            return commit(List.of(RegistryChange.added(person)));
+        } finally {
+            index.writeLock().unlock();
+        }
+    }
+
+    // add personIDs about to be stored to the filter, if there is one. a filter that cannot take
+    // them is invalidated for everyone, since it would let duplicates of them in; returns false
+    // only if even that failed, and the IDs must then not be stored
+    private boolean filterIds(Collection<String> ids) {
+        if (filterFile == null || ids.isEmpty()) {
+            return true;
+        }
+        PersonIdFilter f = filter();
+        if (f == null) {
+            syncFilter();  // none yet: build it from the index, which is up to date under the write lock
+            f = filter;
+        }
+        if (f == null) {
+            return true;
+        }
+        try {
+            f.add(ids);
+            return true;
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            return dropFilter(true);
+        }
+    }
+
+    // the usable filter, opened or reopened as needed, or null. the caller holds the write lock
+    private PersonIdFilter filter() {
+        try {
+            if (filter != null && !filter.refresh()) {
+                dropFilter(false);  // invalidated or replaced by someone else
+            }
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            dropFilter(false);
+        }
+        if (filter == null) {
+            filter = PersonIdFilter.open(filterFile);
+        }
+        return filter;
+    }
+
+    private boolean dropFilter(boolean invalidate) {
+        PersonIdFilter f = filter;
+        filter = null;
+        if (f == null) {
+            return true;
+        }
+        try {
+            if (invalidate) {
+                f.invalidate();
+            }
+            return true;
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            return false;
+        } finally {
+            f.close();
+        }
+    }
+
+    // after a full load: make sure the filter holds every loaded ID, adding the ones it lacks
+    // (stored by someone who did not keep the filter), or rebuild it when it is missing, invalid
+    // or over capacity. only with the process lock held, so no other process uses the file meanwhile
+    private void syncFilter() {
+        if (filterFile == null || (processLock != null && !processLock.isHeldBy(this))) {
+            return;
+        }
+        PersonIdFilter f = filter();
+        try {
+            if (!isComplete(f)) {
+                dropFilter(true);
+                filter = PersonIdFilter.build(filterFile, byId.keySet(), PersonIdFilter.DEFAULT_FPP);
+            }
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            dropFilter(true);
+        }
+        describeRegistry();  // it covers the loaded registry now
+    }
+
+    // true if the filter holds every loaded ID, after adding the missing ones if they fit
+    private boolean isComplete(PersonIdFilter f) throws IOException {
+        if (f == null || f.isOverCapacity()) {
+            return false;
+        }
+        List<String> missing = new ArrayList<>();
+        for (String id : byId.keySet()) {
+            if (!f.mightContain(id)) {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return true;
+        }
+        if (f.count() + missing.size() > f.capacity()) {
+            return false;
+        }
+        f.add(missing);
+        return true;
+    }
+
+    // after a commit or a full load: record that the filter, if one is open, covers the registry
+    // as it is now. only with the process lock held, or a write by another process could slip
+    // in unrecorded. a failure leaves the old fingerprint, which just no longer matches
+    private void describeRegistry() {
+        PersonIdFilter f = filter;
+        if (f == null || (processLock != null && !processLock.isHeldBy(this))) {
+            return;
+        }
+        try {
+            f.describe(store.fingerprint());
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+    }
+
+    // store the Person as the slot's new version and write it through to the cache.
+    // the Person must not be mutated afterwards
+    private void publish(Slot slot, Person person) {
+        PersonRecord record = PersonRecord.encode(person);
+        publish(slot, record);
+        cache.put(record, person);
+    }
+
+    // make the record the slot's current version, and keep the secondary indexes in step
+    private void publish(Slot slot, PersonRecord record) {
+        queryLock.writeLock().lock();
+        try {
+            slot.record = record;
+            if (queryIndex != null) {
+                queryIndex.set(slot.row, record);
+            }
+        } finally {
+            queryLock.writeLock().unlock();
+        }
+    }
+
+    // the shared decoded Person of a record (read-only), through the cache
+    private Person person(PersonRecord r) {
+        if (!r.hasLine() || r.isDecoded()) {
+            return r.person();
+        }
+        Person p = cache.get(r);
+        if (p == null) {
+            p = r.decode();
+            cache.put(r, p);
+        }
+        return p;
+    }
+
+    // a private decoded copy for scans, which bypass the cache rather than flush it
+    private static Person decode(PersonRecord r) {
+        return !r.hasLine() || r.isDecoded() ? r.person().copy() : r.decode();
+    }
+
+    // the query index, returned with queryLock's read lock held; built first if there is none.
+    // the caller holds the read or write lock, so the index cannot be dropped meanwhile
+    private RegistryIndex lockQueryIndex() {
+        queryLock.readLock().lock();
+        if (queryIndex != null) {
+            return queryIndex;
+        }
+        queryLock.readLock().unlock();
+        queryLock.writeLock().lock();
+        try {
+            if (queryIndex == null) {
+                RegistryIndex built = new RegistryIndex();
+                for (Slot slot : rows) {
+                    built.set(slot.row, slot.record);
+                }
+                queryIndex = built;
+            }
+            // downgrade, so no publish slips in before the caller selects
+            queryLock.readLock().lock();
+            return queryIndex;
+        } finally {
+            queryLock.writeLock().unlock();
+        }
+    }
+
+    // the caller holds the read or write lock, so the index cannot change underneath the store
+    private boolean commit(List<RegistryChange> changes) {
+        if (!store.commit(changes, snapshot())) {
+            loaded = false;  // the store is the source of truth, re-read it next time
+            return false;
+        }
+        describeRegistry();
+        RegistryEvents stream = events;
+        if (stream != null) {
+            // staged under the caller's locks, so per-person order holds; delivered once durable
+            heldEvents.get().add(stream.stage(changes));
+        }
+        return true;
+    }
+
+    // how many events this thread already holds, so a nested mutation releases only its own
+    private int holdEvents() {
+        return heldEvents.get().size();
+    }
+
+    // settle the events this thread staged since holdEvents(): delivered if the mutation
+    // is durable, dropped otherwise
+    private void releaseEvents(int from, boolean durable) {
+        ArrayList<RegistryEvents.Staged> held = heldEvents.get();
+        if (held.size() == from) {
+            return;
+        }
+        List<RegistryEvents.Staged> mine = held.subList(from, held.size());
+        for (RegistryEvents.Staged s : mine) {
+            s.settle(durable);
+        }
+        mine.clear();
+    }
+
+    // wait, holding only the process lock, until the store has made this thread's last commit durable
+    private boolean awaitDurable() {
+        if (!store.awaitDurable()) {
+            loaded = false;  // what we published may not have reached the disk
+            return false;
+        }
+        return true;
+    }
+
+    // live view of the published records in file order, with the shadowed lines each one
+    // carries; a published record is never mutated
+    private Collection<PersonRecord> snapshot() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<PersonRecord> iterator() {
+                if (shadowedLines == 0) {
+                    Iterator<Slot> it = byId.values().iterator();
+                    return new Iterator<>() {
+                        @Override
+                        public boolean hasNext() {
+                            return it.hasNext();
+                        }
+
+                        @Override
+                        public PersonRecord next() {
+                            return it.next().record;
+                        }
+                    };
+                }
+                return byId.values().stream()
+                        .flatMap(slot -> slot.shadowed == null
+                                ? Stream.of(slot.record)
+                                : Stream.concat(Stream.of(slot.record), slot.shadowed.stream()))
+                        .iterator();
+            }
+
+            @Override
+            public int size() {
+                return byId.size() + shadowedLines;
+            }
+        };
+    }
+
+    // LOCKING
+
+    // take the read lock on an up-to-date index, reloading first if the store changed
+    private void lockRead() {
+        if (index.getReadHoldCount() > 0 || index.isWriteLockedByCurrentThread()) {
+            index.readLock().lock();  // re-entered from inside a change: never reload mid-update
+            return;
+        }
+        if (loaded && !store.isStale()) {
+            index.readLock().lock();
+            return;
+        }
+        lockWrite();
+        // downgrade, so we keep reading what we just loaded
+        index.readLock().lock();
+        index.writeLock().unlock();
+    }
+
+    // take the write lock on an up-to-date index
+    private void lockWrite() {
+        index.writeLock().lock();
+        if (!loaded || store.isStale()) {
+            byId.clear();
+            rows.clear();
+            cache.clear();
+            shadowedLines = 0;
+            Slot last = null;
+            for (PersonRecord r : store.loadRecords()) {
+                // first occurrence wins, like the old linear search did
+                if (!byId.containsKey(r.personID())) {
+                    last = new Slot(rows.size(), r);
+                    byId.put(r.personID(), last);
+                    rows.add(last);
+                } else {
+                    if (last.shadowed == null) {
+                        last.shadowed = new ArrayList<>(1);
+                    }
+                    last.shadowed.add(r);
+                    shadowedLines++;
+                }
+            }
+            queryLock.writeLock().lock();
+            try {
+                queryIndex = null;  // rebuilt by the next query
+            } finally {
+                queryLock.writeLock().unlock();
+            }
+            loaded = true;
+            syncFilter();
+        }
+    }
+
+    private boolean lockProcess() {
+        if (processLock == null) {
+            return true;
+        }
+        try {
+            processLock.acquire(this);
+            return true;
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            return false;
+        }
+    }
+
+    private void unlockProcess() {
+        if (processLock != null) {
+            processLock.release();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package au.edu.rmit.sct;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Durable storage behind a PersonRepository.
+
+    The repository keeps the working set in memory and hands every mutation to the
+    store as a list of RegistryChange records, together with the full post-change
+    snapshot for stores that rewrite rather than append. The snapshot is made of
+    PersonRecords, so a rewrite need not decode records nobody touched.
+*/
+
+public interface PersonStore {
+
+    // read every stored Person, in storage order
+    List<Person> load();
+
+    // the same records for the registry index, possibly left undecoded until they are read
+    default List<PersonRecord> loadRecords() {
+        List<Person> persons = load();
+        List<PersonRecord> records = new ArrayList<>(persons.size());
+        for (Person p : persons) {
+            records.add(PersonRecord.of(p));
+        }
+        return records;
+    }
+
+    // true if the storage was changed by someone else since our last load() or commit()
+    boolean isStale();
+
+    // make the changes durable. returns false if they could not be written
+    boolean commit(List<RegistryChange> changes, Collection<PersonRecord> snapshot);
+
+    // true if a commit of nothing but PersonAdded changes only appends them and never reads
+    // the snapshot, so the repository may add a person it knows to be new without loading
+    // the registry first (see PersonIdFilter)
+    default boolean appendsAdditions() {
+        return false;
+    }
+
+    // what is stored right now, folded from the stamps of the store's files, so a sidecar that
+    // describes the contents (see PersonIdFilter) can tell whether anyone changed them since.
+    // 0 if the store cannot tell
+    default long fingerprint() {
+        return 0;
+    }
+
+    // block until this thread's last commit is on disk, as far as the store's durability promises.
+    // called after the repository released its index locks, so concurrent commits can share one
+    // sync, but still under its process lock, if it has one. returns false if it could not be made durable
+    default boolean awaitDurable() {
+        return true;
+    }
+
+    // release background resources; the store must not be used afterwards
+    default void close() {
+    }
+}
@@ -0,0 +1,246 @@
+package au.edu.rmit.sct;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Streams persons file lines straight into a direct ByteBuffer and on to a channel.
+
+    Produces exactly the bytes of toLine() + System.lineSeparator() in UTF-8 (unpaired
+    surrogates become '?', as String.getBytes does), but encodes the fields one char at a
+    time instead of building a String per line, so a full rewrite allocates next to
+    nothing per record. The 64 KiB direct buffer is kept per thread and reused by the
+    next writer opened on that thread.
+    Not thread-safe.
+*/
+
+public final class PersonWriter implements Closeable {
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    // idle buffers, one per thread; a writer takes it while open and returns it on close
+    private static final ThreadLocal<ByteBuffer> IDLE = new ThreadLocal<>();
+
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    // what BufferedWriter.newLine() writes
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final WritableByteChannel channel;
+    private ByteBuffer buf;
+    private final byte[] date = new byte[DateCodec.LENGTH];
+    // the line being encoded, see ENCODING
+    private byte[] line = new byte[512];
+    private int len;
+    private long written;  // bytes handed to the channel so far
+
+    public PersonWriter(WritableByteChannel channel) {
+        this.channel = channel;
+        ByteBuffer idle = IDLE.get();
+        if (idle != null) {
+            IDLE.remove();
+            idle.clear();
+            buf = idle;
+        } else {
+            buf = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        }
+    }
+
+    // a writer on the file, replacing its contents (append=false) or adding to them.
+    // creates the parent directories, like the old FileWriter-based helpers did
+    public static PersonWriter open(Path file, boolean append) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+        return new PersonWriter(channel);
+    }
+
+    // WRITING
+
+    // person.toLine(), then a line separator
+    public PersonWriter write(Person p) throws IOException {
+        putString(p.getPersonID());
+        putByte('|');
+        putString(p.getFirstName());
+        putByte('|');
+        putString(p.getLastName());
+        putByte('|');
+        putString(p.getAddress());
+        putByte('|');
+        putString(p.getBirthdate());
+        putByte('|');
+        putBytes(p.isSuspended() ? TRUE : FALSE);
+        putByte('|');
+        DemeritHistory history = p.getDemeritHistory();
+        for (int i = 0; i < history.size(); i++) {
+            DateCodec.format(history.dayAt(i), date, 0);
+            putBytes(date);
+            putByte(':');
+            putInt(history.pointsAt(i));
+            putByte(';');
+        }
+        putBytes(NEWLINE);
+        endLine();
+        return this;
+    }
+
+    // the record's original line if it was never decoded, otherwise its Person
+    public PersonWriter write(PersonRecord r) throws IOException {
+        ByteBuffer mapped = r.mappedLine();
+        if (mapped != null) {
+            // already UTF-8: copied as is, never decoded
+            int n = mapped.remaining();
+            ensure(n);
+            mapped.get(line, len, n);
+            len += n;
+            putBytes(NEWLINE);
+            endLine();
+            return this;
+        }
+        String raw = r.rawLine();
+        return raw != null ? writeLine(raw) : write(r.person());
+    }
+
+    // any line as is, then a line separator
+    public PersonWriter writeLine(String text) throws IOException {
+        putString(text);
+        putBytes(NEWLINE);
+        endLine();
+        return this;
+    }
+
+    public void flush() throws IOException {
+        written += buf.position();
+        buf.flip();
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        buf.clear();
+    }
+
+    // bytes written to the channel, including the final flush once closed
+    public long bytesWritten() {
+        return written;
+    }
+
+    // flushes, closes the channel and hands the buffer back for the next writer on this thread
+    @Override
+    public void close() throws IOException {
+        if (buf == null) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            try {
+                channel.close();
+            } finally {
+                IDLE.set(buf);
+                buf = null;
+            }
+        }
+    }
+
+    // ENCODING
+    // a line is staged in a heap array (plain array stores are much cheaper than per-byte
+    // ByteBuffer puts) and copied into the direct buffer with one bulk put
+
+    private void ensure(int bytes) {
+        if (len + bytes > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, len + bytes));
+        }
+    }
+
+    private void endLine() throws IOException {
+        if (buf.remaining() < len) {
+            flush();
+        }
+        if (len <= buf.remaining()) {
+            buf.put(line, 0, len);
+        } else {
+            // longer than the whole buffer: write it through
+            ByteBuffer big = ByteBuffer.wrap(line, 0, len);
+            written += len;
+            while (big.hasRemaining()) {
+                channel.write(big);
+            }
+        }
+        len = 0;
+    }
+
+    private void putByte(char ascii) {
+        ensure(1);
+        line[len++] = (byte) ascii;
+    }
+
+    private void putBytes(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, line, len, bytes.length);
+        len += bytes.length;
+    }
+
+    // Integer.toString(v) in ASCII
+    private void putInt(int v) {
+        ensure(11);
+        if (v < 0) {
+            line[len++] = '-';
+        } else {
+            v = -v;  // work on negatives so Integer.MIN_VALUE needs no special case
+        }
+        int digits = 1;
+        for (int t = v; t <= -10; t /= 10) {
+            digits++;
+        }
+        for (int at = len + digits - 1; at >= len; at--) {
+            line[at] = (byte) ('0' - v % 10);
+            v /= 10;
+        }
+        len += digits;
+    }
+
+    // String.valueOf(s).getBytes(UTF_8), without the byte[]
+    private void putString(String s) {
+        if (s == null) {
+            putBytes(NULL);
+            return;
+        }
+        int n = s.length();
+        ensure(n * 3);  // a char never takes more than 3 bytes (a surrogate pair takes 4 for 2 chars)
+        byte[] b = line;
+        int at = len;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                b[at++] = (byte) c;
+            } else if (c < 0x800) {
+                b[at++] = (byte) (0xC0 | (c >> 6));
+                b[at++] = (byte) (0x80 | (c & 0x3F));
+            } else if (!Character.isSurrogate(c)) {
+                b[at++] = (byte) (0xE0 | (c >> 12));
+                b[at++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                b[at++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                b[at++] = (byte) (0xF0 | (cp >> 18));
+                b[at++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                b[at++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                b[at++] = (byte) (0x80 | (cp & 0x3F));
+            } else {
+                b[at++] = '?';  // unpaired surrogate
+            }
+        }
+        len = at;
+    }
+}
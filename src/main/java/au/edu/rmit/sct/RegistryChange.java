@@ -0,0 +1,111 @@
+package au.edu.rmit.sct;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * One mutation of the registry, small enough to be appended to a journal.
+
+    Every change can be re-applied to a personID-keyed map, which is how a
+    journal is replayed on top of the last snapshot.
+*/
+
+public sealed interface RegistryChange {
+
+    // personID of the affected Person after the change
+    String personID();
+
+    // re-apply this change to a personID-keyed map of Persons
+    void applyTo(Map<String, Person> byId);
+
+    record PersonAdded(String personID, String line) implements RegistryChange {
+        public void applyTo(Map<String, Person> byId) {
+            Person p = Person.parseFromLine(line);
+            if (p != null) {
+                byId.putIfAbsent(p.getPersonID(), p);
+            }
+        }
+    }
+
+    record DetailsChanged(String originalID,
+                          String personID,
+                          String firstName,
+                          String lastName,
+                          String address,
+                          String birthdate) implements RegistryChange {
+        public void applyTo(Map<String, Person> byId) {
+            Person p = byId.get(originalID);
+            if (p == null) {
+                return;  // no such person: nothing to change
+            }
+            p.setPersonID(personID);
+            p.setFirstName(firstName);
+            p.setLastName(lastName);
+            p.setAddress(address);
+            p.setBirthdate(birthdate);
+            if (!originalID.equals(personID)) {
+                rekey(byId, originalID, personID);
+            }
+        }
+    }
+
+    record DemeritRecorded(String personID, int offenseDay, int points) implements RegistryChange {
+        public void applyTo(Map<String, Person> byId) {
+            Person p = byId.get(personID);
+            if (p != null) {
+                p.getDemeritHistory().record(offenseDay, points);
+            }
+        }
+    }
+
+    record SuspensionChanged(String personID, boolean suspended) implements RegistryChange {
+        public void applyTo(Map<String, Person> byId) {
+            Person p = byId.get(personID);
+            if (p != null) {
+                p.setSuspended(suspended);
+            }
+        }
+    }
+
+    // move the value stored under oldID to newID, keeping its position in iteration order
+    static <V> void rekey(Map<String, V> byId, String oldID, String newID) {
+        Map<String, V> copy = new LinkedHashMap<>(byId);
+        byId.clear();
+        for (Map.Entry<String, V> e : copy.entrySet()) {
+            byId.put(e.getKey().equals(oldID) ? newID : e.getKey(), e.getValue());
+        }
+    }
+
+    static RegistryChange added(Person person) {
+        return new PersonAdded(person.getPersonID(), person.toLine());
+    }
+
+    // the changes that turn `before` into `after`, where before was stored under originalID
+    static List<RegistryChange> between(String originalID, Person before, Person after) {
+        List<RegistryChange> changes = new ArrayList<>(2);
+        if (!Objects.equals(originalID, after.getPersonID())
+                || !Objects.equals(before.getFirstName(), after.getFirstName())
+                || !Objects.equals(before.getLastName(), after.getLastName())
+                || !Objects.equals(before.getAddress(), after.getAddress())
+                || !Objects.equals(before.getBirthdate(), after.getBirthdate())) {
+            changes.add(new DetailsChanged(originalID, after.getPersonID(), after.getFirstName(),
+                    after.getLastName(), after.getAddress(), after.getBirthdate()));
+        }
+        DemeritHistory was = before.getDemeritHistory();
+        DemeritHistory now = after.getDemeritHistory();
+        for (int i = 0; i < now.size(); i++) {
+            int day = now.dayAt(i);
+            int w = was.indexOf(day);
+            if (w < 0 || was.pointsAt(w) != now.pointsAt(i)) {
+                changes.add(new DemeritRecorded(after.getPersonID(), day, now.pointsAt(i)));
+            }
+        }
+        if (before.isSuspended() != after.isSuspended()) {
+            changes.add(new SuspensionChanged(after.getPersonID(), after.isSuspended()));
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,25 @@
+package au.edu.rmit.sct;
+
+/**
+ * One committed registry change, as delivered by RegistryEvents.
+
+    The change is the same RegistryChange the store journals, so subscribers switch over
+    its sealed types:
+      PersonAdded        a new Person, with its persons file line
+      DetailsChanged     new personal details, with the old (originalID) and new personID
+      DemeritRecorded    an offence added to a history
+      SuspensionChanged  suspended or reinstated; isSuspensionTriggered() for the former
+    sequence numbers the events of one repository in publishing order, from 1.
+*/
+
+public record RegistryEvent(long sequence, long timeMillis, RegistryChange change) {
+
+    public String personID() {
+        return change.personID();
+    }
+
+    // the licence was just suspended
+    public boolean isSuspensionTriggered() {
+        return change instanceof RegistryChange.SuspensionChanged s && s.suspended();
+    }
+}
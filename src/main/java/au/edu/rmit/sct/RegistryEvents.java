@@ -0,0 +1,138 @@
+package au.edu.rmit.sct;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * In-process publish/subscribe stream of the changes a PersonRepository commits.
+
+    Built on SubmissionPublisher: every subscriber has its own bounded buffer (bufferSize,
+    rounded up to a power of two) drained on its own virtual thread, and sees its events
+    in sequence order: the sequence is assigned and the event offered under one lock,
+    so concurrent writers cannot interleave between the two. Flow subscribers pace
+    delivery with request(n); consume() is the simple callback form.
+    Writers never wait for a subscriber: an event that does not fit a full buffer is
+    dropped for that subscriber only and counted in dropped(). A subscriber that must
+    not miss events has to keep up, or re-read the registry after a drop.
+    A writer stages its changes when the store accepts them, still under its locks, and
+    settles them once the store says whether they are durable (after the group sync under
+    GROUP_COMMIT, the fsync under ATOMIC). Only durable changes are delivered, in the order
+    they were staged, so subscribers never see a change that is later lost and the events
+    of one person arrive in commit order. A change that is not durable yet holds back the
+    ones staged after it.
+*/
+
+public final class RegistryEvents implements AutoCloseable {
+
+    static final int DEFAULT_BUFFER = Integer.getInteger("roadregistry.eventBuffer", 1024);
+
+    private final ExecutorService delivery = Executors.newVirtualThreadPerTaskExecutor();
+    private final SubmissionPublisher<RegistryEvent> publisher;
+    private final Object publishLock = new Object();
+    private long sequence;  // guarded by publishLock
+    private final ArrayDeque<Staged> staged = new ArrayDeque<>();  // in commit order, guarded by publishLock
+    private final LongAdder dropped = new LongAdder();
+
+    public RegistryEvents() {
+        this(DEFAULT_BUFFER);
+    }
+
+    public RegistryEvents(int bufferSize) {
+        this.publisher = new SubmissionPublisher<>(delivery, bufferSize);
+    }
+
+    // SUBSCRIBING
+
+    public void subscribe(Flow.Subscriber<? super RegistryEvent> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    // calls the consumer with every event until the stream is closed (the future completes)
+    // or the future is cancelled
+    public CompletableFuture<Void> consume(Consumer<? super RegistryEvent> consumer) {
+        return publisher.consume(consumer);
+    }
+
+    public int subscribers() {
+        return publisher.getNumberOfSubscribers();
+    }
+
+    // events dropped because a subscriber's buffer was full, summed over subscribers
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    // PUBLISHING
+
+    // one commit's changes, held back until settle() says whether they reached the store
+    final class Staged {
+        private final List<RegistryChange> changes;
+        private int state;  // WAITING, DURABLE or LOST, guarded by publishLock
+
+        private Staged(List<RegistryChange> changes) {
+            this.changes = changes;
+        }
+
+        // never blocks; delivers this commit, and every settled one staged after it, if it is first in line
+        void settle(boolean durable) {
+            synchronized (publishLock) {
+                state = durable ? DURABLE : LOST;
+                long now = System.currentTimeMillis();
+                while (!staged.isEmpty() && staged.peek().state != WAITING) {
+                    Staged head = staged.poll();
+                    if (head.state == DURABLE) {
+                        offer(head.changes, now);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final int WAITING = 0;
+    private static final int DURABLE = 1;
+    private static final int LOST = 2;
+
+    // queue a commit's changes in commit order; the caller holds the locks that order its commits
+    Staged stage(List<RegistryChange> changes) {
+        Staged s = new Staged(changes);
+        synchronized (publishLock) {
+            staged.add(s);
+        }
+        return s;
+    }
+
+    // stage and settle at once, for changes that are already durable
+    void publish(List<RegistryChange> changes) {
+        stage(changes).settle(true);
+    }
+
+    // the caller holds publishLock. offer with a zero timeout never waits, so the lock is only
+    // held for the hand-off; a no-op without subscribers
+    private void offer(List<RegistryChange> changes, long now) {
+        if (!publisher.hasSubscribers()) {
+            return;
+        }
+        for (RegistryChange change : changes) {
+            RegistryEvent event = new RegistryEvent(++sequence, now, change);
+            publisher.offer(event, 0, TimeUnit.MILLISECONDS, (subscriber, e) -> {
+                dropped.increment();
+                return false;  // no retry: the writer moves on
+            });
+        }
+    }
+
+    // completes every subscriber once it has drained its buffer
+    @Override
+    public void close() {
+        publisher.close();
+        delivery.shutdown();
+    }
+}
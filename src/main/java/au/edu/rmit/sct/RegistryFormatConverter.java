@@ -0,0 +1,102 @@
+package au.edu.rmit.sct;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Converts a registry between the pipe-delimited text format and the BinaryPersonCodec format,
+ * or migrates it between a single text file and the ShardedStore layout.
+
+    All directions are lossless for everything parseFromLine() accepts: converting a
+    text file to binary and back yields the toLine() of every parsed Person, in file order.
+    Lines the text loader skips (unparseable ones) are skipped here too. Sharding keeps file
+    order within each shard; joining the shards writes them in shard order.
+*/
+
+public final class RegistryFormatConverter {
+
+    private RegistryFormatConverter() {
+    }
+
+    // returns the number of Persons written
+    public static int textToBinary(Path textFile, Path binaryFile) throws IOException {
+        List<Person> persons = Person.readAllPersonsFromFile(textFile.toFile());
+        BinaryPersonCodec.write(binaryFile, persons);
+        return persons.size();
+    }
+
+    // returns the number of Persons written
+    public static int binaryToText(Path binaryFile, Path textFile) throws IOException {
+        List<Person> persons = BinaryPersonCodec.read(binaryFile);
+        if (!Person.writeAllPersonsToFile(textFile.toFile(), persons)) {
+            throw new IOException("could not write " + textFile);
+        }
+        return persons.size();
+    }
+
+    // returns the number of records written. every shard is replaced in one all-or-nothing commit
+    public static int textToShards(Path textFile, Path shardDir) throws IOException {
+        List<PersonRecord> records = Person.readAllRecordsFromFile(textFile.toFile());
+        if (!new ShardedStore(shardDir).replaceAll(records)) {
+            throw new IOException("could not write " + shardDir);
+        }
+        return records.size();
+    }
+
+    // returns the number of records written
+    public static int shardsToText(Path shardDir, Path textFile) throws IOException {
+        List<PersonRecord> records = new ShardedStore(shardDir).loadRecords();
+        if (!Person.writeAllRecordsToFile(textFile.toFile(), records)) {
+            throw new IOException("could not write " + textFile);
+        }
+        return records.size();
+    }
+
+    // usage: RegistryFormatConverter to-binary|to-text|to-shards|from-shards <from> [to]
+    //   to-binary   data/persons.txt     writes data/persons.bin
+    //   to-text     data/persons.bin     writes data/persons.txt
+    //   to-shards   data/persons.txt     writes data/persons.shards/
+    //   from-shards data/persons.shards  writes data/persons.txt
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: RegistryFormatConverter to-binary|to-text|to-shards|from-shards <from> [to]");
+            System.exit(2);
+        }
+        Path from = Paths.get(args[1]);
+        int count;
+        Path to;
+        switch (args[0]) {
+            case "to-binary" -> {
+                to = args.length > 2 ? Paths.get(args[2]) : StorageMode.binaryFileFor(from);
+                count = textToBinary(from, to);
+            }
+            case "to-text" -> {
+                to = args.length > 2 ? Paths.get(args[2]) : textFileFor(from);
+                count = binaryToText(from, to);
+            }
+            case "to-shards" -> {
+                to = args.length > 2 ? Paths.get(args[2]) : StorageMode.shardDirFor(from);
+                count = textToShards(from, to);
+            }
+            case "from-shards" -> {
+                to = args.length > 2 ? Paths.get(args[2]) : textFileFor(from);
+                count = shardsToText(from, to);
+            }
+            default -> {
+                System.err.println("unknown direction: " + args[0]);
+                System.exit(2);
+                return;
+            }
+        }
+        System.out.println("Converted " + count + " persons: " + from + " -> " + to);
+    }
+
+    // persons.bin or persons.shards -> persons.txt
+    private static Path textFileFor(Path binaryFile) {
+        String name = binaryFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return binaryFile.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".txt");
+    }
+}
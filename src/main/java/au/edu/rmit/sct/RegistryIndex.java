@@ -0,0 +1,306 @@
+package au.edu.rmit.sct;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Secondary indexes over the rows of a PersonRepository, for PersonQuery.
+
+    Every stored record has a row number. Per row the index keeps dictionary codes of its
+    lastName and city, its birth epoch day and a suspension bit, plus:
+      - hash indexes lastName -> rows and city -> rows
+      - a bitmap of suspended rows
+      - a sorted birth day -> rows index for age and birth date ranges
+    A query starts from the smallest candidate set any of its predicates offers and
+    checks the remaining predicates against the per-row columns.
+
+    Not thread-safe for writers: PersonRepository calls select() under the read lock of
+    its query lock, so queries run in parallel, and set() under the write lock.
+*/
+
+final class RegistryIndex {
+
+    private static final int NONE = -1;  // no lastName/city code
+
+    private final Dictionary lastNames = new Dictionary();
+    private final Dictionary cities = new Dictionary();
+    private final BitSet suspended = new BitSet();
+    private final TreeMap<Integer, Postings> byBirthDay = new TreeMap<>();
+
+    // per-row columns; `rows` rows are in use
+    private int[] lastNameOf = new int[0];
+    private int[] cityOf = new int[0];
+    private int[] birthDayOf = new int[0];
+    private int rows;
+
+    // MAINTENANCE
+
+    // (re)index the row with the record's current values
+    void set(int row, PersonRecord record) {
+        Fields f = Fields.of(record);
+        if (row >= rows) {
+            grow(row + 1);
+        } else {
+            unlink(row);
+        }
+        lastNameOf[row] = lastNames.add(f.lastName, row);
+        cityOf[row] = cities.add(f.city, row);
+        birthDayOf[row] = f.birthDay;
+        if (f.birthDay != DateCodec.INVALID) {
+            byBirthDay.computeIfAbsent(f.birthDay, d -> new Postings()).add(row);
+        }
+        suspended.set(row, f.suspended);
+    }
+
+    private void unlink(int row) {
+        lastNames.remove(lastNameOf[row], row);
+        cities.remove(cityOf[row], row);
+        int day = birthDayOf[row];
+        if (day != DateCodec.INVALID) {
+            Postings p = byBirthDay.get(day);
+            p.remove(row);
+            if (p.size() == 0) {
+                byBirthDay.remove(day);
+            }
+        }
+    }
+
+    private void grow(int newRows) {
+        if (newRows > lastNameOf.length) {
+            int capacity = Math.max(newRows, lastNameOf.length + (lastNameOf.length >> 1) + 16);
+            lastNameOf = Arrays.copyOf(lastNameOf, capacity);
+            cityOf = Arrays.copyOf(cityOf, capacity);
+            birthDayOf = Arrays.copyOf(birthDayOf, capacity);
+        }
+        for (int r = rows; r < newRows; r++) {
+            lastNameOf[r] = NONE;
+            cityOf[r] = NONE;
+            birthDayOf[r] = DateCodec.INVALID;
+        }
+        rows = newRows;
+    }
+
+    // QUERIES
+
+    // rows matching the query, in ascending row order
+    int[] select(PersonQuery q) {
+        int lastNameCode = NONE;
+        int cityCode = NONE;
+        if (q.lastName() != null && (lastNameCode = lastNames.code(q.lastName())) == NONE) {
+            return new int[0];
+        }
+        if (q.city() != null && (cityCode = cities.code(q.city())) == NONE) {
+            return new int[0];
+        }
+
+        // the smallest candidate set wins
+        Postings best = null;
+        if (lastNameCode != NONE) {
+            best = lastNames.postings(lastNameCode);
+        }
+        if (cityCode != NONE && (best == null || cities.postings(cityCode).size() < best.size())) {
+            best = cities.postings(cityCode);
+        }
+
+        int[] out = new int[16];
+        int n = 0;
+        if (best != null) {
+            for (int i = 0; i < best.size(); i++) {
+                int row = best.get(i);
+                if (matches(row, q, lastNameCode, cityCode)) {
+                    out = append(out, n++, row);
+                }
+            }
+            return Arrays.copyOf(out, n);
+        }
+        if (q.hasBirthRange()) {
+            if (q.bornFrom() > q.bornTo()) {
+                return new int[0];
+            }
+            NavigableMap<Integer, Postings> range = byBirthDay.subMap(q.bornFrom(), true, q.bornTo(), true);
+            for (Postings p : range.values()) {
+                for (int i = 0; i < p.size(); i++) {
+                    int row = p.get(i);
+                    if (matches(row, q, lastNameCode, cityCode)) {
+                        out = append(out, n++, row);
+                    }
+                }
+            }
+            out = Arrays.copyOf(out, n);
+            Arrays.sort(out);
+            return out;
+        }
+        if (Boolean.TRUE.equals(q.suspended())) {
+            for (int row = suspended.nextSetBit(0); row >= 0 && row < rows; row = suspended.nextSetBit(row + 1)) {
+                out = append(out, n++, row);
+            }
+            return Arrays.copyOf(out, n);
+        }
+        for (int row = 0; row < rows; row++) {
+            if (matches(row, q, lastNameCode, cityCode)) {
+                out = append(out, n++, row);
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private boolean matches(int row, PersonQuery q, int lastNameCode, int cityCode) {
+        if (lastNameCode != NONE && lastNameOf[row] != lastNameCode) {
+            return false;
+        }
+        if (cityCode != NONE && cityOf[row] != cityCode) {
+            return false;
+        }
+        if (q.suspended() != null && suspended.get(row) != q.suspended()) {
+            return false;
+        }
+        if (q.hasBirthRange()) {
+            int day = birthDayOf[row];
+            return day != DateCodec.INVALID && day >= q.bornFrom() && day <= q.bornTo();
+        }
+        return true;
+    }
+
+    private static int[] append(int[] a, int at, int value) {
+        if (at == a.length) {
+            a = Arrays.copyOf(a, a.length * 2);
+        }
+        a[at] = value;
+        return a;
+    }
+
+    // the indexed values of one record, read without decoding the whole record
+    private static final class Fields implements PersonLineParser.Visitor {
+        private static final ThreadLocal<PersonLineParser> PARSER = ThreadLocal.withInitial(PersonLineParser::new);
+
+        String lastName;
+        String city;
+        int birthDay = DateCodec.INVALID;
+        boolean suspended;
+
+        private String line;
+
+        static Fields of(PersonRecord record) {
+            Fields f = new Fields();
+            String raw = record.rawLine();
+            if (raw != null && !record.isDecoded()) {
+                f.line = raw;
+                PARSER.get().visit(raw, f);
+            } else {
+                Person p = record.person();
+                f.lastName = p.getLastName();
+                f.city = PersonQuery.cityOf(p.getAddress());
+                f.birthDay = DateCodec.parse(p.getBirthdate());
+                f.suspended = p.isSuspended();
+            }
+            return f;
+        }
+
+        @Override
+        public void field(PersonLineParser.Field field, int from, int to) {
+            switch (field) {
+                case LAST_NAME -> lastName = line.substring(from, to);
+                case ADDRESS   -> city = PersonQuery.cityOf(line.substring(from, to));
+                case BIRTHDATE -> birthDay = DateCodec.parse(line, from, to);
+                default -> { }
+            }
+        }
+
+        @Override
+        public void suspended(boolean suspended) {
+            this.suspended = suspended;
+        }
+
+        @Override
+        public boolean wantsOffences() {
+            return false;
+        }
+    }
+
+    // value -> code -> rows
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<Postings> postings = new ArrayList<>();
+
+        // index the row under the value; returns its code, or NONE for a null value
+        int add(String value, int row) {
+            if (value == null) {
+                return NONE;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = postings.size();
+                codes.put(value, code);
+                postings.add(new Postings());
+            }
+            postings.get(code).add(row);
+            return code;
+        }
+
+        // codes stay allocated when their last row leaves: values come back, and codes are per-row ints
+        void remove(int code, int row) {
+            if (code != NONE) {
+                postings.get(code).remove(row);
+            }
+        }
+
+        int code(String value) {
+            Integer code = codes.get(value);
+            return code == null ? NONE : code;
+        }
+
+        Postings postings(int code) {
+            return postings.get(code);
+        }
+    }
+
+    // sorted set of rows
+    static final class Postings {
+        private int[] rows = new int[4];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        int get(int i) {
+            return rows[i];
+        }
+
+        void add(int row) {
+            // rows are mostly indexed in ascending order, so this is usually an append
+            if (size == 0 || rows[size - 1] < row) {
+                if (size == rows.length) {
+                    rows = Arrays.copyOf(rows, size * 2);
+                }
+                rows[size++] = row;
+                return;
+            }
+            int i = Arrays.binarySearch(rows, 0, size, row);
+            if (i >= 0) {
+                return;
+            }
+            i = -i - 1;
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            System.arraycopy(rows, i, rows, i + 1, size - i);
+            rows[i] = row;
+            size++;
+        }
+
+        void remove(int row) {
+            int i = Arrays.binarySearch(rows, 0, size, row);
+            if (i >= 0) {
+                System.arraycopy(rows, i + 1, rows, i, size - i - 1);
+                size--;
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package au.edu.rmit.sct;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local load generator for RegistryServer: throughput and tail latency at a given concurrency.
+
+    `concurrency` virtual threads share one HttpClient and keep exactly that many requests
+    in flight until `requests` have completed. Requests are ID lookups, except for
+    writePercent of them, which add 1 demerit point to the same random people; every
+    latency goes into a LatencyHistogram. Without a URL it serves a fresh SampleRegistry
+    from a temporary directory with a RegistryServer in a child JVM, so the client's and
+    the server's sockets each get the whole open-file limit (10K connections need 10K
+    descriptors on both ends). Client and server still share the CPUs: run it against a
+    server on another host for numbers that are not CPU-bound here.
+
+    usage: RegistryLoadClient [url|-] [records] [requests] [writePercent] [concurrency...]
+    defaults: a local server, 10000 records, 20000 requests, 5% writes, concurrency 1000 and 10000
+*/
+
+public final class RegistryLoadClient {
+
+    // outcome of one run
+    public record Result(int concurrency, long requests, long errors, long nanos, LatencyHistogram latency) {
+
+        public double requestsPerSecond() {
+            return nanos == 0 ? 0 : requests / (nanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("concurrency %6d: %d requests (%d errors) in %.2f s = %.0f req/s,"
+                            + " p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms",
+                    concurrency, requests, errors, nanos / 1e9, requestsPerSecond(),
+                    latency.percentile(0.50) / 1e6, latency.percentile(0.99) / 1e6,
+                    latency.percentile(0.999) / 1e6, latency.max() / 1e6);
+        }
+    }
+
+    private final HttpClient client;
+    private final URI base;
+    private final List<String> ids;
+
+    // base: the server root, e.g. http://localhost:8080; ids: existing personIDs to look up
+    public RegistryLoadClient(URI base, List<String> ids) {
+        this.base = base;
+        this.ids = ids;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    public Result run(int requests, int concurrency, int writePercent) {
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicInteger issued = new AtomicInteger();
+        AtomicLong errors = new AtomicLong();
+        long start = System.nanoTime();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int w = 0; w < concurrency; w++) {
+                long seed = w;
+                workers.execute(() -> {
+                    SplittableRandom rnd = new SplittableRandom(seed);
+                    while (issued.getAndIncrement() < requests) {
+                        HttpRequest request = request(rnd, writePercent);
+                        long t0 = System.nanoTime();
+                        try {
+                            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                            if (response.statusCode() >= 300) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        latency.record(System.nanoTime() - t0);
+                    }
+                });
+            }
+        }
+        return new Result(concurrency, latency.count(), errors.get(), System.nanoTime() - start, latency);
+    }
+
+    private HttpRequest request(SplittableRandom rnd, int writePercent) {
+        String id = ids.get(rnd.nextInt(ids.size()));
+        URI person = base.resolve("/persons/" + encode(id));
+        if (rnd.nextInt(100) < writePercent) {
+            // a day in 2020: the same person may collect a few points, never a rejection
+            String day = DateCodec.format(DateCodec.parse("01-01-2020") + rnd.nextInt(366));
+            return HttpRequest.newBuilder(URI.create(person + "/demerits"))
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .POST(HttpRequest.BodyPublishers.ofString("offenseDate=" + day + "&points=1"))
+                    .build();
+        }
+        return HttpRequest.newBuilder(person).GET().build();
+    }
+
+    // percent-encode a path segment; '+' and ' ' included
+    static String encode(String segment) {
+        return URLEncoder.encode(segment, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    public static void main(String[] args) throws IOException {
+        String url = args.length > 0 ? args[0] : "-";
+        int records = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+        int writePercent = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        List<Integer> levels = new ArrayList<>();
+        for (int i = 4; i < args.length; i++) {
+            levels.add(Integer.parseInt(args[i]));
+        }
+        if (levels.isEmpty()) {
+            levels = List.of(1_000, 10_000);
+        }
+
+        List<String> ids = new ArrayList<>(records);
+        for (int i = 0; i < records; i++) {
+            ids.add(SampleRegistry.personID(i));
+        }
+
+        Process local = null;
+        URI base;
+        if (url.equals("-")) {
+            Path dir = Files.createTempDirectory("registry-load");
+            Path file = dir.resolve("persons.txt");
+            SampleRegistry.writeText(file, records, 42);
+            local = startServer(file);
+            base = serverUri(local);
+            System.out.println("serving " + records + " records from " + file + " on " + base);
+        } else {
+            // the server must hold SampleRegistry data with at least `records` records
+            base = URI.create(url);
+        }
+
+        try {
+            RegistryLoadClient client = new RegistryLoadClient(base, ids);
+            System.out.println("warm-up  " + client.run(Math.min(requests, 5_000), 100, writePercent));
+            for (int concurrency : levels) {
+                System.out.println(client.run(requests, concurrency, writePercent));
+            }
+        } finally {
+            if (local != null) {
+                local.destroy();
+            }
+        }
+    }
+
+    // RegistryServer.main on a free port in a child JVM with our classpath
+    private static Process startServer(Path file) throws IOException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                RegistryServer.class.getName(), "0", file.toString())
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    // the server root from the child's "serving <file> on http://localhost:<port>/persons" line
+    private static URI serverUri(Process server) throws IOException {
+        BufferedReader out = new BufferedReader(new InputStreamReader(server.getInputStream(), StandardCharsets.UTF_8));
+        String line = out.readLine();
+        if (line == null || !line.contains(" on http://")) {
+            server.destroy();
+            throw new IOException("RegistryServer did not start: " + line);
+        }
+        return URI.create(line.substring(line.lastIndexOf(" on http://") + 4)).resolve("/");
+    }
+}
@@ -0,0 +1,322 @@
+package au.edu.rmit.sct;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms for the Person operations and the persons file I/O.
+
+    Per Operation: calls, failures and a LatencyHistogram (p50/p99/max). Registry-wide:
+    bytes read and written, records parsed, lines that failed to parse, and how often
+    each validation Rule rejected a request. Everything is a LongAdder or an atomic
+    bucket, so instrumented calls never contend on a lock.
+
+    Published through JMX (au.edu.rmit.sct:type=RegistryMetrics, one MXBean per operation)
+    and to any MetricsExporter that is added. -Droadregistry.metrics=false turns it all
+    off: ENABLED is a static final, so the JIT folds every hook down to nothing, and no
+    MBeans are registered.
+*/
+
+public final class RegistryMetrics {
+
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("roadregistry.metrics", "true"));
+
+    public enum Operation {
+        ADD_PERSON("addPerson"),
+        UPDATE_PERSONAL_DETAILS("updatePersonalDetails"),
+        ADD_DEMERIT_POINTS("addDemeritPoints"),
+        READ_FILE("readAllPersonsFromFile"),
+        WRITE_FILE("writeAllPersonsToFile");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    // the validation rules that turn a request down
+    public enum Rule {
+        PERSON_ID,              // not a valid personID
+        ADDRESS,                // not a valid Victorian address
+        BIRTHDATE,              // new birthdate is not DD-MM-YYYY
+        OFFENCE_DATE,           // offence date is not DD-MM-YYYY
+        DUPLICATE_ID,           // personID already taken
+        STORED_BIRTHDATE,       // stored birthdate is unparseable, so no age can be computed
+        BIRTHDATE_CHANGE_ONLY,  // birthdate changed together with another field
+        UNDER_18_ADDRESS,       // address change while under 18
+        EVEN_ID_CHANGE,         // ID change of an ID starting with an even digit
+        OFFENCE_BEFORE_BIRTH,   // offence dated before the birthdate
+        POINTS_RANGE            // points outside 1..6
+    }
+
+    // a consistent-enough copy of the metrics, for exporters
+    public record OperationSnapshot(long calls, long failures, long p50Nanos, long p99Nanos, long maxNanos) {
+    }
+
+    public record Snapshot(Map<Operation, OperationSnapshot> operations, long bytesRead, long bytesWritten,
+                           long recordsParsed, long parseFailures, Map<Rule, Long> rejections) {
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            operations.forEach((op, s) -> sb.append(String.format(
+                    "%-22s calls=%d failures=%d p50=%.1fus p99=%.1fus max=%.1fus%n", op.label(),
+                    s.calls(), s.failures(), s.p50Nanos() / 1e3, s.p99Nanos() / 1e3, s.maxNanos() / 1e3)));
+            sb.append(String.format("bytesRead=%d bytesWritten=%d recordsParsed=%d parseFailures=%d%n",
+                    bytesRead, bytesWritten, recordsParsed, parseFailures));
+            sb.append("rejections=").append(rejections);
+            return sb.toString();
+        }
+    }
+
+    private static final class OperationStats implements OperationMetricsMXBean {
+        final LongAdder calls = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        @Override
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        @Override
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        @Override
+        public double getP50Micros() {
+            return latency.percentile(0.50) / 1e3;
+        }
+
+        @Override
+        public double getP99Micros() {
+            return latency.percentile(0.99) / 1e3;
+        }
+
+        @Override
+        public double getMaxMicros() {
+            return latency.max() / 1e3;
+        }
+    }
+
+    private static final OperationStats[] OPERATIONS = new OperationStats[Operation.values().length];
+    private static final LongAdder[] REJECTIONS = new LongAdder[Rule.values().length];
+    private static final LongAdder BYTES_READ = new LongAdder();
+    private static final LongAdder BYTES_WRITTEN = new LongAdder();
+    private static final LongAdder RECORDS_PARSED = new LongAdder();
+    private static final LongAdder PARSE_FAILURES = new LongAdder();
+
+    private static final List<MetricsExporter> EXPORTERS = new CopyOnWriteArrayList<>();
+    private static ScheduledExecutorService exportTimer;
+
+    static {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            OPERATIONS[i] = new OperationStats();
+        }
+        for (int i = 0; i < REJECTIONS.length; i++) {
+            REJECTIONS[i] = new LongAdder();
+        }
+        if (ENABLED) {
+            registerMBeans();
+        }
+    }
+
+    private RegistryMetrics() {
+    }
+
+    // HOOKS (no-ops when disabled)
+
+    // a start time for finish(), or 0 when disabled
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+    static void finish(Operation op, long start, boolean ok) {
+        if (!ENABLED) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        OperationStats s = OPERATIONS[op.ordinal()];
+        s.calls.increment();
+        if (!ok) {
+            s.failures.increment();
+        }
+        s.latency.record(nanos);
+    }
+
+    static void reject(Rule rule) {
+        if (ENABLED) {
+            REJECTIONS[rule.ordinal()].increment();
+        }
+    }
+
+    static void read(long bytes, long records) {
+        if (ENABLED) {
+            BYTES_READ.add(bytes);
+            RECORDS_PARSED.add(records);
+        }
+    }
+
+    static void parseFailure() {
+        if (ENABLED) {
+            PARSE_FAILURES.increment();
+        }
+    }
+
+    static void written(long bytes) {
+        if (ENABLED) {
+            BYTES_WRITTEN.add(bytes);
+        }
+    }
+
+    // READING
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    public static Snapshot snapshot() {
+        Map<Operation, OperationSnapshot> ops = new EnumMap<>(Operation.class);
+        for (Operation op : Operation.values()) {
+            OperationStats s = OPERATIONS[op.ordinal()];
+            ops.put(op, new OperationSnapshot(s.calls.sum(), s.failures.sum(),
+                    s.latency.percentile(0.50), s.latency.percentile(0.99), s.latency.max()));
+        }
+        Map<Rule, Long> rejections = new EnumMap<>(Rule.class);
+        for (Rule rule : Rule.values()) {
+            rejections.put(rule, REJECTIONS[rule.ordinal()].sum());
+        }
+        return new Snapshot(ops, BYTES_READ.sum(), BYTES_WRITTEN.sum(), RECORDS_PARSED.sum(),
+                PARSE_FAILURES.sum(), rejections);
+    }
+
+    public static void reset() {
+        for (OperationStats s : OPERATIONS) {
+            s.calls.reset();
+            s.failures.reset();
+            s.latency.reset();
+        }
+        for (LongAdder r : REJECTIONS) {
+            r.reset();
+        }
+        BYTES_READ.reset();
+        BYTES_WRITTEN.reset();
+        RECORDS_PARSED.reset();
+        PARSE_FAILURES.reset();
+    }
+
+    // EXPORTING
+
+    public static void addExporter(MetricsExporter exporter) {
+        EXPORTERS.add(exporter);
+    }
+
+    public static void removeExporter(MetricsExporter exporter) {
+        EXPORTERS.remove(exporter);
+    }
+
+    // hand one snapshot to every exporter; an exporter that throws does not stop the others
+    public static void export() {
+        if (EXPORTERS.isEmpty()) {
+            return;
+        }
+        Snapshot snapshot = snapshot();
+        for (MetricsExporter exporter : EXPORTERS) {
+            try {
+                exporter.export(snapshot);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // export() every period from a daemon thread, from now on; a later call replaces the period
+    public static synchronized void exportEvery(Duration period) {
+        if (exportTimer != null) {
+            exportTimer.shutdownNow();
+        }
+        exportTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "registry-metrics-export");
+            t.setDaemon(true);
+            return t;
+        });
+        long millis = Math.max(1, period.toMillis());
+        exportTimer.scheduleAtFixedRate(RegistryMetrics::export, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    // JMX
+
+    private static void registerMBeans() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            register(server, new ObjectName("au.edu.rmit.sct:type=RegistryMetrics"), new Totals());
+            for (Operation op : Operation.values()) {
+                register(server, new ObjectName("au.edu.rmit.sct:type=RegistryMetrics,operation=" + op.label()),
+                        OPERATIONS[op.ordinal()]);
+            }
+        } catch (JMException | RuntimeException e) {
+            // metrics are best effort: no JMX must never stop the registry
+            e.printStackTrace();
+        }
+    }
+
+    private static void register(MBeanServer server, ObjectName name, Object bean) throws JMException {
+        if (!server.isRegistered(name)) {
+            server.registerMBean(bean, name);
+        }
+    }
+
+    private static final class Totals implements RegistryMetricsMXBean {
+        @Override
+        public long getBytesRead() {
+            return BYTES_READ.sum();
+        }
+
+        @Override
+        public long getBytesWritten() {
+            return BYTES_WRITTEN.sum();
+        }
+
+        @Override
+        public long getRecordsParsed() {
+            return RECORDS_PARSED.sum();
+        }
+
+        @Override
+        public long getParseFailures() {
+            return PARSE_FAILURES.sum();
+        }
+
+        @Override
+        public Map<String, Long> getRejections() {
+            Map<String, Long> out = new LinkedHashMap<>();
+            for (Rule rule : Rule.values()) {
+                out.put(rule.name(), REJECTIONS[rule.ordinal()].sum());
+            }
+            return out;
+        }
+
+        @Override
+        public void reset() {
+            RegistryMetrics.reset();
+        }
+    }
+}
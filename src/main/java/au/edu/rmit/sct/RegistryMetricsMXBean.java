@@ -0,0 +1,23 @@
+package au.edu.rmit.sct;
+
+import java.util.Map;
+
+/**
+ * JMX view of the registry-wide counters, registered as au.edu.rmit.sct:type=RegistryMetrics.
+*/
+
+public interface RegistryMetricsMXBean {
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    long getRecordsParsed();
+
+    long getParseFailures();
+
+    // rejections per validation rule, e.g. PERSON_ID -> 12
+    Map<String, Long> getRejections();
+
+    void reset();
+}
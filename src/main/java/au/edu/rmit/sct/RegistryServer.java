@@ -0,0 +1,198 @@
+package au.edu.rmit.sct;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP front end for the registry on the JDK's built-in server, one virtual thread per request.
+
+    GET  /persons/{id}             200 the persons file line of that Person, 404 if unknown
+    POST /persons                  form personID, firstName, lastName, address, birthdate -> addPerson()
+    PUT  /persons/{id}             form with any of those fields -> updatePersonalDetails(id);
+                                   fields left out keep their stored value
+    POST /persons/{id}/demerits    form offenseDate, points -> addDemeritPoints()
+
+    Bodies are application/x-www-form-urlencoded and responses text/plain UTF-8. Mutations
+    answer "Success" (200, 201 for a new Person) or "Failed" (422 when a validation rule
+    or the store turned the request down, 404 when the person does not exist). The {id}
+    path segment is percent-encoded, '+' included, since IDs may hold any special char.
+    Every request runs the same Person methods an in-process caller uses, so requests
+    block on file I/O freely: a blocked virtual thread does not hold a carrier thread.
+*/
+
+public final class RegistryServer implements AutoCloseable {
+
+    private static final int BACKLOG = 16_384;
+
+    private final PersonRepository repo;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // port 0 picks a free port, see port()
+    public RegistryServer(PersonRepository repo, int port) throws IOException {
+        this.repo = repo;
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        server.createContext("/persons", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public RegistryServer start() {
+        server.start();
+        return this;
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    // stops accepting, lets running requests finish for up to a second, then stops the executor
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    // ROUTING
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            String[] path = segments(ex.getRequestURI().getRawPath());  // "persons", [id], ["demerits"]
+            String method = ex.getRequestMethod();
+            if (path.length == 2 && method.equals("GET")) {
+                lookup(ex, path[1]);
+            } else if (path.length == 1 && method.equals("POST")) {
+                add(ex, form(ex));
+            } else if (path.length == 2 && method.equals("PUT")) {
+                update(ex, path[1], form(ex));
+            } else if (path.length == 3 && path[2].equals("demerits") && method.equals("POST")) {
+                demerits(ex, path[1], form(ex));
+            } else if (path.length <= 3) {
+                respond(ex, 405, "Method Not Allowed");
+            } else {
+                respond(ex, 404, "Not Found");
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            respond(ex, 500, "Failed");
+        }
+    }
+
+    private void lookup(HttpExchange ex, String id) throws IOException {
+        Person p = repo.find(id);
+        if (p == null) {
+            respond(ex, 404, "Not Found");
+        } else {
+            respond(ex, 200, p.toLine());
+        }
+    }
+
+    private void add(HttpExchange ex, Map<String, String> form) throws IOException {
+        Person p = new Person(form.get("personID"), form.get("firstName"), form.get("lastName"),
+                form.get("address"), form.get("birthdate"));
+        if (p.addPerson(repo)) {
+            respond(ex, 201, "Success");
+        } else {
+            respond(ex, 422, "Failed");
+        }
+    }
+
+    private void update(HttpExchange ex, String id, Map<String, String> form) throws IOException {
+        Person p = repo.find(id);
+        if (p == null) {
+            respond(ex, 404, "Failed");
+            return;
+        }
+        p.setPersonID(form.getOrDefault("personID", p.getPersonID()));
+        p.setFirstName(form.getOrDefault("firstName", p.getFirstName()));
+        p.setLastName(form.getOrDefault("lastName", p.getLastName()));
+        p.setAddress(form.getOrDefault("address", p.getAddress()));
+        p.setBirthdate(form.getOrDefault("birthdate", p.getBirthdate()));
+        if (p.updatePersonalDetails(repo, id)) {
+            respond(ex, 200, "Success");
+        } else {
+            respond(ex, repo.contains(id) ? 422 : 404, "Failed");
+        }
+    }
+
+    private void demerits(HttpExchange ex, String id, Map<String, String> form) throws IOException {
+        Person p = repo.find(id);
+        if (p == null) {
+            respond(ex, 404, "Failed");
+            return;
+        }
+        int points;
+        try {
+            points = Integer.parseInt(form.getOrDefault("points", ""));
+        } catch (NumberFormatException e) {
+            respond(ex, 422, "Failed");
+            return;
+        }
+        String result = p.addDemeritPoints(repo, form.get("offenseDate"), points);
+        respond(ex, result.equals("Success") ? 200 : 422, result);
+    }
+
+    // PLUMBING
+
+    private static void respond(HttpExchange ex, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // decoded path segments, without empty ones
+    private static String[] segments(String rawPath) {
+        return Arrays.stream(rawPath.split("/"))
+                .filter(s -> !s.isEmpty())
+                .map(RegistryServer::decode)
+                .toArray(String[]::new);
+    }
+
+    private static Map<String, String> form(HttpExchange ex) throws IOException {
+        Map<String, String> form = new HashMap<>();
+        String body;
+        try (InputStream in = ex.getRequestBody()) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        for (String pair : body.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            form.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return form;
+    }
+
+    // percent-decoding that keeps '+' as is, unlike form decoding
+    private static String decode(String segment) {
+        return URLDecoder.decode(segment.replace("+", "%2B"), StandardCharsets.UTF_8);
+    }
+
+    // usage: RegistryServer [port] [file]   serves the file (default data/persons.txt) on the port (default 8080)
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        Path file = args.length > 1 ? Paths.get(args[1]) : Paths.get(Person.FILE_PATH);
+        RegistryServer server = new RegistryServer(PersonRepository.open(file), port).start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.out.println("serving " + file + " on http://localhost:" + server.port() + "/persons");
+    }
+}
@@ -0,0 +1,83 @@
+package au.edu.rmit.sct;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic synthetic registries for benchmarks and load tests.
+
+    Person i always gets the same valid, unique personID and the same randomised
+    names, Victorian address, birthdate and demerit history for a given seed, so
+    benchmark runs are comparable across formats and machines.
+*/
+
+public final class SampleRegistry {
+
+    private static final String[] FIRST = {"Alice", "Bob", "Chloe", "Daniel", "Emma", "Farhan", "Grace", "Huy",
+            "Isla", "Jack", "Kiri", "Liam", "Mei", "Noah", "Olivia", "Priya"};
+    private static final String[] LAST = {"Smith", "Nguyen", "Williams", "Brown", "Wilson", "Taylor", "Singh",
+            "Anderson", "Chen", "Martin", "Kelly", "Patel", "Walker", "Harris", "Lee", "Ryan"};
+    private static final String[] STREET = {"Main Street", "Swanston Street", "High Street", "Station Road",
+            "Church Street", "Park Avenue", "Queen Street", "Collins Street"};
+    private static final String[] CITY = {"Melbourne", "Geelong", "Ballarat", "Bendigo", "Shepparton",
+            "Mildura", "Warrnambool", "Traralgon"};
+    private static final char[] SPECIAL = "!@#$%^&*".toCharArray();
+    private static final char[] BASE36 = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+
+    private static final int FIRST_DAY = DateCodec.parse("01-01-1950");
+    private static final int LAST_DAY  = DateCodec.parse("31-12-2005");
+
+    private SampleRegistry() {
+    }
+
+    // a valid personID that is unique for every i in [0, 64 * 676 * 36^4)
+    public static String personID(int i) {
+        char[] id = new char[10];
+        id[0] = (char) ('2' + (i & 7));
+        id[1] = (char) ('2' + ((i >>> 3) & 7));
+        int rest = i >>> 6;
+        id[8] = (char) ('A' + rest % 26);
+        rest /= 26;
+        id[9] = (char) ('A' + rest % 26);
+        rest /= 26;
+        id[2] = SPECIAL[i & 7];
+        id[3] = SPECIAL[(i >>> 3) & 7];
+        for (int k = 7; k >= 4; k--) {
+            id[k] = BASE36[rest % 36];
+            rest /= 36;
+        }
+        return new String(id);
+    }
+
+    public static Person person(int i, long seed) {
+        SplittableRandom rnd = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + i);
+        String address = (1 + rnd.nextInt(400)) + "|" + STREET[rnd.nextInt(STREET.length)] + "|"
+                + CITY[rnd.nextInt(CITY.length)] + "|Victoria|Australia";
+        int birthDay = rnd.nextInt(FIRST_DAY, LAST_DAY + 1);
+        Person p = new Person(personID(i), FIRST[rnd.nextInt(FIRST.length)], LAST[rnd.nextInt(LAST.length)],
+                address, DateCodec.format(birthDay));
+        int offences = rnd.nextInt(6);
+        int day = birthDay + 18 * 366;
+        for (int k = 0; k < offences; k++) {
+            day += 1 + rnd.nextInt(400);
+            p.getDemeritHistory().record(day, 1 + rnd.nextInt(6));
+        }
+        p.setSuspended(rnd.nextInt(20) == 0);
+        return p;
+    }
+
+    public static List<Person> generate(int count, long seed) {
+        List<Person> all = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            all.add(person(i, seed));
+        }
+        return all;
+    }
+
+    // write count sample Persons as a pipe-delimited text registry
+    public static boolean writeText(Path file, int count, long seed) {
+        return Person.writeAllPersonsToFile(file.toFile(), generate(count, seed));
+    }
+}
@@ -0,0 +1,354 @@
+package au.edu.rmit.sct;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * The text layout split into one file per personID prefix, so a write only touches its shard.
+
+    A personID starts with two digits 2-9, so there are 64 shards: "22.txt" to "99.txt" in
+    the shard directory, plus "other.txt" for any stored ID that does not start that way.
+    Storage order is shard order, then line order within a shard; all shards load in parallel.
+
+    New persons are appended to their shard; any other change rewrites only the shards it
+    touches, each into "<shard>.tmp" and then atomically moved over the shard.
+
+    Every commit ends by replacing the "generation" file, so other processes notice it with
+    a single stat however many shards there are. A commit that touches several shards (e.g.
+    an ID change that moves a record to another prefix) also announces itself there: once
+    all its temps are written, the generation names them as pending, then they are moved in
+    and the generation is replaced again. A load that finds shards pending from a process
+    that is gone moves the rest of them in, so a moved record is never lost nor stored twice.
+
+    generation file format: "<pid>" and then one pending shard number per line.
+
+    Commits to different shards run in parallel; commits to one shard, and commits that
+    touch several shards, are serialized. Convert an existing registry with
+    RegistryFormatConverter to-shards / from-shards.
+*/
+
+public class ShardedStore implements PersonStore {
+
+    static final int SHARDS = 64;
+    // IDs that do not start with two digits 2-9
+    static final int OTHER = SHARDS;
+
+    private static final String TEMP = ".tmp";
+    private static final long PID = ProcessHandle.current().pid();
+
+    private final Path dir;
+    private final Path generation;
+    private final ReentrantLock[] locks = new ReentrantLock[OTHER + 1];
+    // one multi-shard commit at a time, as the generation file names the pending shards of just one
+    private final ReentrantLock multiShard = new ReentrantLock();
+
+    // the generation file as of our last read/write; null forces a reload
+    private FileStamp knownGeneration;
+    // shards of our multi-shard commit that may not be moved in yet, written into every generation
+    private List<Integer> pending = List.of();
+
+    public ShardedStore(Path dir) {
+        this.dir = dir;
+        this.generation = dir.resolve("generation");
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public Path getDirectory() {
+        return dir;
+    }
+
+    // 0..63 for IDs starting with two digits 2-9, OTHER for the rest
+    static int shardOf(String personID) {
+        if (personID == null || personID.length() < 2) {
+            return OTHER;
+        }
+        int hi = personID.charAt(0) - '2';
+        int lo = personID.charAt(1) - '2';
+        if (hi < 0 || hi > 7 || lo < 0 || lo > 7) {
+            return OTHER;
+        }
+        return hi * 8 + lo;
+    }
+
+    Path shardFile(int shard) {
+        if (shard == OTHER) {
+            return dir.resolve("other.txt");
+        }
+        return dir.resolve("" + (char) ('2' + shard / 8) + (char) ('2' + shard % 8) + ".txt");
+    }
+
+    // LOADING
+
+    @Override
+    public List<Person> load() {
+        FileStamp before = recover();
+        List<List<Person>> shards = IntStream.rangeClosed(0, OTHER).parallel()
+                .mapToObj(s -> Person.readAllPersonsFromFile(shardFile(s).toFile()))
+                .toList();
+        remember(before);
+        return concat(shards);
+    }
+
+    @Override
+    public List<PersonRecord> loadRecords() {
+        FileStamp before = recover();
+        List<List<PersonRecord>> shards = IntStream.rangeClosed(0, OTHER).parallel()
+                .mapToObj(s -> Person.readAllRecordsFromFile(shardFile(s).toFile()))
+                .toList();
+        remember(before);
+        return concat(shards);
+    }
+
+    private static <T> List<T> concat(List<List<T>> shards) {
+        int size = 0;
+        for (List<T> shard : shards) {
+            size += shard.size();
+        }
+        List<T> all = new ArrayList<>(size);
+        for (List<T> shard : shards) {
+            all.addAll(shard);
+        }
+        return all;
+    }
+
+    // finish a multi-shard commit whose process died (or whose moves failed here) part-way.
+    // returns the generation stamp to vouch for once the shards are read, null if unsure
+    private synchronized FileStamp recover() {
+        FileStamp stamp = FileStamp.of(generation);
+        List<String> lines;
+        try {
+            lines = stamp != null && stamp.exists()
+                    ? Files.readAllLines(generation, StandardCharsets.UTF_8) : List.of();
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            return null;
+        }
+        if (lines.size() < 2) {
+            return stamp;  // nothing pending
+        }
+        try {
+            long owner = Long.parseLong(lines.get(0).trim());
+            if (owner != PID && ProcessHandle.of(owner).map(ProcessHandle::isAlive).orElse(false)) {
+                return null;  // still committing: read what is there, and again once it is done
+            }
+            for (String shard : lines.subList(1, lines.size())) {
+                install(Integer.parseInt(shard.trim()));
+            }
+            pending = List.of();
+            writeGeneration();
+        } catch (IOException | NumberFormatException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return FileStamp.of(generation);
+    }
+
+    private synchronized void remember(FileStamp stamp) {
+        knownGeneration = stamp;
+    }
+
+    @Override
+    public boolean appendsAdditions() {
+        return true;
+    }
+
+    // every commit replaces the generation file
+    @Override
+    public long fingerprint() {
+        return FileStamp.fingerprint(FileStamp.of(generation));
+    }
+
+    @Override
+    public synchronized boolean isStale() {
+        FileStamp current = FileStamp.of(generation);
+        return current == null || !current.equals(knownGeneration);
+    }
+
+    // COMMITTING
+
+    @Override
+    public boolean commit(List<RegistryChange> changes, Collection<PersonRecord> snapshot) {
+        // shard -> lines to append, or null once the shard has to be rewritten
+        TreeMap<Integer, List<String>> touched = new TreeMap<>();
+        for (RegistryChange change : changes) {
+            switch (change) {
+                case RegistryChange.PersonAdded a -> {
+                    int shard = shardOf(a.personID());
+                    if (!touched.containsKey(shard)) {
+                        touched.put(shard, new ArrayList<>());
+                    }
+                    List<String> lines = touched.get(shard);
+                    if (lines != null) {
+                        lines.add(a.line());
+                    }
+                }
+                case RegistryChange.DetailsChanged d -> {
+                    touched.put(shardOf(d.originalID()), null);
+                    touched.put(shardOf(d.personID()), null);
+                }
+                default -> touched.put(shardOf(change.personID()), null);
+            }
+        }
+        if (touched.isEmpty()) {
+            return true;
+        }
+
+        // lock the shards in ascending order, so overlapping commits cannot deadlock
+        boolean multi = touched.size() > 1 && touched.containsValue(null);
+        if (multi) {
+            multiShard.lock();
+        }
+        for (int shard : touched.keySet()) {
+            locks[shard].lock();
+        }
+        try {
+            return write(touched, snapshot);
+        } finally {
+            for (int shard : touched.descendingKeySet()) {
+                locks[shard].unlock();
+            }
+            if (multi) {
+                multiShard.unlock();
+            }
+        }
+    }
+
+    // append to or rewrite every touched shard; the caller holds their locks
+    private boolean write(TreeMap<Integer, List<String>> touched, Collection<PersonRecord> snapshot) {
+        // additions only: each shard gets one append. a failure part-way leaves the earlier
+        // shards appended, which the repository picks up when it reloads after the failure
+        if (!touched.containsValue(null)) {
+            boolean ok = true;
+            for (var shard : touched.entrySet()) {
+                ok &= Person.appendLinesToFile(shardFile(shard.getKey()).toFile(), shard.getValue());
+            }
+            return bumpGeneration(ok);
+        }
+
+        // everything else: rewrite the touched shards from the snapshot, including any
+        // additions to them, as their other records may have moved or changed too
+        TreeMap<Integer, List<PersonRecord>> contents = new TreeMap<>();
+        for (int shard : touched.keySet()) {
+            contents.put(shard, new ArrayList<>());
+        }
+        for (PersonRecord r : snapshot) {
+            List<PersonRecord> shard = contents.get(shardOf(r.personID()));
+            if (shard != null) {
+                shard.add(r);
+            }
+        }
+        return rewrite(contents);
+    }
+
+    // replace the given shards with the given records, all or nothing. the caller holds
+    // their locks, and the multi-shard lock if there is more than one
+    private boolean rewrite(TreeMap<Integer, List<PersonRecord>> contents) {
+        for (var shard : contents.entrySet()) {
+            if (!Person.writeAllRecordsToFile(temp(shard.getKey()).toFile(), shard.getValue())) {
+                return bumpGeneration(false);
+            }
+        }
+        try {
+            if (contents.size() > 1) {
+                // from here on the commit happens: if we die, the next load finishes it
+                synchronized (this) {
+                    pending = List.copyOf(contents.keySet());
+                    if (!bumpGeneration(true)) {
+                        pending = List.of();  // not announced, so nothing was committed
+                        return false;
+                    }
+                }
+            }
+            for (int shard : contents.keySet()) {
+                install(shard);
+            }
+            synchronized (this) {
+                pending = List.of();
+            }
+            return bumpGeneration(true);
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            // leave anything pending for the reload that follows the failed commit
+            return bumpGeneration(false);
+        }
+    }
+
+    private Path temp(int shard) {
+        Path file = shardFile(shard);
+        return file.resolveSibling(file.getFileName() + TEMP);
+    }
+
+    // move the shard's temp over it, unless that was done already
+    private void install(int shard) throws IOException {
+        try {
+            Files.move(temp(shard), shardFile(shard),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException alreadyInstalled) {
+            // moved in before a crash, or by an earlier recovery
+        }
+    }
+
+    // tell other processes the shards changed, and vouch for the result if the commit wrote
+    // everything and no one else had changed the store before. returns false if !ok or it fails
+    private synchronized boolean bumpGeneration(boolean ok) {
+        boolean inSync = !isStale();
+        try {
+            writeGeneration();
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            knownGeneration = null;
+            return false;
+        }
+        knownGeneration = ok && inSync ? FileStamp.of(generation) : null;
+        return ok;
+    }
+
+    // replace the generation file (a new file, so its stamp changes) with our pending shards
+    private synchronized void writeGeneration() throws IOException {
+        StringBuilder sb = new StringBuilder().append(PID).append('\n');
+        for (int shard : pending) {
+            sb.append(shard).append('\n');
+        }
+        Files.createDirectories(dir);
+        Path temp = generation.resolveSibling(generation.getFileName() + TEMP);
+        Files.writeString(temp, sb, StandardCharsets.UTF_8);
+        Files.move(temp, generation, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // MIGRATION
+
+    // replace every shard with the records, in one all-or-nothing commit. returns false if that fails
+    public boolean replaceAll(Collection<PersonRecord> records) {
+        TreeMap<Integer, List<PersonRecord>> contents = new TreeMap<>();
+        for (int shard = 0; shard <= OTHER; shard++) {
+            contents.put(shard, new ArrayList<>());
+        }
+        for (PersonRecord r : records) {
+            contents.get(shardOf(r.personID())).add(r);
+        }
+        multiShard.lock();
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+        try {
+            return rewrite(contents);
+        } finally {
+            for (int i = locks.length - 1; i >= 0; i--) {
+                locks[i].unlock();
+            }
+            multiShard.unlock();
+        }
+    }
+}
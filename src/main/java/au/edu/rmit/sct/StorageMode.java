@@ -0,0 +1,50 @@
+package au.edu.rmit.sct;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Storage layouts a PersonRepository can sit on, selected with -Droadregistry.storage=...
+
+    TEXT     one pipe-delimited line per Person, rewritten on every change (the default)
+    JOURNAL  TEXT snapshot plus an append-only change journal, compacted in the background
+    BINARY   BinaryPersonCodec records in "<name>.bin" next to the text file (persons.txt -> persons.bin);
+             convert an existing registry with RegistryFormatConverter
+    SHARDED  TEXT split into one file per two-digit personID prefix, in "<name>.shards/" next to the
+             text file (persons.txt -> persons.shards/); migrate with RegistryFormatConverter
+*/
+
+public enum StorageMode {
+    TEXT,
+    JOURNAL,
+    BINARY,
+    SHARDED;
+
+    public static StorageMode configured() {
+        String mode = System.getProperty("roadregistry.storage", "text");
+        return valueOf(mode.trim().toUpperCase(Locale.ROOT));
+    }
+
+    public PersonStore open(Path file) {
+        return switch (this) {
+            case TEXT    -> new TextFileStore(file);
+            case JOURNAL -> new JournaledStore(file);
+            case BINARY  -> new BinaryFileStore(binaryFileFor(file));
+            case SHARDED -> new ShardedStore(shardDirFor(file));
+        };
+    }
+
+    // persons.txt -> persons.bin
+    static Path binaryFileFor(Path textFile) {
+        String name = textFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return textFile.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".bin");
+    }
+
+    // persons.txt -> persons.shards
+    static Path shardDirFor(Path textFile) {
+        String name = textFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return textFile.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".shards");
+    }
+}
@@ -0,0 +1,30 @@
+package au.edu.rmit.sct;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks shared out by key hash, so updates for unrelated keys rarely contend
+ * while updates for the same key are always serialized.
+*/
+
+final class StripedLock {
+
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    // stripes is rounded up to a power of two
+    StripedLock(int stripes) {
+        int n = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        locks = new ReentrantLock[n];
+        for (int i = 0; i < n; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        mask = n - 1;
+    }
+
+    ReentrantLock forKey(Object key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;  // spread the high bits, String hashes of similar IDs differ mostly there
+        return locks[h & mask];
+    }
+}
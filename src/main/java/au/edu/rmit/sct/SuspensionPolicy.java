@@ -0,0 +1,108 @@
+package au.edu.rmit.sct;
+
+/**
+ * The licence suspension rules, applied per offence by addDemeritPoints, registry-wide by
+ * PersonRepository.reevaluateSuspensions, and as of past days by OffenceTimeline.
+
+    An offence suspends the licence when the points of every offence in the window ending
+    on its day (windowYears back, both ends inclusive) exceed the limit for the driver's
+    age on that day: youngDriverLimit below youngDriverAge, adultLimit from then on.
+    A suspension is never lifted by time passing, so a driver is suspended as of a day
+    exactly when some offence on or before that day triggered the rule.
+    DEFAULT is the legislated policy: 2 years, under 21 more than 6 points, otherwise more than 12.
+*/
+
+public record SuspensionPolicy(int windowYears, int youngDriverAge, int youngDriverLimit, int adultLimit) {
+
+    public static final SuspensionPolicy DEFAULT = new SuspensionPolicy(2, 21, 6, 12);
+
+    // firstTrigger() of a history that never suspends
+    public static final int NEVER = Integer.MAX_VALUE;
+
+    // points a driver of that age may hold within the window without being suspended
+    public int limitAt(int age) {
+        return age < youngDriverAge ? youngDriverLimit : adultLimit;
+    }
+
+    // whether the offence on offenceDay, already recorded in the history, suspends the licence.
+    // false for a birthdate that is unparseable or after the offence
+    public boolean triggers(DemeritHistory history, int birthDay, int offenceDay) {
+        if (birthDay == DateCodec.INVALID) {
+            return false;
+        }
+        int age = DateCodec.ageInYears(birthDay, offenceDay);
+        if (age < 0) {
+            return false;
+        }
+        int windowStart = DateCodec.minusYears(offenceDay, windowYears);
+        return history.windowTotal(windowStart, offenceDay) > limitAt(age);
+    }
+
+    // the suspension status as of referenceDay: some offence on or before it triggered the rule.
+    // offences are checked in date order, so this is what addDemeritPoints decides when they
+    // arrive in date order
+    public boolean isSuspended(DemeritHistory history, int birthDay, int referenceDay) {
+        for (int i = 0; i < history.size() && history.dayAt(i) <= referenceDay; i++) {
+            if (triggers(history, birthDay, history.dayAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the day of the first offence that triggers the rule, or NEVER: the licence is suspended
+    // as of exactly the days on or after it (see OffenceTimeline)
+    public int firstTrigger(DemeritHistory history, int birthDay) {
+        for (int i = 0; i < history.size(); i++) {
+            if (triggers(history, birthDay, history.dayAt(i))) {
+                return history.dayAt(i);
+            }
+        }
+        return NEVER;
+    }
+
+    public boolean isSuspended(Person p, int referenceDay) {
+        return isSuspended(p.getDemeritHistory(), DateCodec.parse(p.getBirthdate()), referenceDay);
+    }
+
+    // same, reading a record that was never decoded straight from its line
+    public boolean isSuspended(PersonRecord r, int referenceDay) {
+        String raw = r.rawLine();
+        if (raw == null || r.isDecoded()) {
+            return isSuspended(r.person(), referenceDay);
+        }
+        Offences o = Offences.of(raw);
+        return isSuspended(o.history, o.birthDay, referenceDay);
+    }
+
+    // the birthdate and demerit history of a line, in one pass
+    private static final class Offences implements PersonLineParser.Visitor {
+        private static final ThreadLocal<PersonLineParser> PARSER = ThreadLocal.withInitial(PersonLineParser::new);
+
+        private final String line;
+        final DemeritHistory history = new DemeritHistory();
+        int birthDay = DateCodec.INVALID;
+
+        private Offences(String line) {
+            this.line = line;
+        }
+
+        static Offences of(String line) {
+            Offences o = new Offences(line);
+            PARSER.get().visit(line, o);
+            return o;
+        }
+
+        @Override
+        public void field(PersonLineParser.Field field, int from, int to) {
+            if (field == PersonLineParser.Field.BIRTHDATE) {
+                birthDay = DateCodec.parse(line, from, to);
+            }
+        }
+
+        @Override
+        public void offence(int epochDay, int points) {
+            history.record(epochDay, points);
+        }
+    }
+}
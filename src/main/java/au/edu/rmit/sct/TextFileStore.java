@@ -0,0 +1,234 @@
+package au.edu.rmit.sct;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The original storage layout: one pipe-delimited line per Person in a single text file.
+
+    New persons are appended; any other change rewrites the whole file, copying the
+    raw line of every record that was not decoded. A rewrite always goes to "<file>.tmp"
+    and is renamed over the file, never truncating it, because the records of a big file
+    still read their lines from its mapping (PersonRecord). How the writes reach the disk
+    is up to the DurabilityMode.
+
+    Under GROUP_COMMIT a rewrite goes to "<file>.tmp" and stays there until the next
+    group sync renames it in; appends made meanwhile go to the temp file too, so it
+    always holds the newest full registry. If the file was changed by anyone else in
+    between, the temp file is built on what they replaced: it is dropped instead, and
+    the commits waiting for it fail, so their callers reload.
+*/
+
+public class TextFileStore implements PersonStore {
+
+    private final Path file;
+    private final Path temp;
+    private final DurabilityMode durability;
+    private final Duration groupWindow;
+    private GroupCommit group;  // GROUP_COMMIT only, created by the first commit
+
+    // attributes of the file as of our last read/write; null forces a reload
+    private FileStamp knownStamp;
+    // GROUP_COMMIT: the temp file holds a newer registry than the file
+    private boolean renamePending;
+    // GROUP_COMMIT: the batch of this thread's last commit, until it awaits it
+    private final ThreadLocal<GroupCommit.Batch> lastBatch = new ThreadLocal<>();
+
+    public TextFileStore(Path file) {
+        this(file, DurabilityMode.configured());
+    }
+
+    public TextFileStore(Path file, DurabilityMode durability) {
+        this(file, durability, DurabilityMode.GROUP_WINDOW);
+    }
+
+    // groupWindow: how long a GROUP_COMMIT leader waits for more commits to join
+    TextFileStore(Path file, DurabilityMode durability, Duration groupWindow) {
+        this.file = file;
+        this.temp = file.resolveSibling(file.getFileName() + ".tmp");
+        this.durability = durability;
+        this.groupWindow = groupWindow;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public DurabilityMode getDurability() {
+        return durability;
+    }
+
+    @Override
+    public synchronized List<Person> load() {
+        dropPending();
+        FileStamp before = FileStamp.of(file);
+        List<Person> all = Person.readAllPersonsFromFile(file.toFile());
+        knownStamp = before;
+        return all;
+    }
+
+    @Override
+    public synchronized List<PersonRecord> loadRecords() {
+        dropPending();
+        FileStamp before = FileStamp.of(file);
+        List<PersonRecord> all = Person.readAllRecordsFromFile(file.toFile());
+        knownStamp = before;
+        return all;
+    }
+
+    @Override
+    public boolean appendsAdditions() {
+        return true;
+    }
+
+    @Override
+    public long fingerprint() {
+        return FileStamp.fingerprint(FileStamp.of(file));
+    }
+
+    @Override
+    public synchronized boolean isStale() {
+        FileStamp current = FileStamp.of(file);
+        return current == null || !current.equals(knownStamp);
+    }
+
+    @Override
+    public synchronized boolean commit(List<RegistryChange> changes, Collection<PersonRecord> snapshot) {
+        boolean additions = onlyAdditions(changes);
+        boolean ok = switch (durability) {
+            case NONE -> additions
+                    ? Person.appendLinesToFile(file.toFile(), lines(changes))
+                    : Person.writeAllRecordsToFile(temp.toFile(), snapshot) && rename();
+            case ATOMIC -> additions
+                    ? Person.appendLinesToFile(file.toFile(), lines(changes)) && force(file)
+                    : Person.writeAllRecordsToFile(temp.toFile(), snapshot) && force(temp) && install();
+            case GROUP_COMMIT -> commitToGroup(additions, changes, snapshot);
+        };
+        if (durability != DurabilityMode.GROUP_COMMIT || !renamePending) {
+            knownStamp = ok ? FileStamp.of(file) : null;
+        }
+        return ok;
+    }
+
+    // write without syncing, and join the group that syncs it
+    private boolean commitToGroup(boolean additions, List<RegistryChange> changes, Collection<PersonRecord> snapshot) {
+        lastBatch.remove();
+        boolean ok;
+        if (additions) {
+            ok = Person.appendLinesToFile((renamePending ? temp : file).toFile(), lines(changes));
+        } else {
+            renamePending = true;  // from now on the temp file is either the newest registry or lost
+            ok = Person.writeAllRecordsToFile(temp.toFile(), snapshot);
+        }
+        if (!ok) {
+            dropPending();
+            knownStamp = null;
+            return false;
+        }
+        if (group == null) {
+            group = new GroupCommit(groupWindow, DurabilityMode.GROUP_MAX_BATCH, this::sync);
+        }
+        lastBatch.set(group.join());
+        return true;
+    }
+
+    @Override
+    public boolean awaitDurable() {
+        GroupCommit.Batch batch = lastBatch.get();
+        if (batch == null) {
+            return true;
+        }
+        lastBatch.remove();
+        return group.await(batch);
+    }
+
+    // GROUP_COMMIT: the sync a group leader runs for its batch
+    private synchronized boolean sync() {
+        if (!renamePending) {
+            return force(file);
+        }
+        if (isStale()) {
+            // someone else wrote the file since: renaming would overwrite what they stored
+            dropPending();
+            knownStamp = null;
+            return false;
+        }
+        boolean ok = force(temp) && install();
+        renamePending = false;
+        knownStamp = ok ? FileStamp.of(file) : null;
+        return ok;
+    }
+
+    // GROUP_COMMIT: the registry waiting in the temp file is gone, and so are the commits not synced yet
+    private void dropPending() {
+        if (renamePending) {
+            group.failPending();
+            renamePending = false;
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+        }
+    }
+
+    // rename the temp file over the file
+    private boolean rename() {
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            return false;
+        }
+    }
+
+    // rename the synced temp file over the file, and sync the directory entry
+    private boolean install() {
+        if (!rename()) {
+            return false;
+        }
+        Path dir = file.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException notSupported) {
+            // not every platform can open a directory; the rename itself was atomic
+        }
+        return true;
+    }
+
+    private static boolean force(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.force(true);
+            return true;
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            return false;
+        }
+    }
+
+    private static List<String> lines(List<RegistryChange> changes) {
+        List<String> lines = new ArrayList<>(changes.size());
+        for (RegistryChange change : changes) {
+            lines.add(((RegistryChange.PersonAdded) change).line());
+        }
+        return lines;
+    }
+
+    private static boolean onlyAdditions(List<RegistryChange> changes) {
+        for (RegistryChange change : changes) {
+            if (!(change instanceof RegistryChange.PersonAdded)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,134 @@
+package au.edu.rmit.sct;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import static au.edu.rmit.sct.PersonFixtures.person;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class AsyncRegistryTest {
+
+    @TempDir
+    Path dir;
+
+    // counts store writes
+    private static final class CountingStore extends TextFileStore {
+        final AtomicInteger commits = new AtomicInteger();
+
+        CountingStore(Path file) {
+            super(file);
+        }
+
+        @Override
+        public synchronized boolean commit(List<RegistryChange> changes, Collection<PersonRecord> snapshot) {
+            commits.incrementAndGet();
+            return super.commit(changes, snapshot);
+        }
+    }
+
+    @Test
+    @DisplayName("Async: requests queued behind a busy writer share one store write")
+    void testRequests_CoalescedIntoOneWrite() {
+        CountingStore store = new CountingStore(dir.resolve("persons.txt"));
+        PersonRepository repo = new PersonRepository(store);
+        AsyncRegistry async = repo.async();
+
+        CountDownLatch release = new CountDownLatch(1);
+        assertTrue(async.add(person("23@#$%^STU")).join());
+        CompletableFuture<Boolean> hold = async.update("23@#$%^STU", p -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        });
+        // wait until the writer is inside the held batch, so everything below queues up
+        while (async.pending() > 0) {
+            Thread.onSpinWait();
+        }
+        List<CompletableFuture<Boolean>> queued = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            queued.add(async.add(SampleRegistry.person(i, 1)));
+        }
+        int before = store.commits.get();
+        release.countDown();
+
+        assertFalse(hold.join());
+        for (CompletableFuture<Boolean> f : queued) {
+            assertTrue(f.join());
+        }
+        assertEquals(before + 1, store.commits.get());
+        assertEquals(101, new TextFileStore(dir.resolve("persons.txt")).load().size());
+        repo.close();
+    }
+
+    @Test
+    @DisplayName("Async: requests for one person take effect in submission order")
+    void testRequests_OrderedPerPerson() {
+        PersonRepository repo = new PersonRepository(dir.resolve("persons.txt"));
+        Person p = person("23@#$%^STU");
+        assertTrue(p.addPersonAsync(repo).join());
+
+        List<CompletableFuture<String>> offences = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            offences.add(p.addDemeritPointsAsync(repo, DateCodec.format(DateCodec.parse("01-01-2020") + i * 40), 1));
+        }
+        List<CompletableFuture<Boolean>> renames = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String first = "Name" + i;
+            renames.add(repo.async().update("23@#$%^STU", target -> {
+                target.setFirstName(first);
+                return true;
+            }));
+        }
+        for (CompletableFuture<String> f : offences) {
+            assertEquals("Success", f.join());
+        }
+        CompletableFuture.allOf(renames.toArray(new CompletableFuture<?>[0])).join();
+
+        Person stored = new PersonRepository(dir.resolve("persons.txt")).find("23@#$%^STU");
+        assertEquals("Name19", stored.getFirstName());
+        assertEquals(50, stored.getDemeritHistory().size());
+        repo.close();
+    }
+
+    @Test
+    @DisplayName("Async: invalid, duplicate and failing requests are reported without affecting the rest")
+    void testRequests_Failures() {
+        PersonRepository repo = new PersonRepository(dir.resolve("persons.txt"));
+        Person p = person("23@#$%^STU");
+        assertTrue(p.addPersonAsync(repo).join());
+
+        assertFalse(person("bad").addPersonAsync(repo).join());
+        assertFalse(p.addPersonAsync(repo).join());
+        assertEquals("Failed", p.addDemeritPointsAsync(repo, "32-01-2020", 3).join());
+
+        CompletableFuture<Boolean> throwing = repo.async().update("23@#$%^STU", target -> {
+            throw new IllegalStateException("boom");
+        });
+        Person renamed = person("23@#$%^STU");
+        renamed.setLastName("Renamed");
+        CompletableFuture<Boolean> update = renamed.updatePersonalDetailsAsync(repo, "23@#$%^STU");
+        CompletionException e = assertThrows(CompletionException.class, throwing::join);
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertTrue(update.join());
+        assertEquals("Renamed", repo.find("23@#$%^STU").getLastName());
+
+        repo.close();
+        CompletionException closed = assertThrows(CompletionException.class,
+                () -> repo.async().add(person("34@#$%^GHI")).join());
+        assertInstanceOf(RejectedExecutionException.class, closed.getCause());
+    }
+}
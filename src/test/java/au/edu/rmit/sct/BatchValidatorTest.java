@@ -0,0 +1,119 @@
+package au.edu.rmit.sct;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+
+public class BatchValidatorTest {
+
+    // hand-picked edges of every rule, shared by all three columns
+    private static final List<String> EDGES = Arrays.asList(
+            null, "", " ", "|", "||||", "|||Victoria|", "1|Main Street|Melbourne|Victoria|Australia",
+            "1|Main Street|Melbourne|Victoria|Australia|", "1|Main Street|Melbourne|victoria|Australia",
+            "1|Main Street|Melbourne| Victoria|Australia", "1|Main|Street|Melbourne|Victoria",
+            "Victoria|Victoria|Victoria|Victoria|Victoria", "1|Main Street|Melbourne|Victoria",
+            "56s_d%&fAB", "23@#$%^STU", "34!!abcdXY", "22@@@@@@ZZ", "99ab!@cdAA", "23abcd!@ST", "23abc!@dST",
+            "12@#$%^STU", "2:@#$%^STU", "23@#$%^ST1", "23@#$%^STa", "23@#$%^STU ", " 23@#$%^STU",
+            "23ééé!@éST", "23٣٣٣٣!!ST", "23😀ab!cST", "23\u0000\u0001abcdST", "2٢@#$%^STU",
+            "15-11-1990", " 15-11-1990 ", "\t15-11-1990\n", "15-11-1990x", "29-02-2024", "29-02-2023",
+            "31-04-2020", "00-01-2020", "01-13-2020", "01-01-0000", "01-01-0001", "31-12-9999",
+            "1990-11-15", "15/11/1990", "5-11-1990", "15-11-90", "１５-11-1990", "15-11-1990 ");
+
+    private static final String ALPHABET = "0123456789AZaz|-!@# Victoriaé٣\uD83D\t";
+
+    // the edges, plus random strings and mutations of valid values
+    private static List<String> corpus() {
+        List<String> corpus = new ArrayList<>(EDGES);
+        Random rnd = new Random(25);
+        for (int i = 0; i < 20_000; i++) {
+            switch (rnd.nextInt(4)) {
+                case 0 -> {
+                    char[] cs = new char[rnd.nextInt(14)];
+                    for (int k = 0; k < cs.length; k++) {
+                        cs[k] = ALPHABET.charAt(rnd.nextInt(ALPHABET.length()));
+                    }
+                    corpus.add(new String(cs));
+                }
+                case 1 -> corpus.add(mutate(SampleRegistry.personID(rnd.nextInt(100_000)), rnd));
+                case 2 -> corpus.add(mutate(SampleRegistry.person(i, 1).getAddress(), rnd));
+                default -> corpus.add(mutate(SampleRegistry.person(i, 1).getBirthdate(), rnd));
+            }
+        }
+        return corpus;
+    }
+
+    private static String mutate(String s, Random rnd) {
+        if (rnd.nextBoolean()) {
+            return s;
+        }
+        char[] cs = s.toCharArray();
+        cs[rnd.nextInt(cs.length)] = ALPHABET.charAt(rnd.nextInt(ALPHABET.length()));
+        return new String(cs);
+    }
+
+    private static int expected(String id, String address, String birthdate) {
+        return (Person.isValidPersonID(id) ? 0 : BatchValidator.PERSON_ID)
+                | (Person.isValidAddress(address) ? 0 : BatchValidator.ADDRESS)
+                | (Person.isValidDate(birthdate) ? 0 : BatchValidator.BIRTHDATE);
+    }
+
+    @Test
+    @DisplayName("BatchValidator: every rule matches its Person helper on the shared corpus")
+    void testStandard_MatchesHelpers() {
+        List<String> corpus = corpus();
+        BatchValidator.Column column = BatchValidator.Column.of(corpus);
+        // the same values in all three columns, so each rule sees the whole corpus
+        int[] failures = BatchValidator.STANDARD.validate(column, column, column);
+        for (int i = 0; i < corpus.size(); i++) {
+            String v = corpus.get(i);
+            assertEquals(expected(v, v, v), failures[i], "value " + i + ": " + v);
+        }
+    }
+
+    @Test
+    @DisplayName("BatchValidator: records with mixed failures get one bit per broken rule")
+    void testStandard_BitmaskPerRecord() {
+        BatchValidator.Column ids = BatchValidator.Column.of(Arrays.asList("23@#$%^STU", "bad", "23@#$%^STU", null));
+        BatchValidator.Column addresses = BatchValidator.Column.of(Arrays.asList(
+                "1|Main Street|Melbourne|Victoria|Australia", "1|Main Street|Melbourne|Victoria|Australia",
+                "1|Main Street|Sydney|NSW|Australia", null));
+        BatchValidator.Column birthdates = BatchValidator.Column.of(Arrays.asList(
+                "15-11-1990", "31-02-1990", "15-11-1990", null));
+
+        int[] failures = BatchValidator.STANDARD.validate(ids, addresses, birthdates);
+
+        assertArrayEquals(new int[] {
+                0,
+                BatchValidator.PERSON_ID | BatchValidator.BIRTHDATE,
+                BatchValidator.ADDRESS,
+                BatchValidator.PERSON_ID | BatchValidator.ADDRESS | BatchValidator.BIRTHDATE
+        }, failures);
+        assertThrows(IllegalArgumentException.class,
+                () -> BatchValidator.STANDARD.validate(ids, addresses, BatchValidator.Column.of(List.of("15-11-1990"))));
+    }
+
+    @Test
+    @DisplayName("BatchValidator: custom rules compose with the standard ones")
+    void testCheck_ComposesRules() {
+        BatchValidator validator = new BatchValidator()
+                .check(0, BatchValidator::checkPersonIDs, 1)
+                .check(1, BatchValidator::checkDates, 2)
+                .check(1, (col, failures, bit) -> {
+                    for (int i = 0; i < col.size(); i++) {
+                        if (col.isNull(i)) {
+                            failures[i] |= bit;
+                        }
+                    }
+                }, 4);
+        int[] failures = validator.validate(
+                BatchValidator.Column.of(Arrays.asList("23@#$%^STU", "23@#$%^STU")),
+                BatchValidator.Column.of(Arrays.asList("15-11-1990", null)));
+        assertArrayEquals(new int[] {0, 2 | 4}, failures);
+    }
+}
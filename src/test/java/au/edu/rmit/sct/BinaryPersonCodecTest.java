@@ -0,0 +1,152 @@
+package au.edu.rmit.sct;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import static au.edu.rmit.sct.PersonFixtures.person;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+public class BinaryPersonCodecTest {
+
+    @TempDir
+    Path dir;
+
+    private static Person roundTrip(Person p) {
+        ByteBuffer in = ByteBuffer.wrap(BinaryPersonCodec.encode(p));
+        Person decoded = BinaryPersonCodec.decode(in);
+        assertFalse(in.hasRemaining());
+        return decoded;
+    }
+
+    @Test
+    @DisplayName("Binary: sample persons round-trip to the same toLine()")
+    void testRoundTrip_SamplePersons() {
+        for (Person p : SampleRegistry.generate(2_000, 7)) {
+            assertEquals(p.toLine(), roundTrip(p).toLine());
+        }
+    }
+
+    @Test
+    @DisplayName("Binary: unusual IDs, text, birthdates and histories round-trip too")
+    void testRoundTrip_Fallbacks() {
+        List<Person> odd = new ArrayList<>();
+        odd.add(person("short"));
+        odd.add(person("56ŝ%^&*(ÄB"));  // ten chars, one outside Latin-1
+        odd.add(person("56é%^&*(AB"));  // ten Latin-1 chars
+        odd.add(new Person("56@#$%^&AB", "Zoë", "Ō'Brien 李", "", "not a date"));
+        odd.add(new Person("56@#$%^&AB", null, "Person", "1|A|B|Victoria|C", null));
+        Person history = person("56@#$%^&AB");
+        history.getDemeritHistory().record(-40_000, 3);
+        history.getDemeritHistory().record(-3, -7);
+        history.getDemeritHistory().record(19_000, 1_000_000);
+        history.setSuspended(true);
+        odd.add(history);
+
+        for (Person p : odd) {
+            Person back = roundTrip(p);
+            assertEquals(p.getPersonID(), back.getPersonID());
+            assertEquals(p.getFirstName(), back.getFirstName());
+            assertEquals(p.getBirthdate(), back.getBirthdate());
+            assertEquals(p.getDemeritHistory(), back.getDemeritHistory());
+            assertEquals(p.toLine(), back.toLine());
+        }
+    }
+
+    @Test
+    @DisplayName("Binary: records are much smaller than text lines")
+    void testEncode_Compact() {
+        Person p = person("56@#$%^&AB");
+        p.getDemeritHistory().record(DateCodec.parse("10-01-2023"), 3);
+        p.getDemeritHistory().record(DateCodec.parse("15-02-2023"), 4);
+        assertTrue(BinaryPersonCodec.encode(p).length < p.toLine().length() * 3 / 4);
+    }
+
+    @Test
+    @DisplayName("Binary: text -> binary -> text keeps every parsed line")
+    void testConverter_Lossless() throws IOException {
+        Path text = dir.resolve("persons.txt");
+        Path binary = dir.resolve("persons.bin");
+        Path back = dir.resolve("back.txt");
+        List<Person> persons = SampleRegistry.generate(500, 3);
+        assertTrue(Person.writeAllPersonsToFile(text.toFile(), persons));
+
+        assertEquals(500, RegistryFormatConverter.textToBinary(text, binary));
+        assertEquals(500, RegistryFormatConverter.binaryToText(binary, back));
+
+        assertEquals(Files.readAllLines(text), Files.readAllLines(back));
+        assertTrue(Files.size(binary) < Files.size(text));
+    }
+
+    @Test
+    @DisplayName("Binary: a torn last record is dropped and earlier records survive")
+    void testRead_IgnoresTornTail() throws IOException {
+        Path binary = dir.resolve("persons.bin");
+        BinaryPersonCodec.write(binary, List.of(person("23@#$%^STU"), person("34@#$%^GHI")));
+        byte[] third = BinaryPersonCodec.encode(person("45@#$%^JKL"));
+        Files.write(binary, Arrays.copyOf(third, third.length / 2), StandardOpenOption.APPEND);
+
+        List<Person> loaded = BinaryPersonCodec.read(binary);
+        assertEquals(2, loaded.size());
+        assertEquals("34@#$%^GHI", loaded.get(1).getPersonID());
+    }
+
+    @Test
+    @DisplayName("Binary: an add after a torn last record cuts it off instead of appending after it")
+    void testStore_AppendAfterTornTail() throws IOException {
+        Path binary = dir.resolve("persons.bin");
+        PersonRepository repo = new PersonRepository(new BinaryFileStore(binary));
+        assertTrue(repo.add(person("23@#$%^STU")));
+        Person second = person("34@#$%^GHI");
+        second.getDemeritHistory().record(DateCodec.parse("10-09-2023"), 3);
+        assertTrue(repo.add(second));
+        byte[] bytes = Files.readAllBytes(binary);
+        Files.write(binary, Arrays.copyOf(bytes, bytes.length - 3));
+
+        assertTrue(new PersonRepository(new BinaryFileStore(binary)).add(person("45@#$%^JKL")));
+
+        List<Person> reloaded = BinaryPersonCodec.read(binary);
+        assertEquals(2, reloaded.size());
+        assertEquals("23@#$%^STU", reloaded.get(0).getPersonID());
+        assertEquals("45@#$%^JKL", reloaded.get(1).getPersonID());
+        assertEquals(0, reloaded.get(1).getDemeritHistory().size());
+        assertEquals(Files.size(binary), BinaryPersonCodec.readContents(binary).completeLength());
+    }
+
+    @Test
+    @DisplayName("Binary: a text file is not mistaken for a binary registry")
+    void testRead_RejectsBadMagic() throws IOException {
+        Path file = dir.resolve("persons.bin");
+        Files.writeString(file, person("23@#$%^STU").toLine());
+        assertThrows(IOException.class, () -> BinaryPersonCodec.read(file));
+    }
+
+    @Test
+    @DisplayName("Binary: a repository on a binary store appends, rewrites and reloads")
+    void testStore_ThroughRepository() {
+        Path binary = dir.resolve("persons.bin");
+        PersonRepository repo = new PersonRepository(new BinaryFileStore(binary));
+        assertTrue(repo.add(person("23@#$%^STU")));
+        assertTrue(repo.add(person("34@#$%^GHI")));
+        assertTrue(repo.update("34@#$%^GHI", p -> {
+            p.getDemeritHistory().record(DateCodec.parse("15-02-2023"), 4);
+            p.setLastName("Changed");
+            return true;
+        }));
+
+        List<Person> reloaded = new BinaryFileStore(binary).load();
+        assertEquals(2, reloaded.size());
+        assertEquals("Changed", reloaded.get(1).getLastName());
+        assertEquals(4, reloaded.get(1).getDemeritHistory().total());
+        assertEquals(StorageMode.binaryFileFor(dir.resolve("persons.txt")), binary);
+    }
+}
@@ -0,0 +1,103 @@
+package au.edu.rmit.sct;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import static au.edu.rmit.sct.PersonFixtures.person;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class BulkImportTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("Import: valid rows are appended, every other row is reported with its reason")
+    void testRun_AcceptsAndReports() throws Exception {
+        Path registry = dir.resolve("persons.txt");
+        Files.write(registry, List.of(person("23@#$%^STU").toLine()));
+        PersonRepository repo = new PersonRepository(new TextFileStore(registry));
+
+        Path input = dir.resolve("region.txt");
+        Files.write(input, List.of(
+                person("34@#$%^GHI").toLine(),
+                "not a person",
+                person("12@#$%^GHI").toLine(),
+                person("45@#$%^GHI", "1|Main Street|Sydney|NSW|Australia", "01-01-1990").toLine(),
+                "",
+                person("56@#$%^GHI", "1|Main Street|Melbourne|Victoria|Australia", "31-02-1990").toLine(),
+                person("23@#$%^STU").toLine(),
+                person("34@#$%^GHI").toLine(),
+                person("67@#$%^GHI").toLine()));
+        Path report = dir.resolve("rejected.tsv");
+
+        BulkImport.Result result = BulkImport.run(repo, input, report);
+
+        assertEquals(8, result.rows());
+        assertEquals(2, result.accepted());
+        assertEquals(6, result.rejectedTotal());
+        assertEquals(List.of(person("23@#$%^STU").toLine(), person("34@#$%^GHI").toLine(),
+                person("67@#$%^GHI").toLine()), Files.readAllLines(registry));
+        assertTrue(repo.contains("67@#$%^GHI"));
+
+        List<String> lines = Files.readAllLines(report);
+        assertEquals("line\treason\tdetail\trow", lines.get(0));
+        List<String> reasons = new ArrayList<>();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] cols = line.split("\t");
+            reasons.add(cols[0] + " " + cols[1]);
+        }
+        assertEquals(List.of("2 MALFORMED", "3 INVALID_PERSON_ID", "4 INVALID_ADDRESS", "6 INVALID_BIRTHDATE",
+                "7 DUPLICATE_IN_REGISTRY", "8 DUPLICATE_IN_BATCH"), reasons);
+        assertTrue(lines.get(6).contains("first on line 1"));
+        repo.close();
+    }
+
+    @Test
+    @DisplayName("Import: duplicates are found across chunks of a large input")
+    void testRun_DeduplicatesAcrossChunks() throws Exception {
+        Path registry = dir.resolve("persons.txt");
+        assertTrue(SampleRegistry.writeText(registry, 1000, 1));
+        PersonRepository repo = new PersonRepository(new TextFileStore(registry));
+
+        // several chunks: 500 people already stored and 9000 new ones, every one of them twice
+        List<String> input = new ArrayList<>();
+        for (int i = 500; i < 10_000; i++) {
+            input.add(SampleRegistry.person(i, 2).toLine());
+        }
+        for (int i = 500; i < 10_000; i++) {
+            input.add(SampleRegistry.person(i, 3).toLine());
+        }
+        Files.write(dir.resolve("region.txt"), input);
+
+        BulkImport.Result result = BulkImport.run(repo, dir.resolve("region.txt"), dir.resolve("rejected.tsv"));
+
+        assertEquals(9000, result.accepted());
+        assertEquals(1000L, result.rejected().get(BulkImport.Reason.DUPLICATE_IN_REGISTRY));
+        assertEquals(9000L, result.rejected().get(BulkImport.Reason.DUPLICATE_IN_BATCH));
+        assertEquals(10_000, new TextFileStore(registry).load().size());
+        assertEquals(10_000, repo.size());
+        repo.close();
+    }
+
+    @Test
+    @DisplayName("Import: the ID set finds every ID it holds after growing")
+    void testIdSet_GrowsAndFinds() {
+        List<String> ids = new ArrayList<>();
+        IdSet set = new IdSet(0, ids::get);
+        for (int i = 0; i < 50_000; i++) {
+            ids.add(SampleRegistry.personID(i));
+            assertEquals(IdSet.ABSENT, set.putIfAbsent(ids.get(i), i));
+        }
+        for (int i = 0; i < 50_000; i += 7) {
+            assertEquals(i, set.putIfAbsent(SampleRegistry.personID(i), -5));
+        }
+        assertEquals(50_000, set.size());
+    }
+}
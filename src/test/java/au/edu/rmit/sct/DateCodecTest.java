@@ -0,0 +1,111 @@
+package au.edu.rmit.sct;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+public class DateCodecTest {
+
+    private static final DateTimeFormatter DDMMYYYY = DateTimeFormatter.ofPattern("dd-MM-uuuu");
+
+    // what Person.isValidDate accepted before the codec, for well-formed DD-MM-YYYY input
+    private static boolean legacyValid(String s) {
+        SimpleDateFormat format = new SimpleDateFormat("dd-MM-yyyy", Locale.ENGLISH);
+        format.setLenient(false);
+        try {
+            format.parse(s);
+            return true;
+        } catch (ParseException e) {
+            return false;
+        }
+    }
+
+    @Test
+    @DisplayName("DateCodec: parse and format round-trip every day from 1900 to 2100")
+    void testRoundTrip_MatchesLocalDate() {
+        LocalDate end = LocalDate.of(2100, 12, 31);
+        for (LocalDate d = LocalDate.of(1900, 1, 1); !d.isAfter(end); d = d.plusDays(1)) {
+            String text = d.format(DDMMYYYY);
+            int day = DateCodec.parse(text);
+            assertEquals(d.toEpochDay(), day, text);
+            assertEquals(text, DateCodec.format(day));
+            assertEquals(d.getYear() * 10_000 + d.getMonthValue() * 100 + d.getDayOfMonth(), DateCodec.toYmd(day));
+        }
+    }
+
+    @Test
+    @DisplayName("DateCodec: rejects the same invalid dates as the non-lenient SimpleDateFormat")
+    void testParse_RejectsInvalidDates() {
+        String[] invalid = {"32-01-2020", "29-02-2023", "31-04-2021", "00-01-2020", "15-13-2020", "15-00-2020",
+                "1990-11-15", "15/11/1990", "aa-bb-cccc", "", "29-02-1900"};
+        for (String s : invalid) {
+            assertFalse(legacyValid(s), s);
+            assertEquals(DateCodec.INVALID, DateCodec.parse(s), s);
+        }
+        assertEquals(DateCodec.INVALID, DateCodec.parse((CharSequence) null));
+        assertNotEquals(DateCodec.INVALID, DateCodec.parse("29-02-2000"));
+        assertNotEquals(DateCodec.INVALID, DateCodec.parse("29-02-2024"));
+    }
+
+    @Test
+    @DisplayName("DateCodec: agrees with the non-lenient SimpleDateFormat on random DD-MM-YYYY strings")
+    void testParse_AgreesWithSimpleDateFormat() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        for (int i = 0; i < 20_000; i++) {
+            String s = String.format("%02d-%02d-%04d", rnd.nextInt(0, 35), rnd.nextInt(0, 15), rnd.nextInt(1600, 2400));
+            assertEquals(legacyValid(s), DateCodec.isValid(s), s);
+        }
+    }
+
+    @Test
+    @DisplayName("DateCodec: byte parsing matches char parsing")
+    void testParse_Bytes() {
+        byte[] b = "xx15-11-1990yy".getBytes();
+        assertEquals(DateCodec.parse("15-11-1990"), DateCodec.parse(b, 2, 12));
+        assertEquals(DateCodec.INVALID, DateCodec.parse(b, 0, 10));
+    }
+
+    @Test
+    @DisplayName("DateCodec: age and two-year window match the old Calendar arithmetic")
+    void testAgeAndMinusYears_MatchCalendar() throws ParseException {
+        SimpleDateFormat format = new SimpleDateFormat("dd-MM-yyyy", Locale.ENGLISH);
+        format.setLenient(false);
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        for (int i = 0; i < 5_000; i++) {
+            LocalDate birth = LocalDate.ofEpochDay(rnd.nextLong(-20_000, 20_000));
+            LocalDate ref = LocalDate.ofEpochDay(rnd.nextLong(-20_000, 25_000));
+
+            Calendar cBirth = Calendar.getInstance();
+            cBirth.setTime(format.parse(birth.format(DDMMYYYY)));
+            Calendar cRef = Calendar.getInstance();
+            cRef.setTime(format.parse(ref.format(DDMMYYYY)));
+            int age = cRef.get(Calendar.YEAR) - cBirth.get(Calendar.YEAR);
+            if ((cRef.get(Calendar.MONTH) < cBirth.get(Calendar.MONTH)) ||
+                    (cRef.get(Calendar.MONTH) == cBirth.get(Calendar.MONTH) &&
+                            cRef.get(Calendar.DAY_OF_MONTH) < cBirth.get(Calendar.DAY_OF_MONTH))) {
+                age--;
+            }
+            assertEquals(age, DateCodec.ageInYears((int) birth.toEpochDay(), (int) ref.toEpochDay()));
+
+            cRef.add(Calendar.YEAR, -2);
+            Date back = cRef.getTime();
+            assertEquals(format.format(back), DateCodec.format(DateCodec.minusYears((int) ref.toEpochDay(), 2)));
+        }
+    }
+
+    @Test
+    @DisplayName("DateCodec: leap day minus two years falls back to 28 February")
+    void testMinusYears_LeapDay() {
+        assertEquals("28-02-2022", DateCodec.format(DateCodec.minusYears(DateCodec.parse("29-02-2024"), 2)));
+    }
+}
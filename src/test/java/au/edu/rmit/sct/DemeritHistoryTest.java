@@ -0,0 +1,80 @@
+package au.edu.rmit.sct;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+
+public class DemeritHistoryTest {
+
+    @Test
+    @DisplayName("DemeritHistory: offences are kept in date order and same-day offences are replaced")
+    void testRecord_SortedAndReplacing() {
+        DemeritHistory h = new DemeritHistory();
+        h.record(300, 2);
+        h.record(100, 3);
+        h.record(200, 1);
+        h.record(100, 5);
+
+        assertEquals(3, h.size());
+        assertEquals(100, h.dayAt(0));
+        assertEquals(5, h.pointsAt(0));
+        assertEquals(200, h.dayAt(1));
+        assertEquals(300, h.dayAt(2));
+        assertEquals(8, h.total());
+        assertEquals(0, h.pointsOn(150));
+    }
+
+    @Test
+    @DisplayName("DemeritHistory: window totals match a brute-force sum")
+    void testWindowTotal_MatchesBruteForce() {
+        Random rnd = new Random(42);
+        DemeritHistory h = new DemeritHistory();
+        TreeMap<Integer, Integer> reference = new TreeMap<>();
+        for (int i = 0; i < 500; i++) {
+            int day = rnd.nextInt(3_000);
+            int pts = 1 + rnd.nextInt(6);
+            h.record(day, pts);
+            reference.put(day, pts);
+        }
+        for (int i = 0; i < 2_000; i++) {
+            int from = rnd.nextInt(3_200) - 100;
+            int to = from + rnd.nextInt(800);
+            int expected = reference.subMap(from, true, to, true).values().stream().mapToInt(Integer::intValue).sum();
+            assertEquals(expected, h.windowTotal(from, to), from + ".." + to);
+        }
+        assertEquals(0, h.windowTotal(10, 5));
+    }
+
+    @Test
+    @DisplayName("DemeritHistory: the Date view is read-only and follows the history")
+    void testAsDateMap_ReadOnlyLiveView() {
+        DemeritHistory h = new DemeritHistory();
+        Map<Date, Integer> view = h.asDateMap();
+        h.record(DateCodec.parse("20-11-2023"), 3);
+
+        assertEquals(1, view.size());
+        assertEquals(3, view.get(DateCodec.toDate(DateCodec.parse("20-11-2023"))));
+        assertThrows(UnsupportedOperationException.class, () -> view.put(new Date(), 1));
+    }
+
+    @Test
+    @DisplayName("DemeritHistory: copies are independent")
+    void testCopy_Independent() {
+        DemeritHistory h = new DemeritHistory();
+        h.record(10, 1);
+        DemeritHistory c = h.copy();
+        c.record(20, 2);
+
+        assertEquals(1, h.size());
+        assertEquals(2, c.size());
+        assertNotEquals(h, c);
+        h.record(20, 2);
+        assertEquals(h, c);
+    }
+}
@@ -0,0 +1,212 @@
+package au.edu.rmit.sct;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import static au.edu.rmit.sct.PersonFixtures.person;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class DurabilityModeTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("Durability: ATOMIC replaces the file by renaming a complete temp file over it")
+    void testAtomic_RenamesOverFile() throws Exception {
+        Path file = dir.resolve("persons.txt");
+        PersonRepository repo = new PersonRepository(new TextFileStore(file, DurabilityMode.ATOMIC));
+        assertTrue(repo.add(person("23@#$%^STU")));
+        Object before = FileStamp.of(file).fileKey();
+
+        assertTrue(repo.update("23@#$%^STU", p -> {
+            p.setLastName("Changed");
+            return true;
+        }));
+
+        assertNotEquals(before, FileStamp.of(file).fileKey(), "a new file, not a truncated one");
+        assertFalse(Files.exists(dir.resolve("persons.txt.tmp")));
+        assertTrue(Files.readString(file).contains("|Changed|"));
+        repo.close();
+    }
+
+    @Test
+    @DisplayName("Durability: GROUP_COMMIT keeps appends made while a rewrite waits for its sync")
+    void testGroupCommit_AppendAfterPendingRewrite() throws Exception {
+        Path file = dir.resolve("persons.txt");
+        TextFileStore store = new TextFileStore(file, DurabilityMode.GROUP_COMMIT);
+        assertEquals(List.of(), store.loadRecords());
+        PersonRecord first = PersonRecord.encode(person("23@#$%^STU"));
+        PersonRecord second = PersonRecord.encode(person("45#$%@*JKL"));
+
+        assertTrue(store.commit(List.of(new RegistryChange.SuspensionChanged("23@#$%^STU", false)), List.of(first)));
+        assertTrue(store.commit(List.of(RegistryChange.added(second.person())), List.of(first, second)));
+        assertFalse(Files.exists(file), "nothing reaches the file before the sync");
+
+        assertTrue(store.awaitDurable());
+        assertEquals(List.of(first.line(), second.line()), Files.readAllLines(file));
+        assertFalse(store.isStale());
+    }
+
+    @Test
+    @DisplayName("Durability: GROUP_COMMIT stores every concurrent add")
+    void testGroupCommit_ConcurrentAdds() throws Exception {
+        Path file = dir.resolve("persons.txt");
+        PersonRepository repo = new PersonRepository(new TextFileStore(file, DurabilityMode.GROUP_COMMIT));
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> adds = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int n = i;
+            adds.add(pool.submit(() -> repo.add(SampleRegistry.person(n, 1))));
+        }
+        for (Future<Boolean> add : adds) {
+            assertTrue(add.get());
+        }
+        pool.shutdown();
+
+        assertEquals(200, new TextFileStore(file, DurabilityMode.NONE).load().size());
+        repo.close();
+    }
+
+    @Test
+    @DisplayName("Durability: commits waiting together share one sync")
+    void testGroupCommit_SharesSync() throws Exception {
+        AtomicInteger syncs = new AtomicInteger();
+        CountDownLatch firstSync = new CountDownLatch(1);
+        CountDownLatch joined = new CountDownLatch(1);
+        GroupCommit group = new GroupCommit(Duration.ZERO, 128, () -> {
+            syncs.incrementAndGet();
+            firstSync.countDown();
+            try {
+                joined.await();  // hold the first sync until the others have joined the next batch
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        GroupCommit.Batch lone = group.join();
+        Future<Boolean> leader = pool.submit(() -> group.await(lone));
+        firstSync.await();
+        List<Future<Boolean>> followers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            GroupCommit.Batch batch = group.join();
+            followers.add(pool.submit(() -> group.await(batch)));
+        }
+        joined.countDown();
+
+        assertTrue(leader.get());
+        for (Future<Boolean> follower : followers) {
+            assertTrue(follower.get());
+        }
+        assertEquals(2, syncs.get());
+        pool.shutdown();
+    }
+
+    @Test
+    @DisplayName("Durability: with a window, the members of a batch wait for its one leader")
+    void testGroupCommit_WindowOneSyncPerBatch() throws Exception {
+        AtomicInteger syncs = new AtomicInteger();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger overlapping = new AtomicInteger();
+        GroupCommit group = new GroupCommit(Duration.ofMillis(50), 128, () -> {
+            syncs.incrementAndGet();
+            if (running.incrementAndGet() > 1) {
+                overlapping.incrementAndGet();
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return true;
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<GroupCommit.Batch> batches = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            batches.add(group.join());
+        }
+        List<Future<Boolean>> waits = new ArrayList<>();
+        for (GroupCommit.Batch batch : batches) {
+            waits.add(pool.submit(() -> group.await(batch)));
+        }
+        for (Future<Boolean> wait : waits) {
+            assertTrue(wait.get());
+        }
+        assertEquals(1, syncs.get());
+        assertEquals(0, overlapping.get());
+        pool.shutdown();
+    }
+
+    @Test
+    @DisplayName("Durability: a lost write fails the commits still waiting for their sync")
+    void testGroupCommit_FailPending() {
+        GroupCommit group = new GroupCommit(Duration.ZERO, 128, () -> true);
+        GroupCommit.Batch batch = group.join();
+        group.failPending();
+        assertFalse(group.await(batch));
+        assertTrue(group.await(group.join()));
+    }
+
+    @Test
+    @DisplayName("Durability: GROUP_COMMIT never renames a rewrite over another repository's write")
+    void testGroupCommit_TwoRepositoriesShareLock() throws Exception {
+        Path file = dir.resolve("persons.txt");
+        Path lock = dir.resolve("persons.txt.lock");
+        PersonRepository a = new PersonRepository(
+                new TextFileStore(file, DurabilityMode.GROUP_COMMIT, Duration.ofMillis(300)), lock);
+        PersonRepository b = new PersonRepository(new TextFileStore(file, DurabilityMode.GROUP_COMMIT), lock);
+        assertTrue(a.add(person("23@#$%^STU")));
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        // a rewrite whose leader waits out the window before renaming it in
+        Future<Boolean> rewrite = pool.submit(() -> a.update("23@#$%^STU", p -> {
+            p.setLastName("Changed");
+            return true;
+        }));
+        Thread.sleep(100);
+        assertTrue(b.add(person("45#$%@*JKL")));
+        assertTrue(rewrite.get());
+        pool.shutdown();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size(), lines.toString());
+        assertTrue(lines.get(0).contains("|Changed|"));
+        assertTrue(lines.get(1).startsWith("45#$%@*JKL|"));
+        a.close();
+        b.close();
+    }
+
+    @Test
+    @DisplayName("Durability: GROUP_COMMIT drops a pending rewrite once the file changed under it")
+    void testGroupCommit_StaleRewriteFails() throws Exception {
+        Path file = dir.resolve("persons.txt");
+        TextFileStore store = new TextFileStore(file, DurabilityMode.GROUP_COMMIT);
+        assertEquals(List.of(), store.loadRecords());
+        PersonRecord first = PersonRecord.encode(person("23@#$%^STU"));
+        assertTrue(store.commit(List.of(new RegistryChange.SuspensionChanged("23@#$%^STU", false)), List.of(first)));
+
+        String other = person("45#$%@*JKL").toLine();
+        Files.write(file, List.of(other));  // another writer, between the commit and its sync
+
+        assertFalse(store.awaitDurable());
+        assertEquals(List.of(other), Files.readAllLines(file));
+        assertFalse(Files.exists(dir.resolve("persons.txt.tmp")));
+        assertTrue(store.isStale());
+    }
+}
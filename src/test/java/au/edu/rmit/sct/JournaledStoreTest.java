@@ -0,0 +1,230 @@
+package au.edu.rmit.sct;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import static au.edu.rmit.sct.PersonFixtures.lines;
+import static au.edu.rmit.sct.PersonFixtures.person;
+import static au.edu.rmit.sct.PersonFixtures.reload;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+
+public class JournaledStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private Path snapshot;
+    private JournaledStore store;
+    private PersonRepository repo;
+
+    @BeforeEach
+    void setUp() {
+        snapshot = dir.resolve("persons.txt");
+        store = new JournaledStore(snapshot, Long.MAX_VALUE, 0);
+        repo = new PersonRepository(store);
+    }
+
+    @AfterEach
+    void tearDown() {
+        repo.close();
+    }
+
+    private List<String> reloadedLines() {
+        return reload(new JournaledStore(snapshot, Long.MAX_VALUE, 0));
+    }
+
+    private void recordDemerit(String id, String date, int points) {
+        assertTrue(repo.update(id, p -> {
+            p.getDemeritHistory().record(DateCodec.parse(date), points);
+            p.setSuspended(points > 5);
+            return true;
+        }));
+    }
+
+    @Test
+    @DisplayName("Journal: mutations are appended and the snapshot is left alone")
+    void testCommit_AppendsToJournalOnly() throws Exception {
+        assertTrue(repo.add(person("23@#$%^STU")));
+        recordDemerit("23@#$%^STU", "10-01-2023", 6);
+
+        assertFalse(Files.exists(snapshot));
+        List<String> journal = Files.readAllLines(store.getJournal());
+        assertEquals(3, journal.size(), "added, demerit and suspension records");
+        assertTrue(journal.get(0).startsWith("A "));
+        assertTrue(journal.get(1).startsWith("D "));
+        assertTrue(journal.get(2).startsWith("S "));
+    }
+
+    @Test
+    @DisplayName("Journal: replaying the journal rebuilds the in-memory state")
+    void testLoad_ReplaysJournal() throws Exception {
+        assertTrue(repo.add(person("23@#$%^STU")));
+        assertTrue(repo.add(person("34@#$%^GHI")));
+        recordDemerit("34@#$%^GHI", "15-02-2023", 4);
+        assertTrue(repo.update("23@#$%^STU", p -> {
+            p.setPersonID("25@#$%^STU");
+            p.setLastName("Renamed");
+            return true;
+        }));
+
+        List<String> expected = lines(repo.findAll());
+        assertEquals(expected, reloadedLines());
+    }
+
+    @Test
+    @DisplayName("Journal: compaction folds the journal into the snapshot")
+    void testCompact_FoldsIntoSnapshot() throws Exception {
+        assertTrue(repo.add(person("23@#$%^STU")));
+        recordDemerit("23@#$%^STU", "10-01-2023", 6);
+        List<String> expected = lines(repo.findAll());
+
+        store.compact();
+
+        assertFalse(Files.exists(store.getJournal()));
+        assertEquals(expected, Files.readAllLines(snapshot));
+        assertEquals(expected, reloadedLines());
+        assertEquals(1, repo.size());
+    }
+
+    @Test
+    @DisplayName("Journal: compaction keeps the snapshot lines of a repeated personID")
+    void testCompact_KeepsDuplicateIdLines() throws Exception {
+        Person repeat = person("23@#$%^STU");
+        repeat.setLastName("Repeat");
+        Files.write(snapshot, List.of(person("23@#$%^STU").toLine(), repeat.toLine()));
+        recordDemerit("23@#$%^STU", "10-01-2023", 3);
+        assertEquals(1, repo.size());
+
+        store.compact();
+
+        Person first = person("23@#$%^STU");
+        first.getDemeritHistory().record(DateCodec.parse("10-01-2023"), 3);
+        assertEquals(List.of(first.toLine(), repeat.toLine()), Files.readAllLines(snapshot));
+    }
+
+    @Test
+    @DisplayName("Journal: a compaction that dies after its swap does not replay the folded journal again")
+    void testCompact_CrashAfterSwap() throws Exception {
+        assertTrue(repo.add(person("23@#$%^STU")));
+        assertTrue(repo.update("23@#$%^STU", p -> {
+            p.setPersonID("25@#$%^STU");
+            return true;
+        }));
+        Person reused = person("23@#$%^STU");
+        reused.setLastName("Newcomer");
+        assertTrue(repo.add(reused));
+        recordDemerit("23@#$%^STU", "10-01-2023", 3);
+        List<String> expected = lines(repo.findAll());
+
+        JournaledStore dying = new JournaledStore(snapshot, Long.MAX_VALUE, 0) {
+            @Override
+            void swapped() throws IOException {
+                throw new IOException("crash between the swap and the journal delete");
+            }
+        };
+        assertThrows(IOException.class, dying::compact);
+        assertTrue(Files.exists(dir.resolve("persons.txt.journal.compacting")));
+
+        assertEquals(expected, reloadedLines());
+        new JournaledStore(snapshot, Long.MAX_VALUE, 0).compact();
+        assertFalse(Files.exists(dir.resolve("persons.txt.journal.compacting")));
+        assertEquals(expected, Files.readAllLines(snapshot));
+        assertEquals(expected, reloadedLines());
+    }
+
+    @Test
+    @DisplayName("Journal: compaction waits for the registry's process lock before rotating")
+    void testCompact_WaitsForProcessLock() throws Exception {
+        assertTrue(repo.add(person("23@#$%^STU")));
+        List<String> expected = lines(repo.findAll());
+        CrossProcessLock lock = CrossProcessLock.forFile(dir.resolve("persons.txt.lock"));
+        Object otherProcess = new Object();
+        lock.acquire(otherProcess);
+        Thread compactor;
+        try {
+            compactor = Thread.ofPlatform().start(() -> {
+                try {
+                    store.compact();
+                } catch (IOException ioe) {
+                    throw new UncheckedIOException(ioe);
+                }
+            });
+            compactor.join(200);
+            assertTrue(compactor.isAlive());
+            assertTrue(Files.exists(store.getJournal()), "not rotated while someone else holds the lock");
+        } finally {
+            lock.release();
+        }
+        compactor.join();
+
+        assertFalse(Files.exists(store.getJournal()));
+        assertEquals(expected, Files.readAllLines(snapshot));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertTrue(files.noneMatch(f -> f.getFileName().toString().endsWith(".tmp")));
+        }
+    }
+
+    @Test
+    @DisplayName("Journal: a torn record at the end of the journal is ignored")
+    void testLoad_IgnoresTornTail() throws Exception {
+        assertTrue(repo.add(person("23@#$%^STU")));
+        Files.writeString(store.getJournal(), "D 10:23@#$%^STU10:10-01-20", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+
+        List<String> lines = reloadedLines();
+        assertEquals(1, lines.size());
+        assertEquals(person("23@#$%^STU").toLine(), lines.get(0));
+    }
+
+    @Test
+    @DisplayName("Journal: records appended after a torn tail survive a reload")
+    void testCommit_AppendAfterTornTail() throws Exception {
+        assertTrue(repo.add(person("23@#$%^STU")));
+        // torn inside a multi-byte character, as a crash mid-append can leave it
+        byte[] torn = "D 10:23@#$%^STU10:10-01-20é".getBytes(StandardCharsets.UTF_8);
+        Files.write(store.getJournal(), Arrays.copyOf(torn, torn.length - 1), StandardOpenOption.APPEND);
+
+        assertTrue(repo.add(person("34@#$%^GHI")));
+        recordDemerit("34@#$%^GHI", "15-02-2023", 4);
+        List<String> expected = lines(repo.findAll());
+
+        assertEquals(2, expected.size());
+        assertEquals(expected, reloadedLines());
+    }
+
+    @Test
+    @DisplayName("Journal: records survive an encode/decode round trip")
+    void testEncodeDecode_RoundTrip() {
+        RegistryChange change = new RegistryChange.DetailsChanged("23@#$%^STU", "25@#$%^STU",
+                "A:B", "C\nD", "1|X|Y|Victoria|Australia", "01-01-2000");
+        StringBuilder sb = new StringBuilder();
+        JournaledStore.encode(change, sb);
+        sb.append('\n');
+        int[] pos = {0};
+        assertEquals(change, JournaledStore.decode(sb.toString(), pos));
+        assertEquals(sb.length(), pos[0]);
+    }
+
+    @Test
+    @DisplayName("Journal: an external change is detected")
+    void testIsStale_AfterExternalWrite() throws IOException {
+        assertTrue(repo.add(person("23@#$%^STU")));
+        assertFalse(store.isStale());
+        Files.write(snapshot, List.of(person("45#$%@*JKL").toLine()));
+        assertTrue(store.isStale());
+        assertTrue(repo.contains("45#$%@*JKL"));
+    }
+}
@@ -0,0 +1,107 @@
+package au.edu.rmit.sct;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import static au.edu.rmit.sct.PersonFixtures.lines;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class ParallelPersonLoaderTest {
+
+    @TempDir
+    Path dir;
+
+    // what the sequential BufferedReader loader reads, whatever the file size
+    private static List<String> sequentialLines(Path file) throws IOException {
+        List<String> out = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Person p = Person.parseFromLine(line.trim());
+                if (p != null) {
+                    out.add(p.toLine());
+                }
+            }
+        }
+        return out;
+    }
+
+    private Path writeRegistry(int count) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            String id = String.format("%d%d@#%03d%c%c", 2 + i % 8, 2 + (i / 8) % 8, i % 1000,
+                    (char) ('A' + i % 26), (char) ('A' + (i / 26) % 26));
+            sb.append(id).append("|Zoë|Nguyễn|").append(i).append("|Main Street|Geelong|Victoria|Australia|")
+                    .append("01-01-1990|").append(i % 3 == 0).append('|');
+            if (i % 2 == 0) {
+                sb.append("10-01-2023:3;15-02-2023:2;");
+            }
+            // mix every terminator readLine() understands, plus blank and malformed lines
+            switch (i % 5) {
+                case 0 -> sb.append('\n');
+                case 1 -> sb.append("\r\n");
+                case 2 -> sb.append('\r');
+                case 3 -> sb.append("\n   \n");
+                default -> sb.append("\nnot a person line\n");
+            }
+        }
+        sb.append("99@#$%^ZZZ|Last|Line|1|X|Y|Victoria|Australia|01-01-2000|false|");  // no trailing newline
+        Path file = dir.resolve("persons.txt");
+        Files.writeString(file, sb.toString(), StandardCharsets.UTF_8);
+        return file;
+    }
+
+    @Test
+    @DisplayName("ParallelLoader: output matches the sequential loader for any chunk count")
+    void testLoad_MatchesSequentialLoader() throws IOException {
+        Path file = writeRegistry(2_000);
+        List<String> expected = lines(Person.readAllPersonsFromFile(file.toFile()));
+        assertEquals(2_001, expected.size());
+
+        for (int chunks : new int[]{1, 2, 7, 64, 5_000}) {
+            ParallelPersonLoader.LoadResult<Person> result =
+                    ParallelPersonLoader.load(file, Person::parseFromLine, chunks);
+            assertEquals(expected, lines(result.records()), "chunk count " + chunks);
+            assertEquals(expected.size(), result.stats().records());
+            assertEquals(Files.size(file), result.stats().bytes());
+        }
+    }
+
+    @Test
+    @DisplayName("ParallelLoader: an empty file loads as an empty registry")
+    void testLoad_EmptyFile() throws IOException {
+        Path file = dir.resolve("empty.txt");
+        Files.createFile(file);
+        ParallelPersonLoader.LoadResult<Person> result = ParallelPersonLoader.load(file);
+        assertTrue(result.records().isEmpty());
+        assertEquals(0, result.stats().bytes());
+    }
+
+    @Test
+    @DisplayName("ParallelLoader: a file over the threshold is mapped, and reads like the sequential loader")
+    void testLoad_MappedAboveThreshold() throws IOException {
+        // multi-byte names on every line, so chunk bounds land inside characters as well as lines
+        Path file = writeRegistry(60_000);
+        assertTrue(Files.size(file) >= ParallelPersonLoader.PARALLEL_THRESHOLD_BYTES);
+        List<String> expected = sequentialLines(file);
+        assertEquals(60_001, expected.size());
+
+        assertEquals(expected, lines(Person.readAllPersonsFromFile(file.toFile())));
+        assertEquals(expected, lines(ParallelPersonLoader.load(file).records()));
+        assertEquals(expected, Person.readAllRecordsFromFile(file.toFile()).stream().map(PersonRecord::line).toList());
+        for (int chunks : new int[]{3, 97, 10_000}) {
+            ParallelPersonLoader.LoadResult<PersonRecord> result = ParallelPersonLoader.loadRecords(file, chunks);
+            assertEquals(expected, result.records().stream().map(r -> r.person().toLine()).toList(),
+                    "chunk count " + chunks);
+        }
+    }
+}
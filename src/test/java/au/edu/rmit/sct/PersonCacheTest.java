@@ -0,0 +1,137 @@
+package au.edu.rmit.sct;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+
+public class PersonCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private static PersonRecord record(int i) {
+        return PersonRecord.encode(SampleRegistry.person(i, 1));
+    }
+
+    @Test
+    @DisplayName("Cache: evicts the least recently used entry and counts hits, misses and evictions")
+    void testCache_Lru() {
+        PersonCache cache = PersonCache.ofEntries(3);
+        PersonRecord[] r = {record(0), record(1), record(2), record(3)};
+        for (int i = 0; i < 3; i++) {
+            cache.put(r[i], r[i].person());
+        }
+        assertNotNull(cache.get(r[0]));  // 0 is now the most recent
+        cache.put(r[3], r[3].person());  // evicts 1
+
+        assertNull(cache.get(r[1]));
+        assertNotNull(cache.get(r[0]));
+        assertNotNull(cache.get(r[2]));
+        assertNotNull(cache.get(r[3]));
+
+        PersonCache.Stats s = cache.stats();
+        assertEquals(4, s.hits());
+        assertEquals(1, s.misses());
+        assertEquals(1, s.evictions());
+        assertEquals(3, s.entries());
+    }
+
+    @Test
+    @DisplayName("Cache: an entry only answers for the record version it was cached for")
+    void testCache_VersionedEntries() {
+        PersonCache cache = PersonCache.ofEntries(10);
+        PersonRecord old = record(0);
+        cache.put(old, old.person());
+        PersonRecord changed = PersonRecord.encode(old.person().copy());
+        assertNull(cache.get(changed));
+        cache.put(changed, changed.person());
+        assertNull(cache.get(old));
+        assertSame(changed.person(), cache.get(changed));
+        assertEquals(1, cache.stats().entries());
+    }
+
+    @Test
+    @DisplayName("Cache: a byte budget bounds the estimated size of the entries")
+    void testCache_ByteBudget() {
+        PersonCache cache = PersonCache.ofBytes(4 * 1024 * 1024);
+        for (int i = 0; i < 50_000; i++) {
+            PersonRecord r = record(i);
+            cache.put(r, r.person());
+        }
+        PersonCache.Stats s = cache.stats();
+        assertTrue(s.bytes() <= 4 * 1024 * 1024, s.toString());
+        assertTrue(s.entries() > 1_000 && s.evictions() > 0, s.toString());
+
+        assertEquals(0, PersonCache.parse("off").stats().entries());
+        assertThrows(IllegalArgumentException.class, () -> PersonCache.parse("lots"));
+        PersonCache parsed = PersonCache.parse("bytes:64k");
+        PersonRecord r = record(1);
+        parsed.put(r, r.person());
+        assertSame(r.person(), parsed.get(r));
+    }
+
+    @Test
+    @DisplayName("Cache: a repository serves reads and writes through a small cache without ever going stale")
+    void testRepository_WriteThroughAndRenames() {
+        Path file = dir.resolve("persons.txt");
+        assertTrue(SampleRegistry.writeText(file, 1_000, 6));
+        PersonRepository repo = new PersonRepository(new TextFileStore(file), null, PersonCache.ofEntries(16));
+
+        Map<String, String> expected = new HashMap<>();
+        for (Person p : SampleRegistry.generate(1_000, 6)) {
+            expected.put(p.getPersonID(), p.toLine());
+        }
+        List<String> ids = List.copyOf(expected.keySet());
+        Random rnd = new Random(2);
+        for (int i = 0; i < 3_000; i++) {
+            String id = ids.get(rnd.nextInt(ids.size()));
+            if (!expected.containsKey(id)) {
+                continue;
+            }
+            switch (rnd.nextInt(3)) {
+                case 0 -> assertEquals(expected.get(id), repo.find(id).toLine());
+                case 1 -> {
+                    String name = "N" + i;
+                    assertTrue(repo.update(id, p -> {
+                        p.setLastName(name);
+                        return true;
+                    }));
+                    Person p = Person.parseFromLine(expected.get(id));
+                    p.setLastName(name);
+                    expected.put(id, p.toLine());
+                    assertEquals(expected.get(id), repo.find(id).toLine(), "write-through");
+                }
+                default -> {
+                    String newID = SampleRegistry.personID(10_000 + i);
+                    assertTrue(repo.update(id, p -> {
+                        p.setPersonID(newID);
+                        return true;
+                    }));
+                    Person p = Person.parseFromLine(expected.remove(id));
+                    p.setPersonID(newID);
+                    expected.put(newID, p.toLine());
+                    assertNull(repo.find(id));
+                    assertEquals(expected.get(newID), repo.find(newID).toLine());
+                }
+            }
+        }
+
+        PersonCache.Stats s = repo.cacheStats();
+        assertTrue(s.entries() <= 16, s.toString());
+        assertTrue(s.hits() > 0 && s.evictions() > 0, s.toString());
+        assertTrue(repo.records().stream().noneMatch(PersonRecord::isDecoded), "records stay compact");
+
+        PersonRepository reloaded = new PersonRepository(new TextFileStore(file));
+        for (Map.Entry<String, String> e : expected.entrySet()) {
+            assertEquals(e.getValue(), reloaded.find(e.getKey()).toLine());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package au.edu.rmit.sct;
+
+import java.util.Collection;
+import java.util.List;
+
+
+// shared test data: a valid Person for any personID, and the persons file lines of Persons
+final class PersonFixtures {
+
+    static final String ADDRESS = "1|Main Street|Melbourne|Victoria|Australia";
+    static final String BIRTHDATE = "01-01-1990";
+
+    private PersonFixtures() {
+    }
+
+    static Person person(String id) {
+        return person(id, "Person");
+    }
+
+    static Person person(String id, String lastName) {
+        return new Person(id, "Test", lastName, ADDRESS, BIRTHDATE);
+    }
+
+    static Person person(String id, String address, String birthdate) {
+        return new Person(id, "Test", "Person", address, birthdate);
+    }
+
+    static List<String> lines(Collection<Person> persons) {
+        return persons.stream().map(Person::toLine).toList();
+    }
+
+    // the lines a fresh load of the store reads back
+    static List<String> reload(PersonStore store) {
+        return lines(store.load());
+    }
+}
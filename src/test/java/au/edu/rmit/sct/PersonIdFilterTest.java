@@ -0,0 +1,198 @@
+package au.edu.rmit.sct;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class PersonIdFilterTest {
+
+    @TempDir
+    Path dir;
+
+    // counts full loads, to tell whether an add had to read the registry
+    private static final class CountingStore implements PersonStore {
+        final PersonStore inner;
+        final AtomicInteger loads = new AtomicInteger();
+
+        CountingStore(PersonStore inner) {
+            this.inner = inner;
+        }
+
+        @Override
+        public List<Person> load() {
+            loads.incrementAndGet();
+            return inner.load();
+        }
+
+        @Override
+        public List<PersonRecord> loadRecords() {
+            loads.incrementAndGet();
+            return inner.loadRecords();
+        }
+
+        @Override
+        public boolean isStale() {
+            return inner.isStale();
+        }
+
+        @Override
+        public boolean commit(List<RegistryChange> changes, Collection<PersonRecord> snapshot) {
+            return inner.commit(changes, snapshot);
+        }
+
+        @Override
+        public boolean appendsAdditions() {
+            return inner.appendsAdditions();
+        }
+
+        @Override
+        public long fingerprint() {
+            return inner.fingerprint();
+        }
+    }
+
+    private CountingStore store(Path registry) {
+        return new CountingStore(new TextFileStore(registry));
+    }
+
+    private PersonRepository repository(PersonStore store, Path registry) {
+        return new PersonRepository(store, dir.resolve("persons.txt.lock"), PersonCache.configured(),
+                PersonIdFilter.fileFor(registry));
+    }
+
+    @Test
+    @DisplayName("ID filter: never misses an added ID, rarely claims an unseen one, and survives reopening")
+    void testFilter_NoFalseNegatives() throws IOException {
+        Path file = dir.resolve("ids.bloom");
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            ids.add(SampleRegistry.personID(i));
+        }
+        try (PersonIdFilter built = PersonIdFilter.build(file, ids.subList(0, 10_000), 0.01)) {
+            built.add(ids.subList(10_000, 20_000));
+        }
+
+        try (PersonIdFilter f = PersonIdFilter.open(file)) {
+            assertNotNull(f);
+            assertEquals(20_000, f.count());
+            for (String id : ids) {
+                assertTrue(f.mightContain(id), id);
+            }
+            int falsePositives = 0;
+            for (int i = 20_000; i < 120_000; i++) {
+                if (f.mightContain(SampleRegistry.personID(i))) {
+                    falsePositives++;
+                }
+            }
+            assertTrue(falsePositives < 2_000, falsePositives + " false positives in 100000");
+        }
+    }
+
+    @Test
+    @DisplayName("ID filter: another handle sees added IDs, and an invalidated file is no filter")
+    void testFilter_SharedAndInvalidated() throws IOException {
+        Path file = dir.resolve("ids.bloom");
+        try (PersonIdFilter writer = PersonIdFilter.build(file, List.of("23@#$%^STU"), 0.01);
+             PersonIdFilter reader = PersonIdFilter.open(file)) {
+            assertFalse(reader.mightContain("34@#$%^GHI"));
+            writer.add(List.of("34@#$%^GHI"));
+            assertTrue(reader.refresh());
+            assertTrue(reader.mightContain("34@#$%^GHI"));
+
+            writer.invalidate();
+            assertFalse(reader.refresh());
+        }
+        assertNull(PersonIdFilter.open(file));
+    }
+
+    @Test
+    @DisplayName("ID filter: a new personID is added without loading the registry, a taken one is still refused")
+    void testRepository_AddsUnseenWithoutLoading() throws IOException {
+        Path registry = dir.resolve("persons.txt");
+        assertTrue(SampleRegistry.writeText(registry, 1000, 1));
+        PersonRepository first = repository(store(registry), registry);
+        assertTrue(first.add(SampleRegistry.person(1000, 1)));  // loads, and builds the filter
+        first.close();
+        assertTrue(Files.exists(PersonIdFilter.fileFor(registry)));
+
+        CountingStore store = store(registry);
+        PersonRepository repo = repository(store, registry);
+        assertTrue(repo.add(SampleRegistry.person(1001, 1)));
+        assertTrue(repo.add(SampleRegistry.person(1002, 1)));
+        assertEquals(0, store.loads.get());
+
+        assertFalse(repo.add(SampleRegistry.person(500, 2)));
+        assertFalse(repo.add(SampleRegistry.person(1001, 2)));
+        assertEquals(1, store.loads.get());
+        assertEquals(1003, repo.size());
+        assertEquals(1003, new TextFileStore(registry).load().size());
+        repo.close();
+    }
+
+    @Test
+    @DisplayName("ID filter: after a write by a repository without the filter, an add loads and refuses its IDs")
+    void testRepository_DisabledWriterThenEnabledWriter() throws IOException {
+        Path registry = dir.resolve("persons.txt");
+        assertTrue(SampleRegistry.writeText(registry, 100, 1));
+        PersonRepository enabled = repository(store(registry), registry);
+        assertTrue(enabled.add(SampleRegistry.person(100, 1)));
+        enabled.close();
+
+        // -Droadregistry.bloom=false: stores the ID without touching the filter
+        PersonRepository disabled = new PersonRepository(new TextFileStore(registry),
+                dir.resolve("persons.txt.lock"), PersonCache.configured(), null);
+        assertTrue(disabled.add(SampleRegistry.person(200, 1)));
+        disabled.close();
+
+        CountingStore store = store(registry);
+        PersonRepository repo = repository(store, registry);
+        assertFalse(repo.add(SampleRegistry.person(200, 2)));
+        assertEquals(1, store.loads.get());
+        assertEquals(102, new TextFileStore(registry).load().size());
+        repo.close();
+
+        // the load brought the filter up to date, so the next process can skip it again
+        CountingStore next = store(registry);
+        PersonRepository after = repository(next, registry);
+        assertTrue(after.add(SampleRegistry.person(300, 1)));
+        assertEquals(0, next.loads.get());
+        after.close();
+    }
+
+    @Test
+    @DisplayName("ID filter: a changed personID is added, and IDs stored behind its back are added on the next load")
+    void testRepository_KeepsFilterComplete() throws IOException {
+        Path registry = dir.resolve("persons.txt");
+        assertTrue(SampleRegistry.writeText(registry, 100, 1));
+        PersonRepository repo = repository(store(registry), registry);
+        String renamed = SampleRegistry.personID(5000);
+        assertTrue(repo.update(SampleRegistry.personID(7), p -> {
+            p.setPersonID(renamed);
+            return true;
+        }));
+        repo.close();
+
+        // stored without the filter
+        assertTrue(Person.appendLinesToFile(registry.toFile(), List.of(SampleRegistry.person(6000, 1).toLine())));
+
+        CountingStore store = store(registry);
+        PersonRepository other = repository(store, registry);
+        assertFalse(other.add(SampleRegistry.person(5000, 2)));
+        assertFalse(other.add(SampleRegistry.person(6000, 2)));
+        try (PersonIdFilter f = PersonIdFilter.open(PersonIdFilter.fileFor(registry))) {
+            assertTrue(f.mightContain(renamed));
+            assertTrue(f.mightContain(SampleRegistry.personID(6000)));
+        }
+        other.close();
+    }
+}
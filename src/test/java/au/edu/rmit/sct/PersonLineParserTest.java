@@ -0,0 +1,155 @@
+package au.edu.rmit.sct;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.TreeMap;
+
+
+public class PersonLineParserTest {
+
+    // what parseFromLine did before the cursor parser: the toLine() it produced, or null
+    private static String legacyParse(String line) {
+        try {
+            int idx1 = line.indexOf('|');
+            if (idx1 < 0) return null;
+            int idx2 = line.indexOf('|', idx1 + 1);
+            if (idx2 < 0) return null;
+            int idx3 = line.indexOf('|', idx2 + 1);
+            if (idx3 < 0) return null;
+            int idxLast1 = line.lastIndexOf('|');
+            if (idxLast1 < 0 || idxLast1 <= idx3) return null;
+            int idxLast2 = line.lastIndexOf('|', idxLast1 - 1);
+            if (idxLast2 < 0 || idxLast2 <= idx3) return null;
+            int idxLast3 = line.lastIndexOf('|', idxLast2 - 1);
+            if (idxLast3 < 0 || idxLast3 <= idx3) return null;
+
+            StringBuilder demerits = new StringBuilder();
+            TreeMap<Integer, Integer> history = new TreeMap<>();
+            String demeritData = line.substring(idxLast1 + 1);
+            if (!demeritData.isBlank()) {
+                for (String entry : demeritData.split(";", -1)) {
+                    if (entry.isBlank()) continue;
+                    String[] pair = entry.split(":", 2);
+                    if (pair.length != 2) continue;
+                    int day = DateCodec.parse(pair[0]);
+                    if (day == DateCodec.INVALID) return null;
+                    history.put(day, Integer.parseInt(pair[1]));
+                }
+            }
+            history.forEach((day, pts) -> DateCodec.appendTo(demerits, day).append(':').append(pts).append(';'));
+            return String.join("|", line.substring(0, idx1), line.substring(idx1 + 1, idx2),
+                    line.substring(idx2 + 1, idx3), line.substring(idx3 + 1, idxLast3),
+                    line.substring(idxLast3 + 1, idxLast2),
+                    Boolean.toString(Boolean.parseBoolean(line.substring(idxLast2 + 1, idxLast1))),
+                    demerits);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private static final String[] PIECES = {"|", "|", "|", ";", ":", "a", "Zoë", " ", "TRUE", "true", "false",
+            "10-01-2023", "29-02-2023", "3", "-4", "+5", "2147483648", "٣", "", "56@#$%^&AB", "Victoria"};
+
+    private static String randomLine(Random rnd) {
+        StringBuilder sb = new StringBuilder();
+        int n = rnd.nextInt(30);
+        for (int i = 0; i < n; i++) {
+            sb.append(PIECES[rnd.nextInt(PIECES.length)]);
+        }
+        return sb.toString();
+    }
+
+    private static String parsedLine(PersonLineParser.Result r) {
+        return r.ok() ? r.person().toLine() : null;
+    }
+
+    @Test
+    @DisplayName("Parser: accepts and rejects exactly what the old split-based parser did")
+    void testParse_MatchesLegacy() {
+        Random rnd = new Random(11);
+        for (int i = 0; i < 50_000; i++) {
+            String line = randomLine(rnd);
+            String expected = legacyParse(line);
+            assertEquals(expected, parsedLine(PersonLineParser.parse(line)), line);
+
+            // the same line inside a bigger byte region, as the loaders see it
+            byte[] utf8 = ("xx" + line + "yy").getBytes(StandardCharsets.UTF_8);
+            int to = utf8.length - 2;
+            assertEquals(expected, parsedLine(PersonLineParser.parse(utf8, 2, to)), line);
+            ByteBuffer direct = ByteBuffer.allocateDirect(utf8.length).put(utf8);
+            assertEquals(expected, parsedLine(PersonLineParser.parse(direct, 2, to)), line);
+        }
+    }
+
+    @Test
+    @DisplayName("Parser: sample lines round-trip through every input type")
+    void testParse_SampleLines() {
+        for (Person p : SampleRegistry.generate(1_000, 5)) {
+            String line = p.toLine();
+            assertEquals(line, Person.parseFromLine(line).toLine());
+            byte[] utf8 = line.getBytes(StandardCharsets.UTF_8);
+            assertEquals(line, PersonLineParser.parse(ByteBuffer.wrap(utf8), 0, utf8.length).person().toLine());
+        }
+    }
+
+    @Test
+    @DisplayName("Parser: failures say what was wrong and where")
+    void testParse_StructuredFailures() {
+        String badDate = "56@#$%^&AB|A|B|1|Main|Melbourne|Victoria|Australia|01-01-1990|false|32-01-2023:3;";
+        PersonLineParser.Result r = PersonLineParser.parse(badDate);
+        assertEquals(PersonLineParser.Status.BAD_OFFENCE_DATE, r.status());
+        assertNull(r.person());
+        assertEquals(badDate.indexOf("32-01"), r.errorOffset());
+        assertEquals("BAD_OFFENCE_DATE at offset " + badDate.indexOf("32-01"), r.message());
+
+        assertEquals(PersonLineParser.Status.BAD_POINTS,
+                PersonLineParser.parse("56@#$%^&AB|A|B|1|Main|Melbourne|Victoria|Australia|01-01-1990|false|10-01-2023:x;").status());
+        assertEquals(PersonLineParser.Status.MISSING_FIELDS, PersonLineParser.parse("56@#$%^&AB|A|B").status());
+        assertEquals(PersonLineParser.Status.NULL_LINE, PersonLineParser.parse((CharSequence) null).status());
+        assertNull(Person.parseFromLine(null));
+    }
+
+    @Test
+    @DisplayName("Parser: visitor mode reports ranges and offences without building a Person")
+    void testVisit_ReportsFields() {
+        String line = "56@#$%^&AB|Ann|Lee|1|Main|Melbourne|Victoria|Australia|01-01-1990|TRUE|10-01-2023:3;15-02-2023:4;";
+        int[] idRange = new int[2];
+        int[] offences = new int[2];
+        boolean[] suspended = new boolean[1];
+        PersonLineParser parser = new PersonLineParser();
+        PersonLineParser.Status status = parser.visit(line, new PersonLineParser.Visitor() {
+            @Override
+            public void field(PersonLineParser.Field field, int from, int to) {
+                if (field == PersonLineParser.Field.PERSON_ID) {
+                    idRange[0] = from;
+                    idRange[1] = to;
+                }
+            }
+
+            @Override
+            public void suspended(boolean s) {
+                suspended[0] = s;
+            }
+
+            @Override
+            public void offence(int epochDay, int points) {
+                offences[0]++;
+                offences[1] += points;
+            }
+        });
+
+        assertEquals(PersonLineParser.Status.OK, status);
+        assertEquals(-1, parser.errorOffset());
+        assertEquals("56@#$%^&AB", line.substring(idRange[0], idRange[1]));
+        assertTrue(suspended[0]);
+        assertArrayEquals(new int[]{2, 7}, offences);
+
+        assertEquals(PersonLineParser.Status.MISSING_FIELDS, parser.visit("no fields", new PersonLineParser.Visitor() { }));
+        assertEquals(9, parser.errorOffset());
+    }
+}
@@ -0,0 +1,117 @@
+package au.edu.rmit.sct;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import static au.edu.rmit.sct.PersonFixtures.lines;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+public class PersonQueryTest {
+
+    private static final String[] LAST = {"Smith", "Nguyen", "Chen", "Nobody"};
+    private static final String[] CITY = {"Melbourne", "Geelong", "Ballarat", "Nowhere"};
+    private static final int REFERENCE_DAY = DateCodec.parse("18-10-2026");
+
+    @TempDir
+    Path dir;
+
+    private PersonRepository repo;
+
+    @BeforeEach
+    void setUp() {
+        Path file = dir.resolve("persons.txt");
+        assertTrue(SampleRegistry.writeText(file, 2_000, 17));
+        repo = new PersonRepository(new TextFileStore(file));
+    }
+
+    private static PersonQuery randomQuery(Random rnd) {
+        PersonQuery q = PersonQuery.all();
+        if (rnd.nextBoolean()) q = q.lastName(LAST[rnd.nextInt(LAST.length)]);
+        if (rnd.nextBoolean()) q = q.city(CITY[rnd.nextInt(CITY.length)]);
+        if (rnd.nextInt(3) == 0) q = q.suspended(rnd.nextBoolean());
+        if (rnd.nextInt(3) == 0) {
+            int min = rnd.nextInt(80);
+            q = q.ageBetween(min, min + rnd.nextInt(15), REFERENCE_DAY);
+        }
+        return q;
+    }
+
+    private void assertQueriesMatchScan(Random rnd) {
+        List<Person> all = repo.findAll();
+        for (int i = 0; i < 200; i++) {
+            PersonQuery q = randomQuery(rnd);
+            List<String> expected = new ArrayList<>();
+            for (Person p : all) {
+                if (q.matches(p)) {
+                    expected.add(p.toLine());
+                }
+            }
+            assertEquals(expected, lines(repo.query(q)), q.toString());
+            assertEquals(expected.size(), repo.count(q));
+        }
+    }
+
+    @Test
+    @DisplayName("Query: indexed answers equal a full scan, before and after mutations")
+    void testQuery_ConsistentAcrossMutations() {
+        Random rnd = new Random(3);
+        assertQueriesMatchScan(rnd);
+
+        List<Person> all = repo.findAll();
+        for (int i = 0; i < 300; i++) {
+            Person p = all.get(rnd.nextInt(all.size()));
+            String id = p.getPersonID();
+            switch (rnd.nextInt(4)) {
+                case 0 -> assertTrue(SampleRegistry.person(10_000 + i, 5).addPerson(repo));
+                case 1 -> {
+                    Person change = repo.find(id);
+                    change.setLastName(LAST[rnd.nextInt(LAST.length)]);
+                    change.setAddress("9|High Street|" + CITY[rnd.nextInt(3)] + "|Victoria|Australia");
+                    change.updatePersonalDetails(repo, id);
+                }
+                case 2 -> {
+                    Person change = repo.find(id);
+                    change.setBirthdate(DateCodec.format(DateCodec.parse(change.getBirthdate()) + rnd.nextInt(3_000)));
+                    change.updatePersonalDetails(repo, id);
+                }
+                default -> p.addDemeritPoints(repo, DateCodec.format(DateCodec.parse(p.getBirthdate()) + 30 * 365
+                        + rnd.nextInt(500)), 6);
+            }
+        }
+        assertQueriesMatchScan(rnd);
+    }
+
+    @Test
+    @DisplayName("Query: age bands count whole years like addDemeritPoints does")
+    void testAgeBetween_MatchesAgeInYears() {
+        Random rnd = new Random(8);
+        for (int i = 0; i < 20_000; i++) {
+            int born = rnd.nextInt(40_000) - 20_000;
+            int ref = born + rnd.nextInt(40_000);
+            int min = rnd.nextInt(60);
+            int max = min + rnd.nextInt(20);
+            int age = DateCodec.ageInYears(born, ref);
+            PersonQuery q = PersonQuery.all().ageBetween(min, max, ref);
+            assertEquals(age >= min && age <= max, born >= q.bornFrom() && born <= q.bornTo(),
+                    DateCodec.format(born) + " on " + DateCodec.format(ref) + " in " + min + ".." + max);
+        }
+    }
+
+    @Test
+    @DisplayName("Query: predicates combine, and unknown values match nothing")
+    void testQuery_Combined() {
+        assertTrue(new Person("56@#$%^&AB", "Ann", "Zed", "1|Main|Geelong|Victoria|Australia", "01-01-2000")
+                .addPerson(repo));
+        assertEquals(1, repo.count(PersonQuery.all().lastName("Zed").city("Geelong").ageBetween(20, 30, REFERENCE_DAY)));
+        assertEquals(0, repo.count(PersonQuery.all().lastName("Zed").city("Ballarat")));
+        assertEquals(0, repo.count(PersonQuery.all().city("Atlantis")));
+        assertEquals(repo.size(), repo.count(PersonQuery.all()));
+    }
+}
@@ -0,0 +1,142 @@
+package au.edu.rmit.sct;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+
+public class PersonRecordTest {
+
+    @TempDir
+    Path dir;
+
+    private static final String LINE =
+            "56@#$%^&AB|Ann|Lee|1|Main Street|Melbourne|Victoria|Australia|01-01-1990|TRUE|15-02-2023:4;10-01-2023:3;";
+
+    @Test
+    @DisplayName("PersonRecord: projections match the decoded Person without decoding it")
+    void testProjections_WithoutDecoding() {
+        PersonRecord r = PersonRecord.parse(LINE);
+        Person p = Person.parseFromLine(LINE);
+
+        assertEquals("56@#$%^&AB", r.personID());
+        assertEquals(p.getFirstName(), r.firstName());
+        assertEquals(p.getLastName(), r.lastName());
+        assertEquals(p.getAddress(), r.address());
+        assertEquals(p.getBirthdate(), r.birthdate());
+        assertTrue(r.isSuspended());
+        assertEquals(p.getDemeritHistory(), r.demerits());
+        assertFalse(r.isDecoded());
+
+        assertEquals(p.toLine(), r.person().toLine());
+        assertTrue(r.isDecoded());
+        assertSame(r.person(), r.person());
+        assertEquals(LINE, r.line(), "a record keeps its original line");
+    }
+
+    @Test
+    @DisplayName("PersonRecord: rejects exactly the lines parseFromLine rejects")
+    void testParse_SameAcceptance() {
+        String[] lines = {LINE, "", "56@#$%^&AB|A|B", "56@#$%^&AB|A|B|1|M|C|V|A|01-01-1990|false|32-01-2023:3;",
+                "56@#$%^&AB|A|B|1|M|C|V|A|01-01-1990|false|10-01-2023:x;", "a|b|c|d|e|f|g", "a|b|c|d|e|f|junk;"};
+        for (String line : lines) {
+            assertEquals(Person.parseFromLine(line) == null, PersonRecord.parse(line) == null, line);
+        }
+        assertNull(PersonRecord.parse(null));
+    }
+
+    @Test
+    @DisplayName("PersonRecord: a repository decodes only the records it touches and rewrites the rest verbatim")
+    void testRepository_DecodesOnlyTouchedRecords() throws Exception {
+        Path file = dir.resolve("persons.txt");
+        String other = "23@#$%^&ST|Bob|Ray|2|High Street|Geelong|Victoria|Australia|02-02-1980|false|";
+        Files.write(file, List.of(LINE, other));
+        PersonRepository repo = new PersonRepository(new TextFileStore(file));
+
+        assertTrue(repo.contains("23@#$%^&ST"));
+        assertEquals("Bob", repo.records().get(1).firstName());
+        assertTrue(repo.records().stream().noneMatch(PersonRecord::isDecoded));
+
+        assertTrue(repo.update("23@#$%^&ST", p -> {
+            p.setLastName("Changed");
+            return true;
+        }));
+        assertFalse(repo.records().get(0).isDecoded());
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(LINE, lines.get(0), "untouched record written back as it was");
+        assertEquals(other.replace("Ray", "Changed"), lines.get(1));
+    }
+
+    @Test
+    @DisplayName("PersonRecord: a mapped record reads its line from the buffer, multi-byte characters included")
+    void testMapped_ReadsFromBuffer() {
+        String line = LINE.replace("Ann", "Zoë");
+        byte[] utf8 = ("  " + line + "\n").getBytes(StandardCharsets.UTF_8);
+        int to = utf8.length - 1;
+        PersonRecord r = PersonRecord.mapped(ByteBuffer.wrap(utf8).asReadOnlyBuffer(), 2, to);
+        Person p = Person.parseFromLine(line);
+
+        assertEquals("56@#$%^&AB", r.personID());
+        assertEquals("Zoë", r.firstName());
+        assertEquals(p.getAddress(), r.address());
+        assertEquals(p.getDemeritHistory(), r.demerits());
+        assertTrue(r.isSuspended());
+        assertEquals(line, r.line());
+        assertFalse(r.isDecoded());
+        assertEquals(p.toLine(), r.person().toLine());
+        assertNull(PersonRecord.mapped(ByteBuffer.wrap(utf8), 2, 20), "a cut line is rejected");
+    }
+
+    @Test
+    @DisplayName("PersonRecord: encode keeps just the line, unless the line would not read back as the Person")
+    void testEncode_FallsBackWhenLineDiffers() {
+        Person p = Person.parseFromLine(LINE);
+        PersonRecord encoded = PersonRecord.encode(p);
+        assertFalse(encoded.isDecoded());
+        assertEquals(p.toLine(), encoded.line());
+
+        Person piped = p.copy();
+        piped.setFirstName("A|nn");
+        assertTrue(PersonRecord.encode(piped).isDecoded(), "a '|' in a name moves the fields");
+        Person missing = p.copy();
+        missing.setLastName(null);
+        assertTrue(PersonRecord.encode(missing).isDecoded(), "null reads back as \"null\"");
+    }
+
+    @Test
+    @DisplayName("PersonRecord: a big registry is loaded mapped, and rewritten without losing untouched lines")
+    void testRepository_MappedLoadRewrite() throws Exception {
+        Path file = dir.resolve("persons.txt");
+        int count = 0;
+        while (!Files.exists(file) || Files.size(file) < ParallelPersonLoader.PARALLEL_THRESHOLD_BYTES) {
+            count += 20_000;
+            assertTrue(SampleRegistry.writeText(file, count, 7));
+        }
+        List<String> before = Files.readAllLines(file);
+        PersonRepository repo = new PersonRepository(new TextFileStore(file, DurabilityMode.NONE));
+        assertEquals(count, repo.size());
+        assertEquals(ParallelPersonLoader.MAPPED_RECORDS, repo.records().get(0).mappedLine() != null);
+
+        String id = repo.records().get(1).personID();
+        assertTrue(repo.update(id, changed -> {
+            changed.setLastName("Changed");
+            return true;
+        }));
+
+        List<String> after = Files.readAllLines(file);
+        assertEquals(before.size(), after.size());
+        assertEquals(before.get(0), after.get(0));
+        assertTrue(after.get(1).contains("|Changed|"));
+        assertEquals(before.get(count - 1), after.get(count - 1));
+        assertEquals(before.get(count - 1), repo.records().get(count - 1).line(), "still read from the old mapping");
+        repo.close();
+    }
+}
@@ -0,0 +1,114 @@
+package au.edu.rmit.sct;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import static au.edu.rmit.sct.PersonFixtures.person;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+
+public class PersonRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    private Path file;
+    private PersonRepository repo;
+
+    @BeforeEach
+    void setUp() {
+        file = dir.resolve("persons.txt");
+        repo = new PersonRepository(file);
+    }
+
+    @Test
+    @DisplayName("Repository: added persons are indexed and appended to the file")
+    void testAdd_IndexesAndAppends() throws IOException {
+        assertTrue(repo.add(person("23@#$%^STU", "One")));
+        assertTrue(repo.add(person("34@#$%^GHI", "Two")));
+        assertFalse(repo.add(person("23@#$%^STU", "Duplicate")), "duplicate IDs must be rejected");
+
+        assertEquals("Two", repo.find("34@#$%^GHI").getLastName());
+        assertNull(repo.find("99@#$%^ZZZ"));
+        assertEquals(2, Files.readAllLines(file).size());
+    }
+
+    @Test
+    @DisplayName("Repository: returned persons are detached copies")
+    void testFind_ReturnsCopy() {
+        assertTrue(repo.add(person("23@#$%^STU", "One")));
+        repo.find("23@#$%^STU").setLastName("Changed");
+        assertEquals("One", repo.find("23@#$%^STU").getLastName());
+    }
+
+    @Test
+    @DisplayName("Repository: an ID change re-indexes the record and keeps its file position")
+    void testUpdate_RenameReindexes() throws IOException {
+        assertTrue(repo.add(person("23@#$%^STU", "One")));
+        assertTrue(repo.add(person("34@#$%^GHI", "Two")));
+
+        assertTrue(repo.update("23@#$%^STU", p -> {
+            p.setPersonID("25@#$%^STU");
+            return true;
+        }));
+
+        assertFalse(repo.contains("23@#$%^STU"));
+        assertTrue(repo.contains("25@#$%^STU"));
+        List<String> lines = Files.readAllLines(file);
+        assertTrue(lines.get(0).startsWith("25@#$%^STU|"));
+        assertTrue(lines.get(1).startsWith("34@#$%^GHI|"));
+    }
+
+    @Test
+    @DisplayName("Repository: a rejected change does not rewrite the file")
+    void testUpdate_RejectedChangeLeavesFile() throws IOException {
+        assertTrue(repo.add(person("23@#$%^STU", "One")));
+        List<String> before = Files.readAllLines(file);
+
+        assertFalse(repo.update("23@#$%^STU", p -> false));
+        assertFalse(repo.update("99@#$%^ZZZ", p -> true));
+        assertEquals(before, Files.readAllLines(file));
+    }
+
+    @Test
+    @DisplayName("Repository: external edits to the file are picked up")
+    void testRefresh_ReloadsAfterExternalChange() throws IOException {
+        assertTrue(repo.add(person("23@#$%^STU", "One")));
+
+        Files.write(file, List.of(person("45#$%@*JKL", "External").toLine()));
+        assertFalse(repo.contains("23@#$%^STU"));
+        assertEquals("External", repo.find("45#$%@*JKL").getLastName());
+
+        Files.delete(file);
+        assertEquals(0, repo.size());
+    }
+
+    @Test
+    @DisplayName("Repository: a rewrite keeps the lines of a repeated personID in place")
+    void testRewrite_KeepsDuplicateIdLines() throws IOException {
+        List<String> original = List.of(
+                person("23@#$%^STU", "One").toLine(),
+                person("34@#$%^GHI", "Two").toLine(),
+                person("23@#$%^STU", "Repeat").toLine(),
+                person("45#$%@*JKL", "Three").toLine());
+        Files.write(file, original);
+
+        assertEquals(3, repo.size());
+        assertEquals("One", repo.find("23@#$%^STU").getLastName());
+        assertTrue(repo.update("34@#$%^GHI", p -> {
+            p.setLastName("Changed");
+            return true;
+        }));
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(List.of(original.get(0), person("34@#$%^GHI", "Changed").toLine(),
+                original.get(2), original.get(3)), lines);
+        assertEquals(3, new PersonRepository(file).size());
+    }
+}
@@ -8,6 +8,7 @@ import static org.junit.jupiter.api.Assertions.*;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.List;
 
 
 public class PersonTest {
@@ -270,4 +271,76 @@ public class PersonTest {
         assertNotNull(fromFile);
         assertTrue(fromFile.isSuspended(), "Person over 21 should be suspended when total points > 12");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("AddDemeritPoints Test 6: Offense date padded with spaces")
+    void testAddDemeritPoints_PaddedDate_ShouldReturnSuccess() throws IOException {
+        String originalID = "46#$%@*YZA";
+        person = new Person(originalID, "Isabella", "Rodriguez",
+                "10|St Kilda Road|Melbourne|Victoria|Australia",
+                "15-03-1995");
+        assertTrue(person.addPerson());
+
+        assertEquals("Success", person.addDemeritPoints(" 20-11-2023 ", 3));
+        assertEquals("Success", person.addDemeritPointsAsync(" 21-11-2023", 1).join());
+        assertEquals(List.of("Success"), Person.addDemeritPoints(List.of(
+                new DemeritRecord(originalID, "22-11-2023 ", 2))));
+
+        Person stored = Person.parseFromLine(Files.readAllLines(Paths.get(PERSON_FILE)).get(0).trim());
+        assertNotNull(stored);
+        DemeritHistory history = stored.getDemeritHistory();
+        assertEquals(3, history.size());
+        assertEquals(DateCodec.parse("20-11-2023"), history.dayAt(0));
+        assertEquals(DateCodec.parse("22-11-2023"), history.dayAt(2));
+    }
+
+    // 4) BATCH DEMERIT POINTS TESTS
+
+
+    @Test
+    @DisplayName("BatchDemeritPoints Test 1: Results per record match single-call semantics")
+    void testBatchDemeritPoints_MixedRecords_ShouldReportPerRecord() {
+        String originalID = "46#$%@*YZA";
+        person = new Person(originalID, "Isabella", "Rodriguez",
+                "10|St Kilda Road|Melbourne|Victoria|Australia",
+                "15-03-1995");
+        assertTrue(person.addPerson());
+
+        List<String> results = Person.addDemeritPoints(List.of(
+                new DemeritRecord(originalID, "20-11-2023", 3),
+                new DemeritRecord(originalID, "2023-11-15", 2),
+                new DemeritRecord(originalID, "15-10-2023", 8),
+                new DemeritRecord("99@#$%^ZZZ", "15-10-2023", 2),
+                new DemeritRecord(originalID, "01-12-2023", 1)));
+
+        assertEquals(List.of("Success", "Failed", "Failed", "Failed", "Success"), results);
+    }
+
+    @Test
+    @DisplayName("BatchDemeritPoints Test 2: Suspension rules applied in date order across a batch")
+    void testBatchDemeritPoints_MinorSuspension_ShouldSuspend() throws IOException {
+        String minorID = "79!@#$%HIJ";
+        String adultID = "24%^&*@KLM";
+        assertTrue(new Person(minorID, "Liam", "Johnson",
+                "12|Argyle Street|Melbourne|Victoria|Australia", "15-06-2005").addPerson());
+        assertTrue(new Person(adultID, "Mia", "Thompson",
+                "8|Bourke Street|Melbourne|Victoria|Australia", "20-01-1980").addPerson());
+
+        // out of date order on purpose: the minor's 7 points fall inside one two-year window
+        List<String> results = Person.addDemeritPoints(List.of(
+                new DemeritRecord(minorID, "15-02-2023", 4),
+                new DemeritRecord(adultID, "05-03-2023", 6),
+                new DemeritRecord(minorID, "10-01-2023", 3)));
+        assertEquals(List.of("Success", "Success", "Success"), results);
+
+        List<String> lines = Files.readAllLines(Paths.get(PERSON_FILE));
+        assertEquals(2, lines.size());
+        Person minor = Person.parseFromLine(lines.get(0).trim());
+        Person adult = Person.parseFromLine(lines.get(1).trim());
+        assertNotNull(minor);
+        assertNotNull(adult);
+        assertTrue(minor.isSuspended(), "Person under 21 should be suspended when total points > 6");
+        assertFalse(adult.isSuspended(), "Person over 21 with 6 points should not be suspended");
+        assertEquals(2, minor.getDemeritPoints().size());
+    }
+}
@@ -0,0 +1,85 @@
+package au.edu.rmit.sct;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class PersonWriterTest {
+
+    @TempDir
+    Path dir;
+
+    // what writeAllPersonsToFile did before the streaming writer, with UTF-8 pinned
+    private static byte[] legacyBytes(Path file, List<Person> persons) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file.toFile(), StandardCharsets.UTF_8, false))) {
+            for (Person p : persons) {
+                writer.write(p.toLine());
+                writer.newLine();
+            }
+        }
+        return Files.readAllBytes(file);
+    }
+
+    private static List<Person> awkwardPersons() {
+        List<Person> persons = new ArrayList<>(SampleRegistry.generate(3_000, 9));
+        String[] names = {"Zoë", "李小龍", "emoji 😀 ok", "lone \uD83D high", "lone \uDE00 low", "tail \uD83D", ""};
+        for (int i = 0; i < 2_000; i++) {
+            Person p = new Person("56@#$%^&AB", names[i % names.length], names[(i * 3) % names.length],
+                    "1|Straße|Melbourne|Victoria|Australia", i % 11 == 0 ? null : "01-01-1990");
+            p.getDemeritHistory().record(-800_000 + i * 700, i % 2 == 0 ? Integer.MIN_VALUE + i : Integer.MAX_VALUE - i);
+            p.getDemeritHistory().record(i, i % 13 - 6);
+            persons.add(p);
+        }
+        return persons;
+    }
+
+    @Test
+    @DisplayName("Writer: output is byte-identical to toLine() through BufferedWriter in UTF-8")
+    void testWrite_MatchesLegacyBytes() throws IOException {
+        List<Person> persons = awkwardPersons();
+        byte[] expected = legacyBytes(dir.resolve("legacy.txt"), persons);
+
+        Path file = dir.resolve("persons.txt");
+        assertTrue(Person.writeAllPersonsToFile(file.toFile(), persons));
+        assertArrayEquals(expected, Files.readAllBytes(file));
+    }
+
+    @Test
+    @DisplayName("Writer: records are written as their raw line or their Person, buffers are reused")
+    void testWrite_RecordsAndReuse() throws IOException {
+        List<Person> persons = SampleRegistry.generate(200, 4);
+        List<PersonRecord> records = new ArrayList<>();
+        for (int i = 0; i < persons.size(); i++) {
+            String line = persons.get(i).toLine();
+            records.add(i % 2 == 0 ? PersonRecord.parse(line) : PersonRecord.of(persons.get(i)));
+        }
+        byte[] expected = legacyBytes(dir.resolve("legacy.txt"), persons);
+
+        // twice on one thread: the second writer gets the first one's buffer
+        for (int round = 0; round < 2; round++) {
+            Path file = dir.resolve("records" + round + ".txt");
+            assertTrue(Person.writeAllRecordsToFile(file.toFile(), records));
+            assertArrayEquals(expected, Files.readAllBytes(file));
+        }
+    }
+
+    @Test
+    @DisplayName("Writer: appended lines follow the existing contents")
+    void testAppend_Lines() throws IOException {
+        Path file = dir.resolve("nested/persons.txt");
+        assertTrue(Person.appendLinesToFile(file.toFile(), List.of("a|b")));
+        assertTrue(Person.appendLinesToFile(file.toFile(), List.of("c|d", "e|f")));
+        assertEquals(List.of("a|b", "c|d", "e|f"), Files.readAllLines(file));
+    }
+}
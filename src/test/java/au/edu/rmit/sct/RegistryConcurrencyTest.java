@@ -0,0 +1,151 @@
+package au.edu.rmit.sct;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import static au.edu.rmit.sct.PersonFixtures.person;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+
+public class RegistryConcurrencyTest {
+
+    private static final int PERSONS = 8;
+    private static final int THREADS = 16;
+    private static final int UPDATES_PER_THREAD = 150;
+
+    @TempDir
+    Path dir;
+
+    private static String id(int i) {
+        return (2 + i) + "@#$%^&" + "PQ";
+    }
+
+    // every thread records distinct offence days on its person; two threads share each person
+    private static void hammer(IntFunction<PersonRepository> repoForThread) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                PersonRepository repo = repoForThread.apply(thread);
+                start.await();
+                for (int k = 0; k < UPDATES_PER_THREAD; k++) {
+                    int day = thread * 10_000 + k;
+                    assertTrue(repo.update(id(thread % PERSONS), p -> {
+                        p.getDemeritHistory().record(day, 1);
+                        return true;
+                    }));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+    }
+
+    private static void addPersons(PersonRepository repo) {
+        for (int i = 0; i < PERSONS; i++) {
+            assertTrue(repo.add(person(id(i))));
+        }
+    }
+
+    private static void assertNoLostUpdates(PersonStore store) {
+        List<Person> all = store.load();
+        assertEquals(PERSONS, all.size());
+        int expectedPerPerson = THREADS / PERSONS * UPDATES_PER_THREAD;
+        for (Person p : all) {
+            assertEquals(expectedPerPerson, p.getDemeritHistory().size(), p.getPersonID());
+        }
+    }
+
+    @Test
+    @DisplayName("Concurrency: parallel updates on a text store lose nothing")
+    void testTextStore_NoLostUpdates() throws Exception {
+        Path file = dir.resolve("persons.txt");
+        PersonRepository repo = new PersonRepository(new TextFileStore(file), dir.resolve("persons.txt.lock"));
+        addPersons(repo);
+
+        hammer(t -> repo);
+
+        assertNoLostUpdates(new TextFileStore(file));
+    }
+
+    @Test
+    @DisplayName("Concurrency: parallel updates on a journaled store lose nothing")
+    void testJournaledStore_NoLostUpdates() throws Exception {
+        Path file = dir.resolve("persons.txt");
+        PersonRepository repo = new PersonRepository(new JournaledStore(file, 64 * 1024, 5), null);
+        addPersons(repo);
+
+        hammer(t -> repo);
+        repo.close();
+
+        assertNoLostUpdates(new JournaledStore(file, Long.MAX_VALUE, 0));
+    }
+
+    @Test
+    @DisplayName("Concurrency: two repositories sharing a file through the lock file lose nothing")
+    void testSharedFile_NoLostUpdates() throws Exception {
+        Path file = dir.resolve("persons.txt");
+        Path lock = dir.resolve("persons.txt.lock");
+        // two independent in-memory copies of one registry, as two JVMs would have
+        PersonRepository first = new PersonRepository(new TextFileStore(file), lock);
+        PersonRepository second = new PersonRepository(new TextFileStore(file), lock);
+        addPersons(first);
+
+        hammer(t -> t % 2 == 0 ? first : second);
+
+        assertNoLostUpdates(new TextFileStore(file));
+    }
+
+    @Test
+    @DisplayName("Concurrency: queries running alongside updates only see records that match them")
+    void testQueries_ConsistentWithUpdates() throws Exception {
+        PersonRepository repo = new PersonRepository(new JournaledStore(dir.resolve("persons.txt"), Long.MAX_VALUE, 0), null);
+        addPersons(repo);
+        PersonQuery odd = PersonQuery.all().lastName("Odd");
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int k = 0; k < UPDATES_PER_THREAD; k++) {
+                    if (thread % 4 == 0) {
+                        String name = k % 2 == 0 ? "Even" : "Odd";
+                        assertTrue(repo.update(id(thread % PERSONS), p -> {
+                            p.setLastName(name);
+                            return true;
+                        }));
+                    } else {
+                        for (PersonRecord r : repo.queryRecords(odd)) {
+                            assertEquals("Odd", r.lastName(), r.personID());
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+        repo.close();
+    }
+}
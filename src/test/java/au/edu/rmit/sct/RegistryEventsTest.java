@@ -0,0 +1,186 @@
+package au.edu.rmit.sct;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+
+public class RegistryEventsTest {
+
+    private static final String ADDRESS = "1|Main Street|Melbourne|Victoria|Australia";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("Events: every committed change arrives, typed and in order")
+    void testEvents_TypedAndOrdered() throws Exception {
+        PersonRepository repo = new PersonRepository(dir.resolve("persons.txt"));
+        List<RegistryEvent> seen = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> done = repo.events().consume(seen::add);
+
+        Person p = new Person("33@#$%^STU", "Ann", "Lee", ADDRESS, "01-01-2005");
+        assertTrue(p.addPerson(repo));
+        assertFalse(p.addPerson(repo));  // rejected: nothing is published
+        p.setPersonID("53@#$%^STU");
+        assertTrue(p.updatePersonalDetails(repo, "33@#$%^STU"));
+        assertEquals("Success", p.addDemeritPoints(repo, "01-01-2024", 4));
+        assertEquals("Success", p.addDemeritPoints(repo, "01-02-2024", 3));
+
+        repo.close();
+        done.get(5, TimeUnit.SECONDS);
+
+        assertEquals(5, seen.size(), seen.toString());
+        assertInstanceOf(RegistryChange.PersonAdded.class, seen.get(0).change());
+        RegistryChange.DetailsChanged renamed = assertInstanceOf(RegistryChange.DetailsChanged.class,
+                seen.get(1).change());
+        assertEquals("33@#$%^STU", renamed.originalID());
+        assertEquals("53@#$%^STU", renamed.personID());
+        assertInstanceOf(RegistryChange.DemeritRecorded.class, seen.get(2).change());
+        assertInstanceOf(RegistryChange.DemeritRecorded.class, seen.get(3).change());
+        // 7 points at 19 suspends the licence
+        assertTrue(seen.get(4).isSuspensionTriggered());
+        assertEquals("53@#$%^STU", seen.get(4).personID());
+        for (int i = 0; i < seen.size(); i++) {
+            assertEquals(i + 1, seen.get(i).sequence());
+        }
+        assertEquals(0, repo.events().dropped());
+    }
+
+    @Test
+    @DisplayName("Events: a stalled subscriber drops events instead of stalling writers")
+    void testEvents_SlowSubscriberNeverBlocks() throws Exception {
+        RegistryEvents events = new RegistryEvents(8);
+        CountDownLatch release = new CountDownLatch(1);
+        List<RegistryEvent> slow = new CopyOnWriteArrayList<>();
+        List<RegistryEvent> fast = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> slowDone = events.consume(e -> {
+            try {
+                release.await();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            slow.add(e);
+        });
+        CompletableFuture<Void> fastDone = events.consume(fast::add);
+
+        int n = 1_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            events.publish(List.of(new RegistryChange.DemeritRecorded("23@#$%^STU", i, 1)));
+            if (i % 8 == 0) {
+                Thread.sleep(0, 1);  // let the fast subscriber keep up
+            }
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5), "publishing must not wait");
+
+        release.countDown();
+        events.close();
+        slowDone.get(5, TimeUnit.SECONDS);
+        fastDone.get(5, TimeUnit.SECONDS);
+
+        assertTrue(slow.size() < n);
+        assertEquals(2L * n, slow.size() + fast.size() + events.dropped());
+        for (int i = 1; i < slow.size(); i++) {
+            assertTrue(slow.get(i).sequence() > slow.get(i - 1).sequence());
+        }
+    }
+
+    @Test
+    @DisplayName("Events: concurrent writers deliver events in sequence order")
+    void testEvents_ConcurrentWritersInSequence() throws Exception {
+        RegistryEvents events = new RegistryEvents(1 << 16);
+        List<RegistryEvent> seen = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> done = events.consume(seen::add);
+
+        int writers = 8;
+        int each = 2_000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            String id = w + "3@#$%^STU";
+            threads.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int i = 0; i < each; i++) {
+                    events.publish(List.of(new RegistryChange.DemeritRecorded(id, i, 1)));
+                }
+            }));
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        events.close();
+        done.get(5, TimeUnit.SECONDS);
+
+        assertEquals(0, events.dropped());
+        assertEquals(writers * each, seen.size());
+        for (int i = 0; i < seen.size(); i++) {
+            assertEquals(i + 1, seen.get(i).sequence());
+        }
+    }
+
+    @Test
+    @DisplayName("Events: staged changes are delivered in commit order, and only once durable")
+    void testEvents_HeldUntilDurable() throws Exception {
+        RegistryEvents events = new RegistryEvents();
+        List<RegistryEvent> seen = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> done = events.consume(seen::add);
+
+        RegistryEvents.Staged lost = events.stage(List.of(new RegistryChange.SuspensionChanged("23@#$%^STU", true)));
+        RegistryEvents.Staged kept = events.stage(List.of(new RegistryChange.DemeritRecorded("23@#$%^STU", 1, 2)));
+        kept.settle(true);  // waits for the commit staged before it
+        lost.settle(false);
+        events.close();
+        done.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, seen.size(), seen.toString());
+        assertInstanceOf(RegistryChange.DemeritRecorded.class, seen.get(0).change());
+        assertEquals(1, seen.get(0).sequence());
+    }
+
+    @Test
+    @DisplayName("Events: a change whose group sync fails is never delivered")
+    void testEvents_LostGroupCommitNotPublished() throws Exception {
+        Path file = dir.resolve("persons.txt");
+        PersonRepository repo = new PersonRepository(
+                new TextFileStore(file, DurabilityMode.GROUP_COMMIT, Duration.ofMillis(300)));
+        List<RegistryEvent> seen = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> done = repo.events().consume(seen::add);
+        assertTrue(repo.add(new Person("33@#$%^STU", "Ann", "Lee", ADDRESS, "01-01-2005")));
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<Boolean> rewrite = pool.submit(() -> repo.update("33@#$%^STU", p -> {
+            p.setLastName("Changed");
+            return true;
+        }));
+        Thread.sleep(100);
+        // another writer replaces the file while the rewrite waits for its group sync
+        Files.writeString(file, new Person("45#$%@*JKL", "Bob", "Ray", ADDRESS, "01-01-1990").toLine() + "\n");
+        assertFalse(rewrite.get());
+        pool.shutdown();
+
+        repo.close();
+        done.get(5, TimeUnit.SECONDS);
+        assertEquals(1, seen.size(), seen.toString());
+        assertInstanceOf(RegistryChange.PersonAdded.class, seen.get(0).change());
+    }
+}
@@ -0,0 +1,152 @@
+package au.edu.rmit.sct;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import javax.management.ObjectName;
+
+
+public class RegistryMetricsTest {
+
+    @TempDir
+    Path dir;
+
+    private Path file;
+    private PersonRepository repo;
+
+    @BeforeEach
+    void setUp() {
+        RegistryMetrics.reset();
+        file = dir.resolve("persons.txt");
+        repo = new PersonRepository(file);
+    }
+
+    private static Person person(String id, String address, String birthdate) {
+        return new Person(id, "Test", "Metrics", address, birthdate);
+    }
+
+    private static final String ADDRESS = "1|Main Street|Melbourne|Victoria|Australia";
+
+    private static long rejections(RegistryMetrics.Rule rule) {
+        return RegistryMetrics.snapshot().rejections().get(rule);
+    }
+
+    private static RegistryMetrics.OperationSnapshot op(RegistryMetrics.Operation op) {
+        return RegistryMetrics.snapshot().operations().get(op);
+    }
+
+    @Test
+    @DisplayName("Metrics: calls, failures and each rejected rule are counted")
+    void testOperations_CountCallsAndRejections() {
+        assertTrue(person("23@#$%^STU", ADDRESS, "01-01-1990").addPerson(repo));
+        assertFalse(person("23@#$%^STU", ADDRESS, "01-01-1990").addPerson(repo));
+        assertFalse(person("bad", ADDRESS, "01-01-1990").addPerson(repo));
+        assertFalse(person("34@#$%^GHI", "1|Main Street|Sydney|NSW|Australia", "01-01-1990").addPerson(repo));
+        assertFalse(person("34@#$%^GHI", ADDRESS, "1990-01-01").addPerson(repo));
+
+        Person p = repo.find("23@#$%^STU");
+        assertEquals("Failed", p.addDemeritPoints(repo, "31-02-2020", 3));
+        assertEquals("Failed", p.addDemeritPoints(repo, "01-01-2020", 7));
+        assertEquals("Failed", p.addDemeritPoints(repo, "01-01-1980", 3));
+        assertEquals("Success", p.addDemeritPoints(repo, "01-01-2020", 3));
+
+        p.setBirthdate("02-01-1990");
+        p.setLastName("Changed");
+        assertFalse(p.updatePersonalDetails(repo, "23@#$%^STU"));
+
+        RegistryMetrics.OperationSnapshot adds = op(RegistryMetrics.Operation.ADD_PERSON);
+        assertEquals(5, adds.calls());
+        assertEquals(4, adds.failures());
+        assertTrue(adds.maxNanos() > 0 && adds.p50Nanos() <= adds.p99Nanos() && adds.p99Nanos() <= adds.maxNanos());
+        assertEquals(4, op(RegistryMetrics.Operation.ADD_DEMERIT_POINTS).calls());
+        assertEquals(3, op(RegistryMetrics.Operation.ADD_DEMERIT_POINTS).failures());
+        assertEquals(1, op(RegistryMetrics.Operation.UPDATE_PERSONAL_DETAILS).failures());
+
+        assertEquals(1, rejections(RegistryMetrics.Rule.DUPLICATE_ID));
+        assertEquals(1, rejections(RegistryMetrics.Rule.PERSON_ID));
+        assertEquals(1, rejections(RegistryMetrics.Rule.ADDRESS));
+        assertEquals(1, rejections(RegistryMetrics.Rule.BIRTHDATE));
+        assertEquals(1, rejections(RegistryMetrics.Rule.OFFENCE_DATE));
+        assertEquals(1, rejections(RegistryMetrics.Rule.POINTS_RANGE));
+        assertEquals(1, rejections(RegistryMetrics.Rule.OFFENCE_BEFORE_BIRTH));
+        assertEquals(1, rejections(RegistryMetrics.Rule.BIRTHDATE_CHANGE_ONLY));
+    }
+
+    @Test
+    @DisplayName("Metrics: file reads and writes count bytes, records and bad lines")
+    void testFileIo_CountsBytesAndRecords() throws Exception {
+        List<Person> persons = SampleRegistry.generate(100, 1);
+        assertTrue(Person.writeAllPersonsToFile(file.toFile(), persons));
+        assertEquals(Files.size(file), RegistryMetrics.snapshot().bytesWritten());
+
+        Files.writeString(file, "not a record\n\n", StandardOpenOption.APPEND);
+        assertEquals(100, Person.readAllPersonsFromFile(file.toFile()).size());
+
+        RegistryMetrics.Snapshot s = RegistryMetrics.snapshot();
+        assertEquals(Files.size(file), s.bytesRead());
+        assertEquals(100, s.recordsParsed());
+        assertEquals(1, s.parseFailures());
+        assertEquals(1, s.operations().get(RegistryMetrics.Operation.READ_FILE).calls());
+        assertEquals(1, s.operations().get(RegistryMetrics.Operation.WRITE_FILE).calls());
+    }
+
+    @Test
+    @DisplayName("Metrics: published over JMX and handed to exporters")
+    void testJmxAndExporters() throws Exception {
+        assertTrue(person("23@#$%^STU", ADDRESS, "01-01-1990").addPerson(repo));
+        assertFalse(person("bad", ADDRESS, "01-01-1990").addPerson(repo));
+
+        var server = ManagementFactory.getPlatformMBeanServer();
+        assertEquals(2L, server.getAttribute(
+                new ObjectName("au.edu.rmit.sct:type=RegistryMetrics,operation=addPerson"), "Calls"));
+        assertNotNull(server.getAttribute(new ObjectName("au.edu.rmit.sct:type=RegistryMetrics"), "Rejections"));
+
+        List<RegistryMetrics.Snapshot> exported = new ArrayList<>();
+        MetricsExporter exporter = exported::add;
+        RegistryMetrics.addExporter(exporter);
+        try {
+            RegistryMetrics.export();
+        } finally {
+            RegistryMetrics.removeExporter(exporter);
+        }
+        assertEquals(1, exported.size());
+        Map<RegistryMetrics.Rule, Long> rejections = exported.get(0).rejections();
+        assertEquals(1L, rejections.get(RegistryMetrics.Rule.PERSON_ID));
+    }
+
+    @Test
+    @DisplayName("Histogram: percentiles are within one bucket (1/16) above the exact value")
+    void testHistogram_PercentileError() {
+        LatencyHistogram h = new LatencyHistogram();
+        Random rnd = new Random(5);
+        long[] values = new long[50_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(rnd.nextDouble() * 25);  // 1 ns .. ~70 s
+            h.record(values[i]);
+        }
+        Arrays.sort(values);
+        assertEquals(values.length, h.count());
+        assertEquals(values[values.length - 1], h.max());
+        for (double q : new double[] {0.5, 0.9, 0.99, 0.999}) {
+            long exact = values[(int) Math.ceil(q * values.length) - 1];
+            long reported = h.percentile(q);
+            assertTrue(reported >= exact && reported <= exact + exact / 16 + 1, q + ": " + exact + " vs " + reported);
+        }
+        for (long v = 0; v < 100_000; v += 7) {
+            int b = LatencyHistogram.bucketOf(v);
+            assertTrue(v <= LatencyHistogram.upperBoundOf(b) && (b == 0 || v > LatencyHistogram.upperBoundOf(b - 1)));
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package au.edu.rmit.sct;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+public class RegistryServerTest {
+
+    private static final String ID = "56@#$%^&AB";  // needs percent-encoding in a URL
+    private static final String ADDRESS = "32|Highland Street|Melbourne|Victoria|Australia";
+
+    @TempDir
+    Path dir;
+
+    private Path file;
+    private RegistryServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = dir.resolve("persons.txt");
+        server = new RegistryServer(new PersonRepository(file), 0).start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + server.port() + path);
+    }
+
+    private HttpResponse<String> send(String method, String path, String form) throws Exception {
+        HttpRequest.Builder b = HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", "application/x-www-form-urlencoded");
+        b = form == null ? b.method(method, HttpRequest.BodyPublishers.noBody())
+                : b.method(method, HttpRequest.BodyPublishers.ofString(form));
+        return client.send(b.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String form(String... pairs) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < pairs.length; i += 2) {
+            if (sb.length() > 0) {
+                sb.append('&');
+            }
+            sb.append(pairs[i]).append('=').append(RegistryLoadClient.encode(pairs[i + 1]));
+        }
+        return sb.toString();
+    }
+
+    private static String person(String id) {
+        return "/persons/" + RegistryLoadClient.encode(id);
+    }
+
+    @Test
+    @DisplayName("Server: add, look up, update and add demerits over HTTP")
+    void testServer_Operations() throws Exception {
+        assertEquals(404, send("GET", person(ID), null).statusCode());
+
+        HttpResponse<String> added = send("POST", "/persons", form("personID", ID, "firstName", "Ann",
+                "lastName", "Lee", "address", ADDRESS, "birthdate", "15-11-1990"));
+        assertEquals(201, added.statusCode());
+        assertEquals("Success", added.body());
+        assertEquals(422, send("POST", "/persons", form("personID", ID, "firstName", "Ann",
+                "lastName", "Lee", "address", ADDRESS, "birthdate", "15-11-1990")).statusCode());
+
+        HttpResponse<String> found = send("GET", person(ID), null);
+        assertEquals(200, found.statusCode());
+        assertEquals(ID + "|Ann|Lee|" + ADDRESS + "|15-11-1990|false|", found.body());
+
+        assertEquals(200, send("PUT", person(ID), form("lastName", "Nguyen")).statusCode());
+        assertEquals(422, send("PUT", person(ID), form("lastName", "Tran", "birthdate", "16-11-1990")).statusCode());
+        assertEquals(404, send("PUT", person("78@#$%^&CD"), form("lastName", "Tran")).statusCode());
+
+        assertEquals("Success", send("POST", person(ID) + "/demerits",
+                form("offenseDate", "01-03-2024", "points", "4")).body());
+        assertEquals(422, send("POST", person(ID) + "/demerits",
+                form("offenseDate", "01-03-2024", "points", "9")).statusCode());
+        assertEquals(422, send("POST", person(ID) + "/demerits",
+                form("offenseDate", "01-03-2024", "points", "many")).statusCode());
+
+        assertEquals(ID + "|Ann|Nguyen|" + ADDRESS + "|15-11-1990|false|01-03-2024:4;",
+                send("GET", person(ID), null).body());
+        assertEquals(List.of(ID + "|Ann|Nguyen|" + ADDRESS + "|15-11-1990|false|01-03-2024:4;"),
+                Files.readAllLines(file));
+
+        assertEquals(405, send("DELETE", person(ID), null).statusCode());
+        assertEquals(404, send("GET", person(ID) + "/demerits/x", null).statusCode());
+    }
+
+    @Test
+    @DisplayName("Server: concurrent requests all reach the registry")
+    void testServer_ConcurrentAdds() throws Exception {
+        int n = 200;
+        List<Future<Integer>> statuses = new ArrayList<>();
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < n; i++) {
+                Person p = SampleRegistry.person(i, 3);
+                statuses.add(pool.submit(() -> send("POST", "/persons", form("personID", p.getPersonID(),
+                        "firstName", p.getFirstName(), "lastName", p.getLastName(),
+                        "address", p.getAddress(), "birthdate", p.getBirthdate())).statusCode()));
+            }
+        }
+        for (Future<Integer> status : statuses) {
+            assertEquals(201, status.get());
+        }
+        assertEquals(n, Files.readAllLines(file).size());
+    }
+}
@@ -0,0 +1,134 @@
+package au.edu.rmit.sct;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import static au.edu.rmit.sct.PersonFixtures.person;
+import static au.edu.rmit.sct.PersonFixtures.reload;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+
+public class ShardedStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private Path shards;
+    private ShardedStore store;
+    private PersonRepository repo;
+
+    @BeforeEach
+    void setUp() {
+        shards = dir.resolve("persons.shards");
+        store = new ShardedStore(shards);
+        repo = new PersonRepository(store);
+    }
+
+    @AfterEach
+    void tearDown() {
+        repo.close();
+    }
+
+    private List<String> reloadedLines() {
+        return reload(new ShardedStore(shards));
+    }
+
+    @Test
+    @DisplayName("Shards: persons are stored in the file of their two-digit prefix")
+    void testCommit_WritesPrefixShard() throws Exception {
+        assertTrue(repo.add(person("23@#$%^STU")));
+        assertTrue(repo.add(person("97#$%@*JKL")));
+        assertTrue(repo.add(person("23!!##$$AB")));
+
+        assertEquals(List.of(person("23@#$%^STU").toLine(), person("23!!##$$AB").toLine()),
+                Files.readAllLines(shards.resolve("23.txt")));
+        assertEquals(List.of(person("97#$%@*JKL").toLine()), Files.readAllLines(shards.resolve("97.txt")));
+        assertEquals(0, ShardedStore.shardOf("22@#$%^STU"));
+        assertEquals(63, ShardedStore.shardOf("99@#$%^STU"));
+        assertEquals(ShardedStore.OTHER, ShardedStore.shardOf("12@#$%^STU"));
+    }
+
+    @Test
+    @DisplayName("Shards: an update rewrites only the shard of the person")
+    void testCommit_LeavesOtherShardsAlone() throws Exception {
+        assertTrue(repo.add(person("23@#$%^STU")));
+        assertTrue(repo.add(person("97#$%@*JKL")));
+        FileStamp untouched = FileStamp.of(shards.resolve("97.txt"));
+
+        assertTrue(repo.update("23@#$%^STU", p -> {
+            p.setLastName("Changed");
+            return true;
+        }));
+
+        assertEquals(untouched, FileStamp.of(shards.resolve("97.txt")));
+        assertTrue(Files.readString(shards.resolve("23.txt")).contains("|Changed|"));
+    }
+
+    @Test
+    @DisplayName("Shards: an ID change across prefixes moves the record to its new shard")
+    void testCommit_MovesRecordAcrossShards() throws Exception {
+        assertTrue(repo.add(person("33@#$%^STU")));
+        assertTrue(repo.update("33@#$%^STU", p -> {
+            p.setPersonID("53@#$%^STU");
+            return true;
+        }));
+
+        assertEquals(List.of(), Files.readAllLines(shards.resolve("33.txt")));
+        assertEquals(List.of(person("53@#$%^STU").toLine()), Files.readAllLines(shards.resolve("53.txt")));
+        assertEquals(List.of(person("53@#$%^STU").toLine()), reloadedLines());
+        assertEquals(1, Files.readAllLines(shards.resolve("generation")).size(), "nothing left pending");
+    }
+
+    @Test
+    @DisplayName("Shards: a load finishes a move that was interrupted after it was announced")
+    void testLoad_RollsForwardPendingMove() throws Exception {
+        assertTrue(repo.add(person("33@#$%^STU")));
+        // the state a crash leaves behind: 53.txt moved in, 33.txt still pending
+        Files.writeString(shards.resolve("33.txt.tmp"), "");
+        Files.write(shards.resolve("53.txt"), List.of(person("53@#$%^STU").toLine()));
+        Files.writeString(shards.resolve("generation"), ProcessHandle.current().pid() + "\n"
+                + ShardedStore.shardOf("33@#$%^STU") + "\n" + ShardedStore.shardOf("53@#$%^STU") + "\n");
+
+        assertEquals(List.of(person("53@#$%^STU").toLine()), reloadedLines());
+        assertFalse(Files.exists(shards.resolve("33.txt.tmp")));
+        assertTrue(store.isStale());
+        assertFalse(repo.contains("33@#$%^STU"));
+        assertTrue(repo.contains("53@#$%^STU"));
+    }
+
+    @Test
+    @DisplayName("Shards: a commit through another store is detected")
+    void testIsStale_AfterOtherStoreCommits() {
+        assertTrue(repo.add(person("23@#$%^STU")));
+        assertFalse(store.isStale());
+
+        PersonRepository other = new PersonRepository(new ShardedStore(shards));
+        assertTrue(other.add(person("45#$%@*JKL")));
+
+        assertTrue(store.isStale());
+        assertTrue(repo.contains("45#$%@*JKL"));
+        other.close();
+    }
+
+    @Test
+    @DisplayName("Shards: migrating to shards and back keeps every record")
+    void testMigration_RoundTrip() throws Exception {
+        Path text = dir.resolve("persons.txt");
+        List<String> lines = List.of(person("97#$%@*JKL").toLine(), person("23@#$%^STU").toLine(),
+                person("23!!##$$AB").toLine());
+        Files.write(text, lines);
+
+        assertEquals(3, RegistryFormatConverter.textToShards(text, shards));
+        assertEquals(List.of(lines.get(1), lines.get(2), lines.get(0)), reloadedLines());
+
+        Path back = dir.resolve("back.txt");
+        assertEquals(3, RegistryFormatConverter.shardsToText(shards, back));
+        assertEquals(List.of(lines.get(1), lines.get(2), lines.get(0)), Files.readAllLines(back));
+    }
+}
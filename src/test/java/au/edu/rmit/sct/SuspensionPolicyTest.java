@@ -0,0 +1,188 @@
+package au.edu.rmit.sct;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+
+public class SuspensionPolicyTest {
+
+    private static final SuspensionPolicy POLICY = SuspensionPolicy.DEFAULT;
+
+    @TempDir
+    Path dir;
+
+    private static DemeritHistory history(String... offences) {
+        DemeritHistory h = new DemeritHistory();
+        for (String o : offences) {
+            String[] parts = o.split(":");
+            h.record(DateCodec.parse(parts[0]), Integer.parseInt(parts[1]));
+        }
+        return h;
+    }
+
+    @Test
+    @DisplayName("Policy: young drivers above 6, others above 12 points within two years")
+    void testTriggers_Thresholds() {
+        int born = DateCodec.parse("15-06-2000");
+        // aged 20 on the last offence
+        DemeritHistory young = history("01-01-2019:3", "01-01-2020:3");
+        assertFalse(POLICY.triggers(young, born, DateCodec.parse("01-01-2020")));
+        young.record(DateCodec.parse("01-06-2020"), 1);
+        assertTrue(POLICY.triggers(young, born, DateCodec.parse("01-06-2020")));
+
+        // 21 on the day: the adult limit applies
+        DemeritHistory adult = history("01-01-2020:6", "01-03-2021:5", "15-06-2021:1");
+        assertFalse(POLICY.triggers(adult, born, DateCodec.parse("15-06-2021")));
+        adult.record(DateCodec.parse("16-06-2021"), 1);
+        assertTrue(POLICY.triggers(adult, born, DateCodec.parse("16-06-2021")));
+    }
+
+    @Test
+    @DisplayName("Policy: the window reaches back exactly two years, both ends included")
+    void testTriggers_WindowEdges() {
+        int born = DateCodec.parse("01-01-1980");
+        DemeritHistory h = history("10-03-2020:6", "10-03-2021:6", "10-03-2022:1");
+        assertTrue(POLICY.triggers(h, born, DateCodec.parse("10-03-2022")));
+        h = history("09-03-2020:6", "10-03-2021:6", "10-03-2022:1");
+        assertFalse(POLICY.triggers(h, born, DateCodec.parse("10-03-2022")));
+    }
+
+    @Test
+    @DisplayName("Policy: status as of a day only counts offences up to that day")
+    void testIsSuspended_ReferenceDay() {
+        int born = DateCodec.parse("01-01-2003");
+        DemeritHistory h = history("01-01-2022:4", "01-02-2022:4");
+        assertFalse(POLICY.isSuspended(h, born, DateCodec.parse("31-01-2022")));
+        assertTrue(POLICY.isSuspended(h, born, DateCodec.parse("01-02-2022")));
+        // never lifted by time passing
+        assertTrue(POLICY.isSuspended(h, born, DateCodec.parse("01-01-2030")));
+        assertFalse(POLICY.isSuspended(h, DateCodec.INVALID, DateCodec.parse("01-01-2030")));
+    }
+
+    @Test
+    @DisplayName("Policy: agrees with addDemeritPoints after every offence")
+    void testIsSuspended_MatchesPerOffencePath() {
+        PersonRepository repo = new PersonRepository(dir.resolve("persons.txt"));
+        Random rnd = new Random(21);
+        for (int i = 0; i < 200; i++) {
+            Person p = SampleRegistry.person(i, 4);
+            Person fresh = new Person(p.getPersonID(), p.getFirstName(), p.getLastName(), p.getAddress(),
+                    p.getBirthdate());
+            assertTrue(fresh.addPerson(repo));
+            int day = DateCodec.parse(p.getBirthdate()) + 16 * 365 + rnd.nextInt(3_000);
+            for (int k = 0; k < 8; k++) {
+                day += 1 + rnd.nextInt(300);
+                assertEquals("Success", fresh.addDemeritPoints(repo, DateCodec.format(day), 1 + rnd.nextInt(6)));
+                PersonRecord stored = repo.records().get(i);
+                assertEquals(stored.isSuspended(), POLICY.isSuspended(stored, day), stored.line());
+                assertEquals(stored.isSuspended(), POLICY.isSuspended(stored.person(), day), stored.line());
+            }
+        }
+        assertEquals(List.of(), repo.reevaluateSuspensions(POLICY, DateCodec.parse("01-01-2100")));
+    }
+
+    @Test
+    @DisplayName("Policy: bulk re-evaluation reports and persists exactly the changed statuses")
+    void testReevaluateSuspensions_ReportsChanges() {
+        Path file = dir.resolve("persons.txt");
+        assertTrue(SampleRegistry.writeText(file, 5_000, 9));
+        int referenceDay = DateCodec.parse("01-07-2015");
+
+        Map<String, Boolean> expected = new HashMap<>();
+        for (Person p : SampleRegistry.generate(5_000, 9)) {
+            boolean now = POLICY.isSuspended(p, referenceDay);
+            if (now != p.isSuspended()) {
+                expected.put(p.getPersonID(), now);
+            }
+        }
+        assertFalse(expected.isEmpty());
+
+        PersonRepository repo = new PersonRepository(file);
+        Map<String, Boolean> reported = new HashMap<>();
+        for (RegistryChange.SuspensionChanged c : repo.reevaluateSuspensions(POLICY, referenceDay)) {
+            reported.put(c.personID(), c.suspended());
+        }
+        assertEquals(expected, reported);
+
+        PersonRepository reloaded = new PersonRepository(file);
+        for (PersonRecord r : reloaded.records()) {
+            assertEquals(POLICY.isSuspended(r, referenceDay), r.isSuspended(), r.line());
+        }
+        assertEquals(List.of(), reloaded.reevaluateSuspensions(POLICY, referenceDay));
+    }
+
+    @Test
+    @DisplayName("Policy: a timeline gives the window total, age and status of any day")
+    void testTimeline_MatchesDirectEvaluation() {
+        int born = DateCodec.parse("01-01-2003");
+        Person p = new Person("23@#$%^STU", "Ann", "Lee", "1|Main Street|Melbourne|Victoria|Australia", "01-01-2003");
+        p.getDemeritHistory().record(DateCodec.parse("01-01-2022"), 4);
+        p.getDemeritHistory().record(DateCodec.parse("01-02-2022"), 4);
+        OffenceTimeline timeline = OffenceTimeline.of(PersonRecord.of(p), POLICY);
+
+        OffenceTimeline.Standing before = timeline.at(DateCodec.parse("31-01-2022"));
+        assertEquals(4, before.windowPoints());
+        assertEquals(19, before.age());
+        assertEquals(6, before.limit());
+        assertFalse(before.suspended());
+        assertEquals(DateCodec.INVALID, before.suspendedSince());
+
+        OffenceTimeline.Standing later = timeline.at(DateCodec.parse("01-03-2025"));
+        assertEquals(0, later.windowPoints());
+        assertEquals(22, later.age());
+        assertTrue(later.suspended());
+        assertEquals("01-02-2022", DateCodec.format(later.suspendedSince()));
+        assertEquals("01-03-2025", later.date());
+
+        // every day of a random history agrees with the direct evaluation
+        Random rnd = new Random(7);
+        DemeritHistory h = p.getDemeritHistory();
+        h.clear();
+        for (int i = 0; i < 40; i++) {
+            h.record(born + 16 * 365 + rnd.nextInt(4_000), 1 + rnd.nextInt(6));
+        }
+        timeline = OffenceTimeline.of(PersonRecord.of(p), POLICY);
+        for (int day = born + 16 * 365; day < born + 28 * 365; day += 3) {
+            OffenceTimeline.Standing s = timeline.at(day);
+            assertEquals(POLICY.isSuspended(h, born, day), s.suspended(), DateCodec.format(day));
+            assertEquals(h.windowTotal(DateCodec.minusYears(day, 2), day), s.windowPoints());
+            assertEquals(DateCodec.ageInYears(born, day), s.age());
+        }
+    }
+
+    @Test
+    @DisplayName("Policy: as-of queries follow updates, and the batch agrees with single queries")
+    void testStandingAsOf_RepositoryAndBatch() {
+        Path file = dir.resolve("persons.txt");
+        assertTrue(SampleRegistry.writeText(file, 2_000, 9));
+        PersonRepository repo = new PersonRepository(file);
+        int day = DateCodec.parse("01-07-2015");
+
+        List<OffenceTimeline.Standing> all = repo.standingsAsOf(POLICY, day);
+        assertEquals(2_000, all.size());
+        for (int i = 0; i < all.size(); i += 13) {
+            OffenceTimeline.Standing s = all.get(i);
+            assertEquals(s, repo.standingAsOf(s.personID(), POLICY, day));
+            assertEquals(POLICY.isSuspended(repo.records().get(i), day), s.suspended());
+        }
+        assertNull(repo.standingAsOf("99@#$%^XYZ", POLICY, day));
+
+        // a new record version gets a new timeline
+        String id = all.get(0).personID();
+        Person p = repo.find(id);
+        int offenceDay = DateCodec.parse(p.getBirthdate()) + 30 * 365;
+        assertEquals(0, p.getDemeritHistory().pointsOn(offenceDay));
+        OffenceTimeline.Standing before = repo.standingAsOf(id, POLICY, offenceDay);
+        assertEquals("Success", p.addDemeritPoints(repo, DateCodec.format(offenceDay), 5));
+        OffenceTimeline.Standing after = repo.standingAsOf(id, POLICY, offenceDay);
+        assertEquals(before.windowPoints() + 5, after.windowPoints());
+    }
+}